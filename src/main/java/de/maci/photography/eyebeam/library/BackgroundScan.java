@@ -0,0 +1,173 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import de.maci.photography.eyebeam.library.indexing.DirectoryState;
+import de.maci.photography.eyebeam.library.indexing.FilesystemScanner;
+import de.maci.photography.eyebeam.library.indexing.ScannedFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Runs a {@link FilesystemScanner} on a thread of its own, passing the matched files through a bounded queue. The
+ * scanner is blocked while the queue is full, so a slow consumer slows down scanning instead of increasing the memory
+ * consumption.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 02.03.16
+ */
+class BackgroundScan implements AutoCloseable {
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final BlockingQueue<ScannedFile> queue;
+    private final Queue<Path> unchangedDirectories = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    private volatile boolean completed = false;
+    private volatile Throwable failure = null;
+
+    private BackgroundScan(FilesystemScanner scanner,
+                           Path rootFolder,
+                           int queueCapacity,
+                           IoBudget ioBudget,
+                           DirectoryState directoryState) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(() -> scan(scanner, rootFolder, ioBudget, directoryState), "eyebeam-scanner");
+        this.thread.setDaemon(true);
+    }
+
+    private void scan(FilesystemScanner scanner, Path rootFolder, IoBudget ioBudget, DirectoryState directoryState) {
+        BiConsumer<Path, BasicFileAttributes> matchingPathHandler = (path, attributes) -> {
+            ioBudget.acquireFile();
+            try {
+                queue.put(ScannedFile.of(path, attributes));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Scanning has been interrupted.", e);
+            }
+        };
+        try {
+            if (directoryState != null) {
+                scanner.scan(rootFolder, directoryState, matchingPathHandler, unchangedDirectories::add);
+            } else {
+                scanner.scan(rootFolder, matchingPathHandler);
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            completed = true;
+        }
+    }
+
+    /**
+     * Moves scanned files to the given collection, blocking until at least one file is available or scanning has
+     * been completed.
+     *
+     * @param target      The collection the scanned files are added to.
+     * @param maxElements The maximum number of files to be moved.
+     * @return <code>false</code>, if scanning has been completed and all scanned files have been consumed.
+     * @throws IOException Thrown if scanning has failed.
+     */
+    boolean drainTo(@Nonnull Collection<ScannedFile> target, int maxElements) throws IOException {
+        while (true) {
+            if (queue.drainTo(target, maxElements) > 0) {
+                return true;
+            }
+            if (completed && queue.isEmpty()) {
+                rethrowFailure();
+                return false;
+            }
+            ScannedFile scannedFile = poll();
+            if (scannedFile != null) {
+                target.add(scannedFile);
+                queue.drainTo(target, maxElements - 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves the directories which have been skipped as they are unchanged to the given collection.
+     *
+     * @param target The collection the unchanged directories are added to.
+     */
+    void drainUnchangedDirectoriesTo(@Nonnull Collection<Path> target) {
+        Path directory;
+        while ((directory = unchangedDirectories.poll()) != null) {
+            target.add(directory);
+        }
+    }
+
+    private ScannedFile poll() {
+        try {
+            return queue.poll(POLL_TIMEOUT_MILLIS, MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for scanned files.", e);
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    /**
+     * Stops scanning by interrupting the scanner thread. The matching path handler runs on that thread, also if
+     * directories are scanned in parallel, so blocked handlers as well as the workers of a parallel scan are stopped.
+     */
+    @Override
+    public void close() {
+        if (!completed) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Starts scanning, skipping unchanged directories if a directory state is given. See
+     * {@link FilesystemScanner#scan(Path, DirectoryState, BiConsumer, java.util.function.Consumer)}.
+     */
+    static BackgroundScan start(@Nonnull FilesystemScanner scanner,
+                                @Nonnull Path rootFolder,
+                                int queueCapacity,
+                                @Nonnull IoBudget ioBudget,
+                                @Nullable DirectoryState directoryState) {
+        requireNonNull(scanner, "Scanner must not be null.");
+        requireNonNull(rootFolder, "Root folder must not be null.");
+        requireNonNull(ioBudget, "I/O budget must not be null.");
+        BackgroundScan scan = new BackgroundScan(scanner, rootFolder, queueCapacity, ioBudget, directoryState);
+        scan.thread.start();
+        return scan;
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Limits the rate at which a reindexing accesses the file system, so it does not saturate the disk of a host serving
+ * other requests. Each scanned file and each file whose metadata is read counts as one file, the bytes actually read
+ * from a file are counted once its metadata has been read.
+ * <p>
+ * Both limits are enforced by token buckets holding up to one second of budget. The limits can be adjusted at any
+ * time, also while a reindexing is running. A budget is thread-safe and may be shared by multiple reindexers.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 11.03.16
+ */
+public final class IoBudget {
+
+    /**
+     * Disables a limit.
+     */
+    public static final long UNLIMITED = 0;
+
+    private static final class TokenBucket {
+
+        private long ratePerSecond;
+        private double availableTokens;
+        private long refilledAt = System.nanoTime();
+
+        private TokenBucket(long ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+            this.availableTokens = ratePerSecond;
+        }
+
+        synchronized long ratePerSecond() {
+            return ratePerSecond;
+        }
+
+        synchronized void ratePerSecond(long ratePerSecond) {
+            refill();
+            this.ratePerSecond = ratePerSecond;
+            this.availableTokens = Math.min(availableTokens, ratePerSecond);
+            // Threads paying off a debt recompute their waiting time using the new rate
+            notifyAll();
+        }
+
+        /**
+         * Takes the given number of tokens, going into debt if not enough tokens are available, and blocks until the
+         * debt has been paid off. The waiting time follows adjustments of the rate made while waiting.
+         */
+        synchronized void acquire(long tokens) {
+            if (ratePerSecond == UNLIMITED) {
+                return;
+            }
+            refill();
+            availableTokens -= tokens;
+            try {
+                long nanos;
+                while ((nanos = debtNanos()) > 0) {
+                    NANOSECONDS.timedWait(this, nanos);
+                    refill();
+                }
+            } catch (InterruptedException e) {
+                // The reindexing is being stopped
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * @return The number of nanoseconds until the debt has been paid off at the current rate.
+         */
+        private long debtNanos() {
+            if (ratePerSecond == UNLIMITED || availableTokens >= 0) {
+                return 0;
+            }
+            return (long) Math.ceil(-availableTokens * SECONDS.toNanos(1) / ratePerSecond);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            if (ratePerSecond != UNLIMITED) {
+                double refilledTokens = (double) (now - refilledAt) * ratePerSecond / SECONDS.toNanos(1);
+                availableTokens = Math.min(ratePerSecond, availableTokens + refilledTokens);
+            }
+            refilledAt = now;
+        }
+    }
+
+    private final TokenBucket bytes;
+    private final TokenBucket files;
+
+    private IoBudget(long bytesPerSecond, long filesPerSecond) {
+        this.bytes = new TokenBucket(bytesPerSecond);
+        this.files = new TokenBucket(filesPerSecond);
+    }
+
+    public long bytesPerSecond() {
+        return bytes.ratePerSecond();
+    }
+
+    public long filesPerSecond() {
+        return files.ratePerSecond();
+    }
+
+    /**
+     * Adjusts the maximum number of bytes read per second.
+     *
+     * @param bytesPerSecond The maximum number of bytes per second or {@link #UNLIMITED}.
+     */
+    public void bytesPerSecond(long bytesPerSecond) {
+        bytes.ratePerSecond(checkRate(bytesPerSecond, "Bytes per second"));
+    }
+
+    /**
+     * Adjusts the maximum number of files accessed per second.
+     *
+     * @param filesPerSecond The maximum number of files per second or {@link #UNLIMITED}.
+     */
+    public void filesPerSecond(long filesPerSecond) {
+        files.ratePerSecond(checkRate(filesPerSecond, "Files per second"));
+    }
+
+    /**
+     * Blocks until accessing another file is within the budget.
+     */
+    void acquireFile() {
+        files.acquire(1);
+    }
+
+    /**
+     * Accounts for bytes which have been read, blocking until the budget has been restored.
+     */
+    void acquireBytes(long count) {
+        bytes.acquire(count);
+    }
+
+    private static long checkRate(long rate, String name) {
+        if (rate < 0) {
+            throw new IllegalArgumentException(name + " must not be negative.");
+        }
+        return rate;
+    }
+
+    public static IoBudget unlimited() {
+        return new IoBudget(UNLIMITED, UNLIMITED);
+    }
+
+    public static IoBudget of(long bytesPerSecond, long filesPerSecond) {
+        return new IoBudget(checkRate(bytesPerSecond, "Bytes per second"),
+                            checkRate(filesPerSecond, "Files per second"));
+    }
+}
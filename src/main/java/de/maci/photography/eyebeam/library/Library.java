@@ -20,7 +20,10 @@ import de.maci.photography.eyebeam.library.metadata.MetadataAccessor;
 import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
 
 import javax.annotation.Nonnull;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
@@ -37,6 +40,8 @@ public class Library implements MetadataAccessor {
 
     private final ReentrantLock reindexingLock = new ReentrantLock();
 
+    private CompletableFuture<ReindexingResult> runningReindexing = null;
+
     private Library(@Nonnull LibraryDataStore dataStore, @Nonnull LibraryConfiguration configuration) {
         requireNonNull(dataStore, "Data store must not be null.");
         requireNonNull(configuration, "Configuration must not be null.");
@@ -60,6 +65,10 @@ public class Library implements MetadataAccessor {
         return reindexingLock.tryLock();
     }
 
+    void awaitLockForReindexing() {
+        reindexingLock.lock();
+    }
+
     void unlock() {
         reindexingLock.unlock();
     }
@@ -68,10 +77,64 @@ public class Library implements MetadataAccessor {
         return reindexingLock.isLocked();
     }
 
+    /**
+     * Registers a reindexing as running, unless another reindexing is running already.
+     *
+     * @param reindexing The reindexing to be registered.
+     * @return The running reindexing, which is the given one if it has been registered.
+     */
+    synchronized CompletableFuture<ReindexingResult> registerReindexing(
+            CompletableFuture<ReindexingResult> reindexing) {
+        if (runningReindexing == null) {
+            runningReindexing = reindexing;
+        }
+        return runningReindexing;
+    }
+
+    synchronized void unregisterReindexing(CompletableFuture<ReindexingResult> reindexing) {
+        if (runningReindexing == reindexing) {
+            runningReindexing = null;
+        }
+    }
+
     public LibraryReindexer createReindexer() {
         return LibraryReindexer.newInstance(this, configuration);
     }
 
+    /**
+     * Creates a watcher keeping the library up to date with changes of its root folder. The watcher has to be started
+     * explicitly.
+     *
+     * @return The new watcher.
+     */
+    public LibraryWatcher createWatcher() {
+        return LibraryWatcher.newInstance(this, configuration);
+    }
+
+    /**
+     * Looks up the byte-identical copies of a photo. Requires content hashing to be enabled while reindexing.
+     *
+     * @param photo The corresponding photo.
+     * @return All other photos with the same content hash.
+     */
+    public Set<Photo> duplicatesOf(@Nonnull Photo photo) {
+        requireNonNull(photo, "Corresponding photo must not be null.");
+        Set<Photo> duplicates = dataStore.metadataOf(photo)
+                                         .flatMap(Metadata::contentHash)
+                                         .map(dataStore::photosWithContentHash)
+                                         .map(HashSet::new)
+                                         .orElseGet(HashSet::new);
+        duplicates.remove(photo);
+        return duplicates;
+    }
+
+    /**
+     * @return All groups of byte-identical photos. Requires content hashing to be enabled while reindexing.
+     */
+    public Stream<Set<Photo>> duplicates() {
+        return dataStore.duplicates();
+    }
+
     public void clear() {
         dataStore.clear();
     }
@@ -33,6 +33,14 @@ public interface LibraryConfiguration {
 
     Optional<Predicate<Path>> fileFilter();
 
+    /**
+     * Returns the factory creating the metadata reader of each thread reading metadata, which creates a
+     * {@link DefaultMetadataReader} by default. Returning a single shared
+     * {@link de.maci.photography.eyebeam.library.metadata.MetadataReaderRegistry} instead enables readers per format
+     * as well as collecting metrics per format.
+     *
+     * @return The factory of metadata readers.
+     */
     default Supplier<MetadataReader> metadataReader() {
         return () -> new DefaultMetadataReader();
     }
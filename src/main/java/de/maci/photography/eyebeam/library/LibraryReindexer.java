@@ -15,16 +15,45 @@
  */
 package de.maci.photography.eyebeam.library;
 
+import de.maci.photography.eyebeam.library.indexing.DirectoryState;
 import de.maci.photography.eyebeam.library.indexing.FilesystemScanner;
+import de.maci.photography.eyebeam.library.indexing.ScannedFile;
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
+import de.maci.photography.eyebeam.library.metadata.FileFingerprint;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
 import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+import de.maci.photography.eyebeam.library.metadata.MetadataReadingException;
 import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
+import de.maci.photography.eyebeam.library.storage.persistent.Persistable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.groupingBy;
 
 /**
  * @author Daniel Götten <daniel.goetten@googlemail.com>
@@ -38,23 +67,656 @@ public class LibraryReindexer {
         boolean check(Photo photo);
     }
 
+    public static final class Options {
+
+        public static final int DEFAULT_PARALLELISM = 1;
+        public static final int DEFAULT_SCAN_PARALLELISM = 1;
+        public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+        public static final int DEFAULT_BATCH_SIZE = 1024;
+        public static final Duration DEFAULT_PROGRESS_REPORTING_INTERVAL = Duration.ofSeconds(1);
+        public static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.ofMinutes(1);
+        public static final Duration DEFAULT_EXTRACTION_RETRY_INTERVAL = Duration.ofDays(7);
+
+        private int parallelism = DEFAULT_PARALLELISM;
+        private int scanParallelism = DEFAULT_SCAN_PARALLELISM;
+        private boolean incremental = false;
+        private boolean pipelined = false;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private Duration progressReportingInterval = DEFAULT_PROGRESS_REPORTING_INTERVAL;
+        private Path checkpointFile = null;
+        private Duration checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        private Duration extractionRetryInterval = DEFAULT_EXTRACTION_RETRY_INTERVAL;
+        private IoBudget ioBudget = IoBudget.unlimited();
+        private boolean contentHashing = false;
+        private Path directoryStateFile = null;
+
+        private Options() {
+            super();
+        }
+
+        private Options(Options other) {
+            this.parallelism = other.parallelism;
+            this.scanParallelism = other.scanParallelism;
+            this.incremental = other.incremental;
+            this.pipelined = other.pipelined;
+            this.queueCapacity = other.queueCapacity;
+            this.batchSize = other.batchSize;
+            this.progressReportingInterval = other.progressReportingInterval;
+            this.checkpointFile = other.checkpointFile;
+            this.checkpointInterval = other.checkpointInterval;
+            this.extractionRetryInterval = other.extractionRetryInterval;
+            this.ioBudget = other.ioBudget;
+            this.contentHashing = other.contentHashing;
+            this.directoryStateFile = other.directoryStateFile;
+        }
+
+        public static Options newInstance() {
+            return new Options();
+        }
+
+        /**
+         * Sets the number of worker threads reading metadata. Each worker uses a {@link MetadataReader} of its own,
+         * obtained from {@link LibraryConfiguration#metadataReader()}.
+         *
+         * @param parallelism The number of worker threads, <code>1</code> reads metadata on the calling thread.
+         * @return The modified options.
+         */
+        public Options parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be larger than 0.");
+            }
+            Options options = new Options(this);
+            options.parallelism = parallelism;
+            return options;
+        }
+
+        /**
+         * Sets the number of threads scanning the root folder, see {@link FilesystemScanner.Options#parallelism(int)}.
+         *
+         * @param scanParallelism The number of scanning threads, <code>1</code> scans on a single thread.
+         * @return The modified options.
+         */
+        public Options scanParallelism(int scanParallelism) {
+            if (scanParallelism < 1) {
+                throw new IllegalArgumentException("Scan parallelism must be larger than 0.");
+            }
+            Options options = new Options(this);
+            options.scanParallelism = scanParallelism;
+            return options;
+        }
+
+        /**
+         * Enables the incremental mode, which compares the {@link FileFingerprint} of present metadata with the file
+         * attributes read while scanning. Only photos without metadata or whose files have been changed since their
+         * metadata has been extracted are refreshed, the {@link ReindexingNecessaryDecision} is not consulted.
+         *
+         * @param flag <code>true</code>, if the library should be reindexed incrementally.
+         * @return The modified options.
+         */
+        public Options incremental(boolean flag) {
+            Options options = new Options(this);
+            options.incremental = flag;
+            return options;
+        }
+
+        /**
+         * Enables the pipelined mode, in which the library's root folder is scanned on a separate thread while the
+         * metadata of photos found so far is already read. Otherwise, the whole root folder is scanned before the
+         * first metadata is read.
+         *
+         * @param flag <code>true</code>, if scanning and reading metadata should overlap.
+         * @return The modified options.
+         */
+        public Options pipelined(boolean flag) {
+            Options options = new Options(this);
+            options.pipelined = flag;
+            return options;
+        }
+
+        /**
+         * Sets the number of scanned files which may be queued in pipelined mode. Scanning is blocked while the queue
+         * is full.
+         *
+         * @param queueCapacity The capacity of the queue.
+         * @return The modified options.
+         */
+        public Options queueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("Queue capacity must be larger than 0.");
+            }
+            Options options = new Options(this);
+            options.queueCapacity = queueCapacity;
+            return options;
+        }
+
+        /**
+         * Sets the number of photos and metadata written to the data store at once.
+         *
+         * @param batchSize The batch size.
+         * @return The modified options.
+         */
+        public Options batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be larger than 0.");
+            }
+            Options options = new Options(this);
+            options.batchSize = batchSize;
+            return options;
+        }
+
+        /**
+         * Sets the minimum interval between two progress reports passed to a {@link ReindexingListener}.
+         *
+         * @param progressReportingInterval The reporting interval.
+         * @return The modified options.
+         */
+        public Options progressReportingInterval(@Nonnull Duration progressReportingInterval) {
+            requireNonNull(progressReportingInterval, "Progress reporting interval must not be null.");
+            if (progressReportingInterval.isNegative()) {
+                throw new IllegalArgumentException("Progress reporting interval must not be negative.");
+            }
+            Options options = new Options(this);
+            options.progressReportingInterval = progressReportingInterval;
+            return options;
+        }
+
+        /**
+         * Enables checkpoints. While reading metadata, the data store is periodically flushed if it is
+         * {@link Persistable} and a checkpoint is written to the given file. If a reindexing is interrupted, e.g.
+         * by cancelling it or by a restart, the next reindexing using the same checkpoint file does not read the
+         * metadata of photos again that has already been read by the interrupted reindexing.
+         *
+         * @param checkpointFile The checkpoint file, which is deleted once a reindexing has been completed.
+         * @return The modified options.
+         */
+        public Options checkpointFile(@Nonnull Path checkpointFile) {
+            requireNonNull(checkpointFile, "Checkpoint file must not be null.");
+            Options options = new Options(this);
+            options.checkpointFile = checkpointFile;
+            return options;
+        }
+
+        /**
+         * Sets the interval between two checkpoints.
+         *
+         * @param checkpointInterval The checkpoint interval.
+         * @return The modified options.
+         */
+        public Options checkpointInterval(@Nonnull Duration checkpointInterval) {
+            requireNonNull(checkpointInterval, "Checkpoint interval must not be null.");
+            if (checkpointInterval.isNegative()) {
+                throw new IllegalArgumentException("Checkpoint interval must not be negative.");
+            }
+            Options options = new Options(this);
+            options.checkpointInterval = checkpointInterval;
+            return options;
+        }
+
+        /**
+         * Sets the interval after which reading the metadata of a photo is retried, if it has failed or the photo
+         * does not contain EXIF data. Until then, the photo is only refreshed if its file has been changed,
+         * regardless of the {@link ReindexingNecessaryDecision}.
+         *
+         * @param extractionRetryInterval The retry interval, {@link Duration#ZERO} always retries.
+         * @return The modified options.
+         */
+        public Options extractionRetryInterval(@Nonnull Duration extractionRetryInterval) {
+            requireNonNull(extractionRetryInterval, "Extraction retry interval must not be null.");
+            if (extractionRetryInterval.isNegative()) {
+                throw new IllegalArgumentException("Extraction retry interval must not be negative.");
+            }
+            Options options = new Options(this);
+            options.extractionRetryInterval = extractionRetryInterval;
+            return options;
+        }
+
+        /**
+         * Limits the rate at which files are scanned and their metadata is read. The limits of the budget can be
+         * adjusted while a reindexing is running.
+         *
+         * @param ioBudget The I/O budget.
+         * @return The modified options.
+         */
+        public Options ioBudget(@Nonnull IoBudget ioBudget) {
+            requireNonNull(ioBudget, "I/O budget must not be null.");
+            Options options = new Options(this);
+            options.ioBudget = ioBudget;
+            return options;
+        }
+
+        /**
+         * Enables content hashing, which hashes the content of each file whose metadata is read, allowing to find
+         * duplicates. Files are hashed by the metadata reading workers. Photos whose files have not been changed
+         * since they have been hashed keep their content hash, photos without a content hash are refreshed.
+         *
+         * @param flag <code>true</code>, if the content of files should be hashed.
+         * @return The modified options.
+         */
+        public Options contentHashing(boolean flag) {
+            Options options = new Options(this);
+            options.contentHashing = flag;
+            return options;
+        }
+
+        /**
+         * Enables skipping unchanged directories in incremental mode. The state of all directories seen while
+         * scanning is written to the given file once a reindexing has been completed. The next reindexing does not
+         * list the directories whose state is unchanged, but keeps the photos already known to be located in them.
+         * Has no effect unless the incremental mode is enabled.
+         * <p>
+         * Photos located in unchanged directories are still retried if reading their metadata has failed, and hashed
+         * if content hashing is enabled but their content hash is missing. Modifying a file in place does not change
+         * the state of its directory, see {@link DirectoryState}. The file should be deleted if the file filter of the
+         * library is changed.
+         *
+         * @param directoryStateFile The file the state of the directories is kept in.
+         * @return The modified options.
+         */
+        public Options directoryStateFile(@Nonnull Path directoryStateFile) {
+            requireNonNull(directoryStateFile, "Directory state file must not be null.");
+            Options options = new Options(this);
+            options.directoryStateFile = directoryStateFile;
+            return options;
+        }
+    }
+
+    private static final class ReindexingCancelledException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private ReindexingCancelledException() {
+            super("Reindexing has been cancelled.");
+        }
+    }
+
+    /**
+     * The state of a single reindexing run. Except for the metadata extraction workers and the scanner in pipelined
+     * mode, a run is only accessed by the reindexing thread.
+     */
+    private class Run {
+
+        private final Path rootFolder = rootFolder();
+        private final LibraryDataStore dataStore = library.dataStore();
+        private final ProgressTracker progress = new ProgressTracker(listener, options.progressReportingInterval);
+        private final Map<Photo, Metadata> pendingMetadata = new LinkedHashMap<>();
+        private final Map<Photo, ContentHash> knownContentHashes = new HashMap<>();
+        private final long generation = dataStore.nextGeneration();
+        private final DirectoryState directoryState;
+
+        private final Instant startedAt;
+        private final Instant resumedFrom;
+        private final long startedAtNanos = System.nanoTime();
+        private final Instant now = Instant.now();
+
+        private long added = 0;
+        private long updated = 0;
+        private long removed = 0;
+        private long failed = 0;
+
+        private long nextCheckpointAt = System.nanoTime() + options.checkpointInterval.toNanos();
+        private Map<Path, List<Photo>> knownPhotosByDirectory = null;
+
+        private Run(Optional<ReindexingCheckpoint> checkpoint, Optional<DirectoryState> directoryState) {
+            this.directoryState = directoryState.orElse(null);
+            this.resumedFrom = checkpoint.map(ReindexingCheckpoint::startedAt).orElse(null);
+            this.startedAt = resumedFrom != null ? resumedFrom : Instant.now();
+        }
+
+        ReindexingResult execute() throws IOException {
+            boolean cancelled = false;
+            try {
+                if (options.pipelined) {
+                    executePipelined();
+                } else {
+                    Map<Photo, FileFingerprint> photosWithMetadataToBeRefreshed = checkForNewPhotos();
+                    removeDeletedPhotos();
+                    updateMetadata(photosWithMetadataToBeRefreshed);
+                }
+                if (options.checkpointFile != null) {
+                    ReindexingCheckpoint.delete(options.checkpointFile);
+                }
+                if (directoryState != null) {
+                    writeDirectoryState();
+                }
+            } catch (ReindexingCancelledException e) {
+                logger.info("Reindexing has been cancelled.");
+                // Metadata extracted before cancelling is kept, even if no checkpoint is written
+                storeMetadata();
+                writeCheckpoint();
+                cancelled = true;
+            } finally {
+                progress.report();
+            }
+            return new ReindexingResult(added, updated, removed, failed,
+                                        Duration.ofNanos(System.nanoTime() - startedAtNanos), cancelled);
+        }
+
+        private Map<Photo, FileFingerprint> checkForNewPhotos() throws IOException {
+            Map<Photo, FileFingerprint> photosWithMetadataToBeRefreshed = new LinkedHashMap<>();
+            List<ScannedFile> scannedFiles = new ArrayList<>(options.batchSize);
+
+            BiConsumer<Path, BasicFileAttributes> matchingPathHandler = (path, attributes) -> {
+                checkCancellation();
+                options.ioBudget.acquireFile();
+                scannedFiles.add(ScannedFile.of(path, attributes));
+                progress.fileScanned();
+                if (scannedFiles.size() >= options.batchSize) {
+                    storeScannedFiles(scannedFiles, photosWithMetadataToBeRefreshed::put);
+                }
+            };
+
+            progress.phaseStarted(ReindexingPhase.SCANNING);
+            if (directoryState != null) {
+                createScanner(fileFilter()).scan(rootFolder, directoryState, matchingPathHandler, directory -> {
+                    markPhotosOfUnchangedDirectory(directory, revisitedFile -> matchingPathHandler.accept(
+                            revisitedFile.path(), revisitedFile.attributes()));
+                });
+            } else {
+                createScanner(fileFilter()).scan(rootFolder, matchingPathHandler);
+            }
+            storeScannedFiles(scannedFiles, photosWithMetadataToBeRefreshed::put);
+            progress.phaseCompleted(ReindexingPhase.SCANNING);
+            return photosWithMetadataToBeRefreshed;
+        }
+
+        private void updateMetadata(Map<Photo, FileFingerprint> photosWithMetadataToBeRefreshed) throws IOException {
+            progress.phaseStarted(ReindexingPhase.EXTRACTING);
+            try (MetadataExtraction extraction = createExtraction()) {
+                for (Map.Entry<Photo, FileFingerprint> entry : photosWithMetadataToBeRefreshed.entrySet()) {
+                    checkCancellation();
+                    Photo photo = entry.getKey();
+                    extraction.submit(photo, entry.getValue(), knownContentHashes.remove(photo));
+                    storeMetadataIfBatchIsComplete();
+                    writeCheckpointIfDue();
+                }
+                extraction.awaitCompletion();
+                storeMetadata();
+            }
+            progress.phaseCompleted(ReindexingPhase.EXTRACTING);
+        }
+
+        private void executePipelined() throws IOException {
+            List<ScannedFile> scannedFiles = new ArrayList<>(options.batchSize);
+            List<Path> unchangedDirectories = new ArrayList<>();
+
+            progress.phaseStarted(ReindexingPhase.SCANNING);
+            progress.phaseStarted(ReindexingPhase.EXTRACTING);
+            try (BackgroundScan scan = BackgroundScan.start(createScanner(fileFilter()),
+                                                            rootFolder,
+                                                            options.queueCapacity,
+                                                            options.ioBudget,
+                                                            directoryState);
+                 MetadataExtraction extraction = createExtraction()) {
+                BiConsumer<Photo, FileFingerprint> submitter = (photo, fingerprint) -> {
+                    checkCancellation();
+                    extraction.submit(photo, fingerprint, knownContentHashes.remove(photo));
+                };
+                while (scan.drainTo(scannedFiles, options.batchSize)) {
+                    markPhotosOfUnchangedDirectories(scan, unchangedDirectories, scannedFiles);
+                    scannedFiles.forEach(scannedFile -> progress.fileScanned());
+                    storeScannedFiles(scannedFiles, submitter);
+                    storeMetadataIfBatchIsComplete();
+                    writeCheckpointIfDue();
+                }
+                markPhotosOfUnchangedDirectories(scan, unchangedDirectories, scannedFiles);
+                scannedFiles.forEach(scannedFile -> progress.fileScanned());
+                storeScannedFiles(scannedFiles, submitter);
+                progress.phaseCompleted(ReindexingPhase.SCANNING);
+                extraction.awaitCompletion();
+                storeMetadata();
+            }
+            progress.phaseCompleted(ReindexingPhase.EXTRACTING);
+            removeDeletedPhotos();
+        }
+
+        /**
+         * Stores and marks a batch of scanned files, handing the photos whose metadata has to be read to the given
+         * consumer together with the fingerprint of their files taken while scanning. The batch is cleared
+         * afterwards.
+         */
+        private void storeScannedFiles(List<ScannedFile> scannedFiles,
+                                       BiConsumer<Photo, FileFingerprint> photosToBeRefreshed) {
+            List<Photo> photos = new ArrayList<>(scannedFiles.size());
+            for (ScannedFile scannedFile : scannedFiles) {
+                photos.add(Photo.locatedAt(rootFolder.relativize(scannedFile.path())));
+            }
+            added += dataStore.storeAll(photos);
+            dataStore.markAll(photos, generation);
+
+            for (int i = 0; i < photos.size(); i++) {
+                Photo photo = photos.get(i);
+                BasicFileAttributes attributes = scannedFiles.get(i).attributes();
+                if (reindexingNecessary(photo, attributes)) {
+                    if (options.contentHashing) {
+                        contentHashOfUnchangedFile(photo, attributes)
+                                .ifPresent(contentHash -> knownContentHashes.put(photo, contentHash));
+                    }
+                    photosToBeRefreshed.accept(photo, FileFingerprint.of(attributes));
+                }
+            }
+            scannedFiles.clear();
+        }
+
+        private void markPhotosOfUnchangedDirectories(BackgroundScan scan,
+                                                      List<Path> unchangedDirectories,
+                                                      List<ScannedFile> revisitedFiles) {
+            scan.drainUnchangedDirectoriesTo(unchangedDirectories);
+            unchangedDirectories.forEach(directory -> markPhotosOfUnchangedDirectory(directory, revisitedFiles::add));
+            unchangedDirectories.clear();
+        }
+
+        /**
+         * Marks the photos known to be located directly in a directory which has not been listed, as its entries
+         * have not been changed since the previous reindexing. Photos whose metadata could not be read or whose
+         * content hash is missing are handed to the given consumer, so they are treated like freshly scanned files.
+         */
+        private void markPhotosOfUnchangedDirectory(Path directory, Consumer<ScannedFile> revisitedFiles) {
+            if (knownPhotosByDirectory == null) {
+                knownPhotosByDirectory = library.photos().collect(groupingBy(LibraryReindexer::directoryOf));
+            }
+            List<Photo> photos = knownPhotosByDirectory.remove(rootFolder.relativize(directory));
+            if (photos != null) {
+                checkCancellation();
+                dataStore.markAll(photos, generation);
+                for (Photo photo : photos) {
+                    if (revisitNecessary(photo)) {
+                        revisit(photo, revisitedFiles);
+                    }
+                }
+            }
+        }
+
+        private boolean revisitNecessary(Photo photo) {
+            return dataStore.extractionFailureOf(photo).isPresent()
+                    || options.contentHashing && !contentHashExists(photo);
+        }
+
+        private void revisit(Photo photo, Consumer<ScannedFile> revisitedFiles) {
+            Path path = rootFolder.resolve(photo.path());
+            try {
+                revisitedFiles.accept(ScannedFile.of(path, Files.readAttributes(path, BasicFileAttributes.class)));
+            } catch (IOException e) {
+                // Kept until its directory is listed again
+                logger.debug(String.format("Failed to read file attributes of '%s'.", photo.path()), e);
+            }
+        }
+
+        private MetadataExtraction createExtraction() {
+            return MetadataExtraction.newInstance(rootFolder,
+                                                  libraryConfiguration.metadataReader(),
+                                                  options.parallelism,
+                                                  options.ioBudget,
+                                                  options.contentHashing,
+                                                  (photo, metadata, bytesRead) -> {
+                                                      pendingMetadata.put(photo, metadata);
+                                                      progress.fileExtracted(bytesRead);
+                                                  },
+                                                  this::extractionFailed);
+        }
+
+        /**
+         * Records a failure together with the fingerprint taken while scanning, so the file is not retried before
+         * the retry interval has expired unless it is changed.
+         */
+        private void extractionFailed(Photo photo, FileFingerprint fingerprint, MetadataReadingException e) {
+            logger.warn(String.format("Failed to read metadata of '%s'.", photo.path()), e);
+            progress.failure();
+            failed++;
+            dataStore.recordExtractionFailure(photo, ExtractionFailure.of(fingerprint, String.valueOf(e.getMessage())));
+        }
+
+        private void storeMetadataIfBatchIsComplete() {
+            if (pendingMetadata.size() >= options.batchSize) {
+                storeMetadata();
+            }
+        }
+
+        private void storeMetadata() {
+            dataStore.replaceMetadataAll(pendingMetadata);
+            pendingMetadata.forEach((photo, metadata) -> {
+                if (!metadata.exifData().isPresent()) {
+                    dataStore.recordExtractionFailure(photo, ExtractionFailure.of(metadata.fingerprint().orElse(null),
+                                                                                  NO_EXIF_DATA));
+                }
+            });
+            updated += pendingMetadata.size();
+            pendingMetadata.clear();
+        }
+
+        /**
+         * Removes all photos which have not been seen while scanning, i.e. whose files have been deleted or do not
+         * match the file filter anymore.
+         */
+        private void removeDeletedPhotos() {
+            progress.phaseStarted(ReindexingPhase.PRUNING);
+            removed = dataStore.sweep(generation);
+            progress.phaseCompleted(ReindexingPhase.PRUNING);
+        }
+
+        private boolean reindexingNecessary(Photo photo, BasicFileAttributes attributes) {
+            if (resumedFrom != null && extractedSinceResumedReindexingHasBeenStarted(photo)) {
+                return false;
+            }
+            if (extractionFailureIsStillValid(photo, attributes)) {
+                return false;
+            }
+            if (options.contentHashing && !contentHashExists(photo)) {
+                return true;
+            }
+            if (options.incremental) {
+                return !fileIsUnchanged(photo, attributes);
+            }
+            return reindexingNecessaryDecision.check(photo);
+        }
+
+        private boolean extractedSinceResumedReindexingHasBeenStarted(Photo photo) {
+            return dataStore.metadataOf(photo)
+                            .map(metadata -> !metadata.extractedAt().isBefore(resumedFrom))
+                            .orElse(false);
+        }
+
+        private boolean extractionFailureIsStillValid(Photo photo, BasicFileAttributes attributes) {
+            return dataStore.extractionFailureOf(photo)
+                            .map(failure -> failure.isStillValid(attributes, options.extractionRetryInterval, now))
+                            .orElse(false);
+        }
+
+        private boolean contentHashExists(Photo photo) {
+            return dataStore.metadataOf(photo).flatMap(Metadata::contentHash).isPresent();
+        }
+
+        private Optional<ContentHash> contentHashOfUnchangedFile(Photo photo, BasicFileAttributes attributes) {
+            return dataStore.metadataOf(photo)
+                            .filter(metadata -> metadata.fingerprint()
+                                                        .map(fingerprint -> fingerprint.matches(attributes))
+                                                        .orElse(false))
+                            .flatMap(Metadata::contentHash);
+        }
+
+        private boolean fileIsUnchanged(Photo photo, BasicFileAttributes attributes) {
+            return dataStore.metadataOf(photo)
+                            .flatMap(Metadata::fingerprint)
+                            .map(fingerprint -> fingerprint.matches(attributes))
+                            .orElse(false);
+        }
+
+        private void checkCancellation() {
+            if (cancellationRequested) {
+                throw new ReindexingCancelledException();
+            }
+        }
+
+        private void writeCheckpointIfDue() throws IOException {
+            if (options.checkpointFile != null && System.nanoTime() - nextCheckpointAt >= 0) {
+                writeCheckpoint();
+                nextCheckpointAt = System.nanoTime() + options.checkpointInterval.toNanos();
+            }
+        }
+
+        private void writeCheckpoint() throws IOException {
+            if (options.checkpointFile == null) {
+                return;
+            }
+            storeMetadata();
+            if (dataStore instanceof Persistable) {
+                ((Persistable) dataStore).flush();
+            }
+            ReindexingCheckpoint.startedAt(startedAt).writeTo(options.checkpointFile);
+        }
+
+        /**
+         * Writes the directory state after flushing the data store, as skipping a directory relies on the photos
+         * located in it being known.
+         */
+        private void writeDirectoryState() throws IOException {
+            if (dataStore instanceof Persistable) {
+                ((Persistable) dataStore).flush();
+            }
+            directoryState.writeTo(options.directoryStateFile);
+        }
+    }
+
+    private static final String NO_EXIF_DATA = "No EXIF data found.";
+    private static final Path ROOT_DIRECTORY = Paths.get("");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     private final Library library;
     private final LibraryConfiguration libraryConfiguration;
 
     private final ReindexingNecessaryDecision reindexingNecessaryDecision;
+    private final Options options;
+    private final ReindexingListener listener;
+
+    private volatile boolean cancellationRequested = false;
 
     // Visible for testing
     protected LibraryReindexer(Library library,
                                LibraryConfiguration libraryConfiguration,
                                ReindexingNecessaryDecision reindexingNecessaryDecision) {
+        this(library, libraryConfiguration, reindexingNecessaryDecision, Options.newInstance(),
+             new ReindexingListener() {});
+    }
+
+    private LibraryReindexer(Library library,
+                             LibraryConfiguration libraryConfiguration,
+                             ReindexingNecessaryDecision reindexingNecessaryDecision,
+                             Options options,
+                             ReindexingListener listener) {
         this.library = library;
         this.libraryConfiguration = libraryConfiguration;
         this.reindexingNecessaryDecision = reindexingNecessaryDecision;
+        this.options = options;
+        this.listener = listener;
     }
 
     // Visible for testing
     protected FilesystemScanner createScanner(Predicate<Path> fileFilter) {
-        return FilesystemScanner.newInstance(fileFilter, FilesystemScanner.Options.newInstance().followSymlinks(true));
+        return FilesystemScanner.newInstance(fileFilter,
+                                             FilesystemScanner.Options.newInstance()
+                                                                      .followSymlinks(true)
+                                                                      .parallelism(options.scanParallelism));
     }
 
     private Path rootFolder() {
@@ -65,44 +727,124 @@ public class LibraryReindexer {
         return libraryConfiguration.fileFilter().orElse(p -> true);
     }
 
-    public void reindexLibrary() {
-        if (library.lockForReindexing()) {
+    /**
+     * Reindexes the library, blocking until the reindexing has been completed. If the library is being reindexed
+     * already, the running reindexing is joined instead of starting another one.
+     *
+     * @return The result of the reindexing.
+     */
+    public ReindexingResult reindexLibrary() {
+        try {
+            return reindexLibraryAsync(Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Reindexes the library using the given executor. If the library is being reindexed already, the running
+     * reindexing is joined instead of starting another one, regardless of the options it has been started with.
+     * <p>
+     * Cancelling the returned future cancels the reindexing, unless it has been joined.
+     *
+     * @param executor The executor running the reindexing.
+     * @return The result of the reindexing.
+     */
+    public CompletableFuture<ReindexingResult> reindexLibraryAsync(@Nonnull Executor executor) {
+        requireNonNull(executor, "Executor must not be null.");
+
+        CompletableFuture<ReindexingResult> reindexing = new CompletableFuture<>();
+        CompletableFuture<ReindexingResult> runningReindexing = library.registerReindexing(reindexing);
+        if (runningReindexing != reindexing) {
+            return runningReindexing.thenApply(identity());
+        }
+
+        cancellationRequested = false;
+        reindexing.whenComplete((result, failure) -> {
+            if (reindexing.isCancelled()) {
+                cancel();
+            }
+        });
+        try {
+            executor.execute(() -> run(reindexing));
+        } catch (RejectedExecutionException e) {
+            library.unregisterReindexing(reindexing);
+            reindexing.completeExceptionally(e);
+        }
+        return reindexing;
+    }
+
+    private void run(CompletableFuture<ReindexingResult> reindexing) {
+        ReindexingResult result = null;
+        Throwable failure = null;
+        try {
+            library.awaitLockForReindexing();
             try {
-                checkForNewPhotos();
-                updateMetadata();
-            } catch (IOException e) {
-                throw new IllegalStateException(e);
+                result = new Run(readCheckpoint(), readDirectoryState()).execute();
             } finally {
                 library.unlock();
             }
+        } catch (IOException e) {
+            failure = new IllegalStateException(e);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        } finally {
+            // Unregister first, so the reindexing can be restarted as soon as its result is available
+            library.unregisterReindexing(reindexing);
         }
-    }
 
-    private void checkForNewPhotos() throws IOException {
-        Path rootFolder = rootFolder();
+        if (failure != null) {
+            reindexing.completeExceptionally(failure);
+        } else {
+            reindexing.complete(result);
+        }
+    }
 
-        createScanner(fileFilter())
-                .scan(rootFolder,
-                      path -> library.dataStore().store(Photo.locatedAt(rootFolder.relativize(path))));
+    /**
+     * Requests the cancellation of the reindexing currently run by this reindexer. The reindexing stops as soon as
+     * possible, writing a checkpoint if checkpoints are enabled.
+     */
+    public void cancel() {
+        cancellationRequested = true;
     }
 
-    private void updateMetadata() {
-        Path rootFolder = rootFolder();
-        MetadataReader metadataReader = libraryConfiguration.metadataReader().get();
+    private Optional<ReindexingCheckpoint> readCheckpoint() throws IOException {
+        if (options.checkpointFile == null) {
+            return Optional.empty();
+        }
+        return ReindexingCheckpoint.readFrom(options.checkpointFile);
+    }
 
-        photosWithMetadataToBeRefreshed()
-                .forEach(photo -> {
-                    Metadata metadata = metadataReader.readFrom(rootFolder.resolve(photo.path()));
-                    library.dataStore().replaceMetadata(photo, metadata);
-                });
+    private Optional<DirectoryState> readDirectoryState() throws IOException {
+        if (options.directoryStateFile == null || !options.incremental) {
+            return Optional.empty();
+        }
+        return Optional.of(DirectoryState.readFrom(options.directoryStateFile));
     }
 
-    private Stream<Photo> photosWithMetadataToBeRefreshed() {
-        return library.photos().filter(photo -> reindexingNecessaryDecision.check(photo));
+    private static Path directoryOf(Photo photo) {
+        Path directory = photo.path().getParent();
+        return directory != null ? directory : ROOT_DIRECTORY;
     }
 
     public LibraryReindexer withCustomReindexingNecessaryDecision(@Nonnull ReindexingNecessaryDecision decision) {
-        return new LibraryReindexer(library, libraryConfiguration, decision);
+        return new LibraryReindexer(library, libraryConfiguration, decision, options, listener);
+    }
+
+    public LibraryReindexer withOptions(@Nonnull Options options) {
+        requireNonNull(options, "Options must not be null.");
+        return new LibraryReindexer(library, libraryConfiguration, reindexingNecessaryDecision, options, listener);
+    }
+
+    public LibraryReindexer withListener(@Nonnull ReindexingListener listener) {
+        requireNonNull(listener, "Listener must not be null.");
+        return new LibraryReindexer(library, libraryConfiguration, reindexingNecessaryDecision, options, listener);
     }
 
     static LibraryReindexer newInstance(@Nonnull Library library,
@@ -0,0 +1,397 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import de.maci.photography.eyebeam.library.indexing.FilesystemScanner;
+import de.maci.photography.eyebeam.library.metadata.FileFingerprint;
+import de.maci.photography.eyebeam.library.metadata.Metadata;
+import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+import de.maci.photography.eyebeam.library.metadata.MetadataReadingException;
+import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Keeps a library up to date by watching its root folder for changes, which is an alternative to regularly
+ * reindexing the whole library.
+ * <p>
+ * Changes are collected until no further change has been reported for the debounce window. The collected changes are
+ * coalesced per path and applied as a single batch while holding the library's reindexing lock. If the file system
+ * reports that changes have been lost, the affected directory is rescanned, once for all directories below it.
+ * Directories which have been deleted or moved out of the root folder are not watched anymore.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 27.02.16
+ */
+public class LibraryWatcher implements Closeable {
+
+    public static final Duration DEFAULT_DEBOUNCE_WINDOW = Duration.ofMillis(500);
+
+    private static final int MAX_PENDING_CHANGES = 10000;
+
+    private enum Change {
+        CREATED_OR_MODIFIED, DELETED, OVERFLOWED
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Library library;
+    private final LibraryConfiguration libraryConfiguration;
+    private final Duration debounceWindow;
+
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Set<Path> watchedPaths = new HashSet<>();
+    private final Map<Path, Change> pendingChanges = new LinkedHashMap<>();
+
+    /**
+     * The paths of all photos, sorted so the photos located below a directory form a range. Built when needed while
+     * applying a batch of changes and kept up to date until the batch has been applied.
+     */
+    private NavigableSet<String> photoPaths;
+
+    private WatchService watchService;
+    private MetadataReader metadataReader;
+    private Thread thread;
+
+    private volatile boolean running = false;
+
+    private LibraryWatcher(Library library, LibraryConfiguration libraryConfiguration, Duration debounceWindow) {
+        this.library = library;
+        this.libraryConfiguration = libraryConfiguration;
+        this.debounceWindow = debounceWindow;
+    }
+
+    private Path rootFolder() {
+        return libraryConfiguration.rootFolder();
+    }
+
+    private Predicate<Path> fileFilter() {
+        return libraryConfiguration.fileFilter().orElse(p -> true);
+    }
+
+    /**
+     * Registers the library's root folder including all subdirectories and starts watching for changes.
+     *
+     * @return The started watcher.
+     * @throws IOException Thrown if the root folder cannot be registered.
+     */
+    public synchronized LibraryWatcher start() throws IOException {
+        if (running) {
+            throw new IllegalStateException("Watcher has already been started.");
+        }
+        watchService = rootFolder().getFileSystem().newWatchService();
+        metadataReader = libraryConfiguration.metadataReader().get();
+        registerAll(rootFolder());
+
+        running = true;
+        thread = new Thread(this::watch, "eyebeam-library-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        watchService.close();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch() {
+        try {
+            long debounceMillis = debounceWindow.toMillis();
+            while (running) {
+                WatchKey key = pendingChanges.isEmpty() ? watchService.take()
+                                                        : watchService.poll(debounceMillis, MILLISECONDS);
+                while (key != null) {
+                    collectChanges(key);
+                    key = pendingChanges.size() < MAX_PENDING_CHANGES
+                          ? watchService.poll(debounceMillis, MILLISECONDS)
+                          : null;
+                }
+                applyPendingChanges();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("Watch service has been closed.", e);
+        } finally {
+            running = false;
+        }
+    }
+
+    private void collectChanges(WatchKey key) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+            if (event.kind() == OVERFLOW) {
+                pendingChanges.put(directory, Change.OVERFLOWED);
+            } else if (event.kind() == ENTRY_DELETE) {
+                Path path = directory.resolve((Path) event.context());
+                if (watchedPaths.contains(path)) {
+                    // Deleted or moved out of the root folder, a directory created at the same path is a new one
+                    unregisterAll(path);
+                }
+                pendingChanges.remove(path);
+                pendingChanges.put(path, Change.DELETED);
+            } else {
+                Path path = directory.resolve((Path) event.context());
+                if (pendingChanges.get(path) != Change.OVERFLOWED) {
+                    pendingChanges.remove(path);
+                    pendingChanges.put(path, Change.CREATED_OR_MODIFIED);
+                }
+            }
+        }
+        if (!key.reset()) {
+            watchedPaths.remove(watchedDirectories.remove(key));
+        }
+    }
+
+    private void applyPendingChanges() {
+        if (pendingChanges.isEmpty() || !library.lockForReindexing()) {
+            return;
+        }
+        try {
+            dropChangesCoveredByRescans();
+            for (Map.Entry<Path, Change> change : pendingChanges.entrySet()) {
+                try {
+                    apply(change.getKey(), change.getValue());
+                } catch (IOException | RuntimeException e) {
+                    logger.warn(String.format("Failed to apply change of '%s'.", change.getKey()), e);
+                }
+            }
+            pendingChanges.clear();
+        } finally {
+            photoPaths = null;
+            library.unlock();
+        }
+    }
+
+    /**
+     * Drops all changes located below a directory which is rescanned, so nested directories whose changes have been
+     * lost are only rescanned once.
+     */
+    private void dropChangesCoveredByRescans() {
+        Set<Path> overflowedDirectories = pendingChanges.entrySet().stream()
+                                                        .filter(change -> change.getValue() == Change.OVERFLOWED)
+                                                        .map(Map.Entry::getKey)
+                                                        .collect(toSet());
+        if (overflowedDirectories.isEmpty()) {
+            return;
+        }
+        pendingChanges.keySet().removeIf(path -> {
+            for (Path ancestor = path.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                if (overflowedDirectories.contains(ancestor)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private void apply(Path path, Change change) throws IOException {
+        switch (change) {
+            case CREATED_OR_MODIFIED:
+                if (Files.isDirectory(path)) {
+                    if (!watchedPaths.contains(path)) {
+                        rescan(path);
+                    }
+                } else if (Files.isRegularFile(path) && fileFilter().test(path)) {
+                    Photo photo = photo(path);
+                    store(photo);
+                    refreshMetadata(photo, path, null);
+                }
+                break;
+            case DELETED:
+                removePhotosLocatedAt(path);
+                break;
+            case OVERFLOWED:
+                rescan(path);
+                break;
+        }
+    }
+
+    /**
+     * Rescans a directory, registering all of its subdirectories, adding new photos, refreshing photos whose files
+     * have been changed and removing photos whose files do not exist anymore.
+     */
+    private void rescan(Path directory) throws IOException {
+        LibraryDataStore dataStore = library.dataStore();
+        Set<Photo> seenPhotos = new HashSet<>();
+
+        registerAll(directory);
+        FilesystemScanner.newInstance(fileFilter(), FilesystemScanner.Options.newInstance().followSymlinks(true))
+                         .scan(directory, (path, attributes) -> {
+                             Photo photo = photo(path);
+                             seenPhotos.add(photo);
+                             store(photo);
+                             boolean unchanged = dataStore.metadataOf(photo)
+                                                          .flatMap(Metadata::fingerprint)
+                                                          .map(fingerprint -> fingerprint.matches(attributes))
+                                                          .orElse(false);
+                             if (!unchanged) {
+                                 refreshMetadata(photo, path, FileFingerprint.of(attributes));
+                             }
+                         });
+
+        Path relativeDirectory = rootFolder().relativize(directory);
+        removeAll(photosLocatedBelow(relativeDirectory).stream()
+                                                       .filter(photo -> !seenPhotos.contains(photo))
+                                                       .collect(toList()));
+    }
+
+    private void removePhotosLocatedAt(Path path) {
+        Photo photo = photo(path);
+        if (library.dataStore().remove(photo)) {
+            if (photoPaths != null) {
+                photoPaths.remove(photo.path().toString());
+            }
+        } else {
+            // The path might have been a directory
+            removeAll(photosLocatedBelow(photo.path()));
+        }
+    }
+
+    /**
+     * @param relativeDirectory The directory relative to the root folder, which is empty for the root folder itself.
+     * @return The photos located in the directory or any of its subdirectories.
+     */
+    private List<Photo> photosLocatedBelow(Path relativeDirectory) {
+        if (photoPaths == null) {
+            photoPaths = library.photos().map(photo -> photo.path().toString()).collect(toCollection(TreeSet::new));
+        }
+        Set<String> paths;
+        if (relativeDirectory.toString().isEmpty()) {
+            paths = photoPaths;
+        } else {
+            String prefix = relativeDirectory.toString() + relativeDirectory.getFileSystem().getSeparator();
+            paths = photoPaths.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+        return paths.stream()
+                    .map(path -> Photo.locatedAt(relativeDirectory.getFileSystem().getPath(path)))
+                    .collect(toList());
+    }
+
+    private void store(Photo photo) {
+        if (library.dataStore().store(photo) && photoPaths != null) {
+            photoPaths.add(photo.path().toString());
+        }
+    }
+
+    private void removeAll(List<Photo> photos) {
+        library.dataStore().removeAll(photos);
+        if (photoPaths != null) {
+            photos.forEach(photo -> photoPaths.remove(photo.path().toString()));
+        }
+    }
+
+    private void refreshMetadata(Photo photo, Path path, FileFingerprint fingerprint) {
+        try {
+            library.dataStore().replaceMetadata(photo, fingerprint != null ? metadataReader.readFrom(path, fingerprint)
+                                                                           : metadataReader.readFrom(path));
+        } catch (MetadataReadingException e) {
+            // The file might still be written, a subsequent modification will trigger another attempt
+            logger.debug(String.format("Failed to read metadata of '%s'.", path), e);
+        }
+    }
+
+    private void unregisterAll(Path directory) {
+        Iterator<Map.Entry<WatchKey, Path>> entries = watchedDirectories.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = entries.next();
+            if (entry.getValue().startsWith(directory)) {
+                entry.getKey().cancel();
+                watchedPaths.remove(entry.getValue());
+                entries.remove();
+            }
+        }
+    }
+
+    private void registerAll(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                watchedPaths.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private Photo photo(Path path) {
+        return Photo.locatedAt(rootFolder().relativize(path));
+    }
+
+    public LibraryWatcher withDebounceWindow(@Nonnull Duration debounceWindow) {
+        requireNonNull(debounceWindow, "Debounce window must not be null.");
+        if (debounceWindow.isNegative() || debounceWindow.isZero()) {
+            throw new IllegalArgumentException("Debounce window must be positive.");
+        }
+        return new LibraryWatcher(library, libraryConfiguration, debounceWindow);
+    }
+
+    static LibraryWatcher newInstance(@Nonnull Library library, @Nonnull LibraryConfiguration libraryConfiguration) {
+        return new LibraryWatcher(library, libraryConfiguration, DEFAULT_DEBOUNCE_WINDOW);
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
+import de.maci.photography.eyebeam.library.metadata.ContentHasher;
+import de.maci.photography.eyebeam.library.metadata.FileFingerprint;
+import de.maci.photography.eyebeam.library.metadata.Metadata;
+import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+import de.maci.photography.eyebeam.library.metadata.MetadataReadingException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the metadata of photos, either on the calling thread or using a bounded pool of worker threads.
+ * <p>
+ * Each worker owns a {@link MetadataReader} of its own and, if content hashing is enabled, a {@link ContentHasher}
+ * hashing each file right after its metadata has been read. Results and failures are always handed to the corresponding
+ * handler on the thread submitting the photos, so the handlers may safely modify a data store which is not
+ * thread-safe.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 21.02.16
+ */
+class MetadataExtraction implements AutoCloseable {
+
+    /**
+     * Receives the metadata read from a photo.
+     */
+    @FunctionalInterface
+    interface ResultHandler {
+
+        /**
+         * @param photo     The photo whose metadata has been read.
+         * @param metadata  The metadata read.
+         * @param bytesRead The number of bytes actually read from the file, including hashing its content.
+         */
+        void accept(Photo photo, Metadata metadata, long bytesRead);
+    }
+
+    /**
+     * Receives the failures to read the metadata of a photo.
+     */
+    @FunctionalInterface
+    interface FailureHandler {
+
+        /**
+         * @param photo       The photo whose metadata could not be read.
+         * @param fingerprint The fingerprint of the file taken while scanning, if known.
+         * @param failure     The failure.
+         */
+        void accept(Photo photo, @Nullable FileFingerprint fingerprint, MetadataReadingException failure);
+    }
+
+    private static final class Result {
+
+        private final Photo photo;
+        private final FileFingerprint fingerprint;
+        private final Metadata metadata;
+        private final long bytesRead;
+        private final MetadataReadingException failure;
+
+        private Result(Photo photo,
+                       FileFingerprint fingerprint,
+                       Metadata metadata,
+                       long bytesRead,
+                       MetadataReadingException failure) {
+            this.photo = photo;
+            this.fingerprint = fingerprint;
+            this.metadata = metadata;
+            this.bytesRead = bytesRead;
+            this.failure = failure;
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "eyebeam-metadata-extraction-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final int MAX_IN_FLIGHT_PER_WORKER = 4;
+
+    private final Path rootFolder;
+    private final IoBudget ioBudget;
+    private final boolean contentHashing;
+    private final ResultHandler resultHandler;
+    private final FailureHandler failureHandler;
+
+    private final MetadataReader sequentialReader;
+    private final ContentHasher sequentialHasher;
+
+    private final ExecutorService executor;
+    private final CompletionService<Result> completionService;
+    private final ThreadLocal<MetadataReader> workerReaders;
+    private final ThreadLocal<ContentHasher> workerHashers;
+    private final int maxInFlight;
+
+    private int inFlight = 0;
+
+    private MetadataExtraction(Path rootFolder,
+                               Supplier<MetadataReader> metadataReaderFactory,
+                               int parallelism,
+                               IoBudget ioBudget,
+                               boolean contentHashing,
+                               ResultHandler resultHandler,
+                               FailureHandler failureHandler) {
+        this.rootFolder = rootFolder;
+        this.ioBudget = ioBudget;
+        this.contentHashing = contentHashing;
+        this.resultHandler = resultHandler;
+        this.failureHandler = failureHandler;
+
+        if (parallelism == 1) {
+            this.sequentialReader = metadataReaderFactory.get();
+            this.sequentialHasher = contentHashing ? ContentHasher.newInstance() : null;
+            this.executor = null;
+            this.completionService = null;
+            this.workerReaders = null;
+            this.workerHashers = null;
+            this.maxInFlight = 1;
+        } else {
+            this.sequentialReader = null;
+            this.sequentialHasher = null;
+            this.executor = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+            this.completionService = new ExecutorCompletionService<>(executor);
+            this.workerReaders = ThreadLocal.withInitial(metadataReaderFactory);
+            this.workerHashers = ThreadLocal.withInitial(ContentHasher::newInstance);
+            this.maxInFlight = parallelism * MAX_IN_FLIGHT_PER_WORKER;
+        }
+    }
+
+    /**
+     * Submits a photo for metadata extraction. Blocks while the maximum number of pending extractions is reached,
+     * handing completed results to the handlers in the meantime.
+     *
+     * @param photo The photo whose metadata should be read.
+     */
+    void submit(@Nonnull Photo photo) {
+        submit(photo, null, null);
+    }
+
+    /**
+     * Submits a photo for metadata extraction, reusing the fingerprint taken while scanning instead of reading the
+     * file attributes again and a known content hash instead of hashing the file again.
+     *
+     * @param photo            The photo whose metadata should be read.
+     * @param fingerprint      The fingerprint of the file taken while scanning, if known.
+     * @param knownContentHash The content hash of the unchanged file, if known.
+     */
+    void submit(@Nonnull Photo photo, @Nullable FileFingerprint fingerprint, @Nullable ContentHash knownContentHash) {
+        if (executor == null) {
+            handle(read(sequentialReader, sequentialHasher, photo, fingerprint, knownContentHash));
+            return;
+        }
+
+        while (inFlight >= maxInFlight) {
+            handle(take());
+        }
+        completionService.submit(() -> read(workerReaders.get(),
+                                            contentHashing ? workerHashers.get() : null,
+                                            photo,
+                                            fingerprint,
+                                            knownContentHash));
+        inFlight++;
+
+        Future<Result> completed;
+        while ((completed = completionService.poll()) != null) {
+            handle(completed);
+        }
+    }
+
+    /**
+     * Waits for all pending extractions, handing their results to the result handler.
+     */
+    void awaitCompletion() {
+        while (inFlight > 0) {
+            handle(take());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private Future<Result> take() {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for metadata extraction.", e);
+        }
+    }
+
+    private Result read(MetadataReader metadataReader,
+                        ContentHasher contentHasher,
+                        Photo photo,
+                        FileFingerprint fingerprint,
+                        ContentHash knownContentHash) {
+        ioBudget.acquireFile();
+        Path path = rootFolder.resolve(photo.path());
+        long bytesReadBefore = MetadataReader.bytesReadOnCurrentThread();
+        try {
+            Metadata metadata = fingerprint != null ? metadataReader.readFrom(path, fingerprint)
+                                                    : metadataReader.readFrom(path);
+            long bytesRead = MetadataReader.bytesReadOnCurrentThread() - bytesReadBefore;
+            if (contentHashing) {
+                if (knownContentHash != null) {
+                    metadata = metadata.withContentHash(knownContentHash);
+                } else {
+                    metadata = metadata.withContentHash(hash(contentHasher, path));
+                    // Hashing reads the whole file
+                    bytesRead += metadata.fileSize().orElse(0L);
+                }
+            }
+            ioBudget.acquireBytes(bytesRead);
+            return new Result(photo, fingerprint, metadata, bytesRead, null);
+        } catch (MetadataReadingException e) {
+            return new Result(photo, fingerprint, null, MetadataReader.bytesReadOnCurrentThread() - bytesReadBefore, e);
+        }
+    }
+
+    private static ContentHash hash(ContentHasher contentHasher, Path path) {
+        try {
+            return contentHasher.hash(path);
+        } catch (IOException e) {
+            throw new MetadataReadingException(String.format("Failed to hash '%s'.", path), e);
+        }
+    }
+
+    private void handle(Future<Result> completed) {
+        inFlight--;
+        handle(get(completed));
+    }
+
+    private void handle(Result result) {
+        if (result.failure != null) {
+            failureHandler.accept(result.photo, result.fingerprint, result.failure);
+        } else {
+            resultHandler.accept(result.photo, result.metadata, result.bytesRead);
+        }
+    }
+
+    private static Result get(Future<Result> completed) {
+        try {
+            return completed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for metadata extraction.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    static MetadataExtraction newInstance(@Nonnull Path rootFolder,
+                                          @Nonnull Supplier<MetadataReader> metadataReaderFactory,
+                                          int parallelism,
+                                          @Nonnull IoBudget ioBudget,
+                                          boolean contentHashing,
+                                          @Nonnull ResultHandler resultHandler,
+                                          @Nonnull FailureHandler failureHandler) {
+        requireNonNull(rootFolder, "Root folder must not be null.");
+        requireNonNull(metadataReaderFactory, "Metadata reader factory must not be null.");
+        requireNonNull(ioBudget, "I/O budget must not be null.");
+        requireNonNull(resultHandler, "Result handler must not be null.");
+        requireNonNull(failureHandler, "Failure handler must not be null.");
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be larger than 0.");
+        }
+        return new MetadataExtraction(rootFolder, metadataReaderFactory, parallelism, ioBudget, contentHashing,
+                                      resultHandler, failureHandler);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * Counts the progress of a reindexing and reports it to a {@link ReindexingListener}. Counting does not allocate, a
+ * {@link ReindexingProgress} snapshot is only created once per reporting interval. Not thread-safe, all methods have
+ * to be invoked on the reindexing thread.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 05.03.16
+ */
+class ProgressTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressTracker.class);
+
+    private final ReindexingListener listener;
+    private final long reportingIntervalNanos;
+
+    private final long startedAt;
+    private long lastReportedAt;
+    private long lastReportedFilesExtracted = 0;
+    private long lastReportedBytesRead = 0;
+
+    private long filesScanned = 0;
+    private long filesExtracted = 0;
+    private long bytesRead = 0;
+    private long failures = 0;
+
+    ProgressTracker(ReindexingListener listener, Duration reportingInterval) {
+        this.listener = listener;
+        this.reportingIntervalNanos = reportingInterval.toNanos();
+        this.startedAt = System.nanoTime();
+        this.lastReportedAt = startedAt;
+    }
+
+    void phaseStarted(ReindexingPhase phase) {
+        try {
+            listener.phaseStarted(phase);
+        } catch (RuntimeException e) {
+            logger.warn("Reindexing listener failed.", e);
+        }
+    }
+
+    void phaseCompleted(ReindexingPhase phase) {
+        try {
+            listener.phaseCompleted(phase);
+        } catch (RuntimeException e) {
+            logger.warn("Reindexing listener failed.", e);
+        }
+    }
+
+    void fileScanned() {
+        filesScanned++;
+        reportIfDue();
+    }
+
+    void fileExtracted(long bytesRead) {
+        filesExtracted++;
+        this.bytesRead += bytesRead;
+        reportIfDue();
+    }
+
+    void failure() {
+        failures++;
+        reportIfDue();
+    }
+
+    /**
+     * Reports the current progress regardless of the reporting interval.
+     */
+    void report() {
+        report(System.nanoTime());
+    }
+
+    private void reportIfDue() {
+        long now = System.nanoTime();
+        if (now - lastReportedAt >= reportingIntervalNanos) {
+            report(now);
+        }
+    }
+
+    private void report(long now) {
+        double seconds = Math.max(now - lastReportedAt, 1) / 1e9;
+        ReindexingProgress progress = new ReindexingProgress(filesScanned,
+                                                             filesExtracted,
+                                                             bytesRead,
+                                                             failures,
+                                                             (filesExtracted - lastReportedFilesExtracted) / seconds,
+                                                             (bytesRead - lastReportedBytesRead) / seconds,
+                                                             Duration.ofNanos(now - startedAt));
+        lastReportedAt = now;
+        lastReportedFilesExtracted = filesExtracted;
+        lastReportedBytesRead = bytesRead;
+
+        try {
+            listener.progress(progress);
+        } catch (RuntimeException e) {
+            logger.warn("Reindexing listener failed.", e);
+        }
+    }
+}
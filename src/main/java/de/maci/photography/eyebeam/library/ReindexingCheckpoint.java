@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.Properties;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records that a reindexing has been interrupted. Metadata extracted after the interrupted reindexing has been
+ * started does not need to be read again when the reindexing is resumed.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 08.03.16
+ */
+final class ReindexingCheckpoint {
+
+    private static final String STARTED_AT = "startedAt";
+
+    private final Instant startedAt;
+
+    private ReindexingCheckpoint(@Nonnull Instant startedAt) {
+        requireNonNull(startedAt, "Start time must not be null.");
+        this.startedAt = startedAt;
+    }
+
+    /**
+     * @return The start time of the reindexing which has been interrupted first.
+     */
+    Instant startedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Writes the checkpoint. The file is replaced atomically, so a crash while writing never leaves a corrupt
+     * checkpoint.
+     */
+    void writeTo(@Nonnull Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(STARTED_AT, startedAt.toString());
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(temporaryFile)) {
+            properties.store(os, "eyebeam reindexing checkpoint");
+        }
+        Files.move(temporaryFile, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    static Optional<ReindexingCheckpoint> readFrom(@Nonnull Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        }
+        try {
+            String startedAt = properties.getProperty(STARTED_AT);
+            return startedAt != null ? Optional.of(new ReindexingCheckpoint(Instant.parse(startedAt)))
+                                     : Optional.empty();
+        } catch (DateTimeParseException e) {
+            throw new IOException(String.format("Invalid checkpoint '%s'.", file), e);
+        }
+    }
+
+    static void delete(@Nonnull Path file) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    static ReindexingCheckpoint startedAt(@Nonnull Instant startedAt) {
+        return new ReindexingCheckpoint(startedAt);
+    }
+}
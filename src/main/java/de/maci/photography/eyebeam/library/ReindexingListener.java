@@ -0,0 +1,43 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives notifications about a running reindexing. All methods are invoked on the reindexing thread and should
+ * return quickly.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 05.03.16
+ */
+public interface ReindexingListener {
+
+    default void phaseStarted(@Nonnull ReindexingPhase phase) {
+    }
+
+    default void phaseCompleted(@Nonnull ReindexingPhase phase) {
+    }
+
+    /**
+     * Reports the current progress. The progress is sampled, i.e. reported at most once per reporting interval and
+     * once when the reindexing has been finished.
+     *
+     * @param progress The current progress.
+     */
+    default void progress(@Nonnull ReindexingProgress progress) {
+    }
+}
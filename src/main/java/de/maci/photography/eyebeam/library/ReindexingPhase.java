@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 05.03.16
+ */
+public enum ReindexingPhase {
+
+    /**
+     * The library's root folder is scanned for photos.
+     */
+    SCANNING,
+
+    /**
+     * The metadata of new or changed photos is read.
+     */
+    EXTRACTING,
+
+    /**
+     * Photos whose files have not been found while scanning are removed.
+     */
+    PRUNING
+}
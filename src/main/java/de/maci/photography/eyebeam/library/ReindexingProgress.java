@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+
+/**
+ * A snapshot of the progress of a running reindexing.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 05.03.16
+ */
+public final class ReindexingProgress {
+
+    private final long filesScanned;
+    private final long filesExtracted;
+    private final long bytesRead;
+    private final long failures;
+    private final double filesPerSecond;
+    private final double bytesPerSecond;
+    private final Duration elapsed;
+
+    ReindexingProgress(long filesScanned,
+                       long filesExtracted,
+                       long bytesRead,
+                       long failures,
+                       double filesPerSecond,
+                       double bytesPerSecond,
+                       @Nonnull Duration elapsed) {
+        this.filesScanned = filesScanned;
+        this.filesExtracted = filesExtracted;
+        this.bytesRead = bytesRead;
+        this.failures = failures;
+        this.filesPerSecond = filesPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.elapsed = elapsed;
+    }
+
+    public long filesScanned() {
+        return filesScanned;
+    }
+
+    public long filesExtracted() {
+        return filesExtracted;
+    }
+
+    /**
+     * @return The number of bytes actually read from the files whose metadata has been read, including hashing their
+     * content.
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public long failures() {
+        return failures;
+    }
+
+    /**
+     * @return The number of files whose metadata has been read per second since the previous report.
+     */
+    public double filesPerSecond() {
+        return filesPerSecond;
+    }
+
+    /**
+     * @return The number of megabytes read per second since the previous report.
+     */
+    public double megabytesPerSecond() {
+        return bytesPerSecond / (1024 * 1024);
+    }
+
+    @Nonnull
+    public Duration elapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("ReindexingProgress{");
+        sb.append("filesScanned=").append(filesScanned);
+        sb.append(", filesExtracted=").append(filesExtracted);
+        sb.append(", bytesRead=").append(bytesRead);
+        sb.append(", failures=").append(failures);
+        sb.append(", filesPerSecond=").append(filesPerSecond);
+        sb.append(", megabytesPerSecond=").append(megabytesPerSecond());
+        sb.append(", elapsed=").append(elapsed);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+
+/**
+ * Summarizes a completed reindexing.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 09.03.16
+ */
+public final class ReindexingResult {
+
+    private final long added;
+    private final long updated;
+    private final long removed;
+    private final long failed;
+    private final Duration duration;
+    private final boolean cancelled;
+
+    ReindexingResult(long added, long updated, long removed, long failed, @Nonnull Duration duration,
+                     boolean cancelled) {
+        this.added = added;
+        this.updated = updated;
+        this.removed = removed;
+        this.failed = failed;
+        this.duration = duration;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * @return The number of photos which have been added to the library.
+     */
+    public long added() {
+        return added;
+    }
+
+    /**
+     * @return The number of photos whose metadata has been read and stored, including the added ones.
+     */
+    public long updated() {
+        return updated;
+    }
+
+    /**
+     * @return The number of photos which have been removed, because their files do not exist anymore.
+     */
+    public long removed() {
+        return removed;
+    }
+
+    /**
+     * @return The number of photos whose metadata could not be read.
+     */
+    public long failed() {
+        return failed;
+    }
+
+    @Nonnull
+    public Duration duration() {
+        return duration;
+    }
+
+    /**
+     * @return <code>true</code>, if the reindexing has been cancelled before it has been completed. Deleted photos
+     * are not removed by a cancelled reindexing.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("ReindexingResult{");
+        sb.append("added=").append(added);
+        sb.append(", updated=").append(updated);
+        sb.append(", removed=").append(removed);
+        sb.append(", failed=").append(failed);
+        sb.append(", duration=").append(duration);
+        sb.append(", cancelled=").append(cancelled);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.indexing;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Remembers the state of the directories seen while scanning, i.e. their modification time, size and file key as
+ * well as the names of their subdirectories. Adding, removing or renaming an entry of a directory changes its
+ * modification time on common file systems, so a directory whose state has not been changed since the last scan
+ * does not need to be listed again.
+ * <p>
+ * Modifying the content of a file does not change the state of its directory. Skipping unchanged directories is only
+ * appropriate if files are not modified in place, or if such modifications do not need to be detected.
+ * <p>
+ * A directory modified right after having been listed may keep its modification time if the file system stores it
+ * with a coarse resolution. Directories modified shortly before their state has been taken are therefore always
+ * listed again, until a later scan has taken their state long enough after their last modification.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 16.03.16
+ */
+public final class DirectoryState {
+
+    static final class Entry {
+
+        private final long lastModifiedSeconds;
+        private final int lastModifiedNanos;
+        private final long size;
+        private final String fileKey;
+        private final List<String> subdirectories;
+
+        private Entry(long lastModifiedSeconds,
+                      int lastModifiedNanos,
+                      long size,
+                      String fileKey,
+                      List<String> subdirectories) {
+            this.lastModifiedSeconds = lastModifiedSeconds;
+            this.lastModifiedNanos = lastModifiedNanos;
+            this.size = size;
+            this.fileKey = fileKey;
+            this.subdirectories = subdirectories;
+        }
+
+        List<String> subdirectories() {
+            return subdirectories;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            Instant lastModified = attributes.lastModifiedTime().toInstant();
+            Object otherFileKey = attributes.fileKey();
+            return lastModifiedSeconds == lastModified.getEpochSecond()
+                    && lastModifiedNanos == lastModified.getNano()
+                    && size == attributes.size()
+                    && Objects.equals(fileKey, otherFileKey != null ? otherFileKey.toString() : null);
+        }
+
+        boolean modifiedShortlyBefore(Instant takenAt) {
+            Instant lastModified = Instant.ofEpochSecond(lastModifiedSeconds, lastModifiedNanos);
+            return !lastModified.isBefore(takenAt.minus(TIMESTAMP_RESOLUTION));
+        }
+
+        static Entry of(BasicFileAttributes attributes, List<String> subdirectories) {
+            Instant lastModified = attributes.lastModifiedTime().toInstant();
+            Object fileKey = attributes.fileKey();
+            return new Entry(lastModified.getEpochSecond(),
+                             lastModified.getNano(),
+                             attributes.size(),
+                             fileKey != null ? fileKey.toString() : null,
+                             subdirectories);
+        }
+    }
+
+    /**
+     * The form the state is written in.
+     */
+    private static final class Snapshot {
+
+        private final long takenAtMillis;
+        private final Map<String, Entry> entries;
+
+        private Snapshot(long takenAtMillis, Map<String, Entry> entries) {
+            this.takenAtMillis = takenAtMillis;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * The coarsest resolution of modification times on common file systems, i.e. FAT.
+     */
+    private static final Duration TIMESTAMP_RESOLUTION = Duration.ofSeconds(2);
+
+    private final Map<String, Entry> entries;
+    private volatile Instant takenAt;
+
+    private DirectoryState(Map<String, Entry> entries, Instant takenAt) {
+        this.entries = entries;
+        this.takenAt = takenAt;
+    }
+
+    /**
+     * Returns the remembered state of a directory if its entries are known not to have been changed since.
+     *
+     * @param directory  The directory relative to the scanned root folder.
+     * @param attributes The current attributes of the directory.
+     * @return The remembered state, or {@code null} if the directory has to be listed.
+     */
+    Entry getIfUnchanged(String directory, BasicFileAttributes attributes) {
+        Entry entry = entries.get(directory);
+        if (entry == null || !entry.matches(attributes) || entry.modifiedShortlyBefore(takenAt)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Replaces the remembered state with the state of a completed scan, dropping directories which have not been
+     * seen anymore.
+     *
+     * @param seenDirectories The state of the directories seen.
+     * @param scanStartedAt   The time the scan has been started, i.e. before any of the directories was listed.
+     */
+    void replaceWith(Map<String, Entry> seenDirectories, Instant scanStartedAt) {
+        entries.keySet().retainAll(seenDirectories.keySet());
+        entries.putAll(seenDirectories);
+        takenAt = scanStartedAt;
+    }
+
+    /**
+     * @return The number of remembered directories.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Forgets the state of all directories, e.g. because the file filter has been changed, so all directories are
+     * listed again by the next scan.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Writes the state. The file is replaced atomically, so a crash while writing never leaves a corrupt file.
+     *
+     * @param file The file to be written.
+     * @throws IOException Thrown if the file cannot be written.
+     */
+    public void writeTo(@Nonnull Path file) throws IOException {
+        requireNonNull(file, "File must not be null.");
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            new Gson().toJson(new Snapshot(takenAt.toEpochMilli(), entries), writer);
+        }
+        Files.move(temporaryFile, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a state written before. Returns an empty state if the file does not exist or has been written by a version
+     * not storing the modification times with their full resolution.
+     *
+     * @param file The file to be read.
+     * @return The state read.
+     * @throws IOException Thrown if the file cannot be read or is corrupt.
+     */
+    public static DirectoryState readFrom(@Nonnull Path file) throws IOException {
+        requireNonNull(file, "File must not be null.");
+        if (!Files.exists(file)) {
+            return empty();
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Snapshot snapshot = new Gson().fromJson(reader, Snapshot.class);
+            if (snapshot == null || snapshot.entries == null) {
+                return empty();
+            }
+            return new DirectoryState(new ConcurrentHashMap<>(snapshot.entries),
+                                      Instant.ofEpochMilli(snapshot.takenAtMillis));
+        } catch (JsonParseException e) {
+            throw new IOException(String.format("Invalid directory state '%s'.", file), e);
+        }
+    }
+
+    public static DirectoryState empty() {
+        return new DirectoryState(new ConcurrentHashMap<>(), Instant.EPOCH);
+    }
+}
@@ -19,13 +19,18 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.nio.file.Files.walkFileTree;
 import static java.util.Collections.emptySet;
@@ -44,56 +49,92 @@ public class FilesystemScanner {
 
         protected final int maxDepth;
         protected final Set<FileVisitOption> fileVisitOptions;
+        protected final int parallelism;
 
-        private Options(int maxDepth, Set<FileVisitOption> fileVisitOptions) {
+        private Options(int maxDepth, Set<FileVisitOption> fileVisitOptions, int parallelism) {
             if (maxDepth <= 0) {
                 throw new IllegalArgumentException("Max depth must be a positive number.");
             }
             this.maxDepth = maxDepth;
             this.fileVisitOptions = fileVisitOptions;
+            this.parallelism = parallelism;
         }
 
         public static Options newInstance() {
-            return new Options(DEFAULT_MAX_DEPTH, Collections.emptySet());
+            return new Options(DEFAULT_MAX_DEPTH, Collections.emptySet(), 1);
         }
 
         public Options followSymlinks(boolean flag) {
-            return new Options(maxDepth, flag ? singleton(FileVisitOption.FOLLOW_LINKS) : emptySet());
+            return new Options(maxDepth, flag ? singleton(FileVisitOption.FOLLOW_LINKS) : emptySet(), parallelism);
         }
 
         public Options limitDepthTo(int maxDepth) {
             if (maxDepth < 1) {
                 throw new IllegalArgumentException("Max depth must be larger than 0.");
             }
-            return new Options(maxDepth, fileVisitOptions);
+            return new Options(maxDepth, fileVisitOptions, parallelism);
+        }
+
+        /**
+         * Sets the number of threads listing directories concurrently. Parallel scanning pays off if listing a
+         * directory has a high latency, e.g. on network file systems. Matching paths are reported in no particular
+         * order then, but the handler is still invoked on the calling thread only.
+         *
+         * @param parallelism The number of threads, <code>1</code> scans on the calling thread.
+         * @return The modified options.
+         */
+        public Options parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be larger than 0.");
+            }
+            return new Options(maxDepth, fileVisitOptions, parallelism);
         }
     }
 
     private class PathVisitor extends SimpleFileVisitor<Path> {
 
-        private final Consumer<Path> matchingPathHandler;
+        private final Path rootFolder;
+        private final BiConsumer<Path, BasicFileAttributes> matchingPathHandler;
 
-        private PathVisitor(Consumer<Path> matchingPathHandler) {
+        private PathVisitor(Path rootFolder, BiConsumer<Path, BasicFileAttributes> matchingPathHandler) {
+            this.rootFolder = rootFolder;
             this.matchingPathHandler = matchingPathHandler;
         }
 
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+            if (!dir.equals(rootFolder) && !directoryFilter.test(dir)) {
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            return super.preVisitDirectory(dir, attributes);
+        }
+
         @Override
         public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
             if (filter.test(file)) {
-                matchingPathHandler.accept(file);
+                matchingPathHandler.accept(file, attributes);
             }
             return super.visitFile(file, attributes);
         }
     }
 
     private final Predicate<Path> filter;
+    private final Predicate<Path> directoryFilter;
     private final Options options;
 
     private FilesystemScanner(Predicate<Path> filter, Options options) {
         this.filter = filter;
+        this.directoryFilter = directoryFilterOf(filter);
         this.options = options;
     }
 
+    /**
+     * Creates a scanner using the given filter. If the filter is a {@link PathFilter}, directories it does not accept
+     * are skipped entirely, otherwise all directories are scanned.
+     *
+     * @param filter The filter of matching files.
+     * @return The scanner.
+     */
     public static FilesystemScanner newInstance(@Nonnull Predicate<Path> filter) {
         return newInstance(filter, Options.newInstance());
     }
@@ -105,6 +146,96 @@ public class FilesystemScanner {
     }
 
     public void scan(Path rootFolder, Consumer<Path> matchingPathHandler) throws IOException {
-        walkFileTree(rootFolder, options.fileVisitOptions, options.maxDepth, new PathVisitor(matchingPathHandler));
+        scan(rootFolder, (path, attributes) -> matchingPathHandler.accept(path));
+    }
+
+    /**
+     * Scans the given folder, passing every matching path together with the file attributes read while scanning.
+     *
+     * @param rootFolder          The folder to be scanned.
+     * @param matchingPathHandler The handler of matching paths and their attributes.
+     * @throws IOException Thrown if the folder cannot be scanned.
+     */
+    public void scan(Path rootFolder, BiConsumer<Path, BasicFileAttributes> matchingPathHandler) throws IOException {
+        if (options.parallelism == 1) {
+            walkFileTree(rootFolder,
+                         options.fileVisitOptions,
+                         options.maxDepth,
+                         new PathVisitor(rootFolder, matchingPathHandler));
+        } else {
+            ParallelWalk.walk(rootFolder, filter, options, matchingPathHandler);
+        }
+    }
+
+    /**
+     * Scans the given folder like {@link #scan(Path, BiConsumer)}, but skips directories whose state has not been
+     * changed since the previous scan using the same directory state. Instead of listing a skipped directory again,
+     * it is handed to the unchanged directory handler, and its remembered subdirectories are scanned. The directory
+     * state is updated once the scan has been completed. {@link Options#parallelism(int)} is not applied.
+     * <p>
+     * The directory state does not reflect the file filter and the options, so it should be cleared if they are
+     * changed. See {@link DirectoryState} for the limitations of detecting changes using the state of directories.
+     *
+     * @param rootFolder                The folder to be scanned.
+     * @param directoryState            The state of the directories seen by the previous scan.
+     * @param matchingPathHandler       The handler of matching paths and their attributes.
+     * @param unchangedDirectoryHandler The handler of directories which have not been listed, as they are unchanged.
+     * @throws IOException Thrown if the folder cannot be scanned.
+     */
+    public void scan(@Nonnull Path rootFolder,
+                     @Nonnull DirectoryState directoryState,
+                     @Nonnull BiConsumer<Path, BasicFileAttributes> matchingPathHandler,
+                     @Nonnull Consumer<Path> unchangedDirectoryHandler) throws IOException {
+        requireNonNull(rootFolder, "Root folder must not be null.");
+        requireNonNull(directoryState, "Directory state must not be null.");
+        requireNonNull(matchingPathHandler, "Matching path handler must not be null.");
+        requireNonNull(unchangedDirectoryHandler, "Unchanged directory handler must not be null.");
+
+        IncrementalWalk.walk(rootFolder, filter, options, directoryState, matchingPathHandler,
+                             unchangedDirectoryHandler);
+    }
+
+    /**
+     * Returns a lazily populated stream of all matching files located in the given folder. Directories are listed
+     * while the stream is consumed, one directory at a time, so short-circuiting operations stop the scan early.
+     * The stream must be closed, preferably using a try-with-resources statement, to release the directory being
+     * listed if the stream is not consumed completely. A parallel stream distributes pending subdirectories among
+     * its workers. {@link Options#parallelism(int)} is not applied.
+     * <p>
+     * If a directory cannot be listed while consuming the stream, an {@link java.io.UncheckedIOException} is thrown.
+     *
+     * @param rootFolder The folder to be scanned.
+     * @return The matching files and the file attributes read while scanning.
+     * @throws IOException Thrown if the attributes of the folder cannot be read.
+     */
+    public Stream<ScannedFile> stream(@Nonnull Path rootFolder) throws IOException {
+        requireNonNull(rootFolder, "Root folder must not be null.");
+        boolean followLinks = options.fileVisitOptions.contains(FileVisitOption.FOLLOW_LINKS);
+        BasicFileAttributes attributes = readAttributes(rootFolder, followLinks);
+        if (!attributes.isDirectory()) {
+            return Stream.of(ScannedFile.of(rootFolder, attributes)).filter(file -> filter.test(file.path()));
+        }
+
+        ScanSpliterator spliterator = ScanSpliterator.of(rootFolder, attributes, filter, options.maxDepth, followLinks);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    static Predicate<Path> directoryFilterOf(Predicate<Path> filter) {
+        return filter instanceof PathFilter ? ((PathFilter) filter)::acceptsDirectory : directory -> true;
+    }
+
+    /**
+     * Reads the attributes of a file like {@link java.nio.file.Files#walkFileTree} does, i.e. falls back to the
+     * attributes of a symbolic link itself if its target cannot be read.
+     */
+    static BasicFileAttributes readAttributes(Path path, boolean followLinks) throws IOException {
+        if (followLinks) {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            }
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
     }
 }
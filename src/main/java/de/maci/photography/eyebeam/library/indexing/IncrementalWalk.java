@@ -0,0 +1,170 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.indexing;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Walks a file tree depth-first, skipping the listing of directories whose {@link DirectoryState} is unchanged.
+ * Behaves like {@link Files#walkFileTree(Path, java.util.Set, int, java.nio.file.FileVisitor)} otherwise.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 16.03.16
+ */
+final class IncrementalWalk {
+
+    private static final class Directory {
+
+        private final Path path;
+        private final BasicFileAttributes attributes;
+        private final int depth;
+        private final Directory parent;
+
+        private Directory(Path path, BasicFileAttributes attributes, int depth, Directory parent) {
+            this.path = path;
+            this.attributes = attributes;
+            this.depth = depth;
+            this.parent = parent;
+        }
+    }
+
+    private final Path rootFolder;
+    private final Predicate<Path> filter;
+    private final Predicate<Path> directoryFilter;
+    private final int maxDepth;
+    private final boolean followLinks;
+    private final DirectoryState directoryState;
+    private final BiConsumer<Path, BasicFileAttributes> matchingPathHandler;
+    private final Consumer<Path> unchangedDirectoryHandler;
+
+    private final Map<String, DirectoryState.Entry> seenDirectories = new HashMap<>();
+
+    private IncrementalWalk(Path rootFolder,
+                            Predicate<Path> filter,
+                            FilesystemScanner.Options options,
+                            DirectoryState directoryState,
+                            BiConsumer<Path, BasicFileAttributes> matchingPathHandler,
+                            Consumer<Path> unchangedDirectoryHandler) {
+        this.rootFolder = rootFolder;
+        this.filter = filter;
+        this.directoryFilter = FilesystemScanner.directoryFilterOf(filter);
+        this.maxDepth = options.maxDepth;
+        this.followLinks = options.fileVisitOptions.contains(FileVisitOption.FOLLOW_LINKS);
+        this.directoryState = directoryState;
+        this.matchingPathHandler = matchingPathHandler;
+        this.unchangedDirectoryHandler = unchangedDirectoryHandler;
+    }
+
+    private void visit(Directory directory) throws IOException {
+        String key = rootFolder.relativize(directory.path).toString();
+        DirectoryState.Entry entry = directoryState.getIfUnchanged(key, directory.attributes);
+        List<Path> subdirectories = new ArrayList<>();
+        if (entry != null) {
+            unchangedDirectoryHandler.accept(directory.path);
+            for (String subdirectory : entry.subdirectories()) {
+                subdirectories.add(directory.path.resolve(subdirectory));
+            }
+        } else {
+            entry = list(directory, subdirectories);
+        }
+        seenDirectories.put(key, entry);
+
+        for (Path subdirectory : subdirectories) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = FilesystemScanner.readAttributes(subdirectory, followLinks);
+            } catch (NoSuchFileException e) {
+                // Deleted since the parent directory has been listed
+                continue;
+            }
+            if (attributes.isDirectory()) {
+                checkForCycle(directory, subdirectory, attributes);
+                visit(new Directory(subdirectory, attributes, directory.depth + 1, directory));
+            }
+        }
+    }
+
+    private DirectoryState.Entry list(Directory directory, List<Path> subdirectories) throws IOException {
+        List<String> subdirectoryNames = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory.path)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes = FilesystemScanner.readAttributes(entry, followLinks);
+                if (attributes.isDirectory() && directory.depth + 1 < maxDepth) {
+                    if (directoryFilter.test(entry)) {
+                        subdirectories.add(entry);
+                        subdirectoryNames.add(entry.getFileName().toString());
+                    }
+                } else if (filter.test(entry)) {
+                    matchingPathHandler.accept(entry, attributes);
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        // The attributes have been read before listing, so changes made while listing are detected by the next scan
+        return DirectoryState.Entry.of(directory.attributes, subdirectoryNames);
+    }
+
+    private void checkForCycle(Directory directory, Path subdirectory, BasicFileAttributes attributes)
+            throws FileSystemLoopException {
+        if (!followLinks || attributes.fileKey() == null) {
+            return;
+        }
+        for (Directory ancestor = directory; ancestor != null; ancestor = ancestor.parent) {
+            if (Objects.equals(ancestor.attributes.fileKey(), attributes.fileKey())) {
+                throw new FileSystemLoopException(subdirectory.toString());
+            }
+        }
+    }
+
+    static void walk(Path rootFolder,
+                     Predicate<Path> filter,
+                     FilesystemScanner.Options options,
+                     DirectoryState directoryState,
+                     BiConsumer<Path, BasicFileAttributes> matchingPathHandler,
+                     Consumer<Path> unchangedDirectoryHandler) throws IOException {
+        Instant startedAt = Instant.now();
+        IncrementalWalk walk = new IncrementalWalk(rootFolder, filter, options, directoryState, matchingPathHandler,
+                                                   unchangedDirectoryHandler);
+        BasicFileAttributes attributes = FilesystemScanner.readAttributes(rootFolder, walk.followLinks);
+        if (!attributes.isDirectory()) {
+            if (filter.test(rootFolder)) {
+                matchingPathHandler.accept(rootFolder, attributes);
+            }
+            return;
+        }
+
+        walk.visit(new Directory(rootFolder, attributes, 0, null));
+        directoryState.replaceWith(walk.seenDirectories, startedAt);
+    }
+}
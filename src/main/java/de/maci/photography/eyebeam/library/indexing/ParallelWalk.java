@@ -0,0 +1,214 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.indexing;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Walks a file tree using a {@link ForkJoinPool}, listing each directory in a task of its own. Behaves like
+ * {@link Files#walkFileTree(Path, java.util.Set, int, java.nio.file.FileVisitor)}: entries located at the maximum
+ * depth are treated as files, even if they are directories, and following symbolic links fails if a cycle is
+ * detected.
+ * <p>
+ * Matching paths are collected in batches by the tasks and handed to the thread calling
+ * {@link #walk(Path, Predicate, FilesystemScanner.Options, BiConsumer)}, which invokes the handler. So the handler
+ * runs on the calling thread only, and interrupting that thread stops the walk including all of its workers. The
+ * number of batches waiting for the handler is bounded, a slow handler blocks the workers.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 14.03.16
+ */
+final class ParallelWalk {
+
+    private static final class Match {
+
+        private final Path path;
+        private final BasicFileAttributes attributes;
+
+        private Match(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.attributes = attributes;
+        }
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final int depth;
+        private final DirectoryTask parent;
+        private final Object fileKey;
+
+        private DirectoryTask(Path directory, int depth, DirectoryTask parent, Object fileKey) {
+            this.directory = directory;
+            this.depth = depth;
+            this.parent = parent;
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            List<Match> batch = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes = FilesystemScanner.readAttributes(entry, followLinks);
+                    if (attributes.isDirectory() && depth + 1 < maxDepth) {
+                        if (directoryFilter.test(entry)) {
+                            checkForCycle(entry, attributes);
+                            subdirectories.add(new DirectoryTask(entry, depth + 1, this, attributes.fileKey()));
+                        }
+                    } else if (filter.test(entry)) {
+                        batch.add(new Match(entry, attributes));
+                        if (batch.size() == BATCH_SIZE) {
+                            handOver(batch);
+                            batch = new ArrayList<>();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (!batch.isEmpty()) {
+                handOver(batch);
+            }
+            invokeAll(subdirectories);
+        }
+
+        private void handOver(List<Match> batch) {
+            try {
+                matches.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Walking the file tree has been interrupted.", e);
+            }
+        }
+
+        private void checkForCycle(Path entry, BasicFileAttributes attributes) throws FileSystemLoopException {
+            if (!followLinks || attributes.fileKey() == null) {
+                return;
+            }
+            for (DirectoryTask ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (Objects.equals(ancestor.fileKey, attributes.fileKey())) {
+                    throw new FileSystemLoopException(entry.toString());
+                }
+            }
+        }
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final int MAX_PENDING_BATCHES_PER_THREAD = 4;
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final Predicate<Path> filter;
+    private final Predicate<Path> directoryFilter;
+    private final int maxDepth;
+    private final boolean followLinks;
+    private final BiConsumer<Path, BasicFileAttributes> matchingPathHandler;
+    private final BlockingQueue<List<Match>> matches;
+
+    private ParallelWalk(Predicate<Path> filter,
+                         FilesystemScanner.Options options,
+                         BiConsumer<Path, BasicFileAttributes> matchingPathHandler) {
+        this.filter = filter;
+        this.directoryFilter = FilesystemScanner.directoryFilterOf(filter);
+        this.maxDepth = options.maxDepth;
+        this.followLinks = options.fileVisitOptions.contains(FileVisitOption.FOLLOW_LINKS);
+        this.matchingPathHandler = matchingPathHandler;
+        this.matches = new ArrayBlockingQueue<>(options.parallelism * MAX_PENDING_BATCHES_PER_THREAD);
+    }
+
+    /**
+     * Passes the matches handed over by the tasks to the handler until the walk has been completed.
+     */
+    private void handleMatches(ForkJoinTask<?> walk) throws IOException {
+        try {
+            while (true) {
+                List<Match> batch = matches.poll(POLL_TIMEOUT_MILLIS, MILLISECONDS);
+                if (batch != null) {
+                    handle(batch);
+                } else if (walk.isDone()) {
+                    while ((batch = matches.poll()) != null) {
+                        handle(batch);
+                    }
+                    walk.get();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Walking the file tree has been interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void handle(List<Match> batch) {
+        for (Match match : batch) {
+            matchingPathHandler.accept(match.path, match.attributes);
+        }
+    }
+
+    static void walk(Path rootFolder,
+                     Predicate<Path> filter,
+                     FilesystemScanner.Options options,
+                     BiConsumer<Path, BasicFileAttributes> matchingPathHandler) throws IOException {
+        ParallelWalk walk = new ParallelWalk(filter, options, matchingPathHandler);
+        BasicFileAttributes attributes = FilesystemScanner.readAttributes(rootFolder, walk.followLinks);
+        if (!attributes.isDirectory()) {
+            if (filter.test(rootFolder)) {
+                matchingPathHandler.accept(rootFolder, attributes);
+            }
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(options.parallelism);
+        try {
+            walk.handleMatches(pool.submit(walk.new DirectoryTask(rootFolder, 0, null, attributes.fileKey())));
+        } finally {
+            // Interrupts workers blocked while handing over matches, if the handler has failed
+            pool.shutdownNow();
+        }
+    }
+}
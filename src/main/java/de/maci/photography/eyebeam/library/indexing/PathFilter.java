@@ -0,0 +1,289 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.indexing;
+
+import javax.annotation.Nonnull;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable file filter matching files by their extensions and by glob patterns, which also allows a
+ * {@link FilesystemScanner} to skip whole directories.
+ * <p>
+ * Extensions are matched case-insensitively without allocating a lower case copy of each file name. Glob patterns
+ * are matched against the whole path as passed to the filter, so they usually start with <code>**&#47;</code>. A file
+ * is accepted if it matches any of the included extensions or glob patterns, or if nothing has been included at all,
+ * and if it does not match any of the excluded glob patterns. A directory is skipped if it matches any of the excluded
+ * glob patterns or if it is hidden and hidden directories are skipped. Conditions added using
+ * {@link #restrict(Predicate, Predicate)} have to be satisfied additionally.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 17.03.16
+ */
+public final class PathFilter implements Predicate<Path> {
+
+    private final Set<String> extensions;
+    private final List<String> includedGlobs;
+    private final List<String> excludedGlobs;
+    private final boolean skipHiddenDirectories;
+    private final Predicate<Path> fileCondition;
+    private final Predicate<Path> directoryCondition;
+
+    /**
+     * The included extensions, indexed by their length.
+     */
+    private final String[][] extensionsByLength;
+    private final PathMatcher[] includedGlobMatchers;
+    private final PathMatcher[] excludedGlobMatchers;
+    private final boolean includesAll;
+
+    private PathFilter(Set<String> extensions,
+                       List<String> includedGlobs,
+                       List<String> excludedGlobs,
+                       boolean skipHiddenDirectories,
+                       Predicate<Path> fileCondition,
+                       Predicate<Path> directoryCondition) {
+        this.extensions = extensions;
+        this.includedGlobs = includedGlobs;
+        this.excludedGlobs = excludedGlobs;
+        this.skipHiddenDirectories = skipHiddenDirectories;
+        this.fileCondition = fileCondition;
+        this.directoryCondition = directoryCondition;
+
+        int maxLength = extensions.stream().mapToInt(String::length).max().orElse(0);
+        this.extensionsByLength = new String[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            int extensionLength = length;
+            this.extensionsByLength[length] = extensions.stream()
+                                                        .filter(extension -> extension.length() == extensionLength)
+                                                        .toArray(String[]::new);
+        }
+        this.includedGlobMatchers = includedGlobs.stream().map(PathFilter::compile).toArray(PathMatcher[]::new);
+        this.excludedGlobMatchers = excludedGlobs.stream().map(PathFilter::compile).toArray(PathMatcher[]::new);
+        this.includesAll = extensions.isEmpty() && includedGlobs.isEmpty();
+    }
+
+    /**
+     * Creates a filter accepting all files and directories.
+     *
+     * @return The filter.
+     */
+    public static PathFilter newInstance() {
+        return new PathFilter(emptySet(), emptyList(), emptyList(), false, null, null);
+    }
+
+    /**
+     * Includes files with one of the given extensions, e.g. <code>"jpg"</code>. Extensions are compared
+     * case-insensitively, a leading dot is ignored.
+     *
+     * @param extensions The extensions to be included.
+     * @return The modified filter.
+     */
+    public PathFilter includeExtensions(@Nonnull String... extensions) {
+        requireNonNull(extensions, "Extensions must not be null.");
+        Set<String> modifiedExtensions = new LinkedHashSet<>(this.extensions);
+        for (String extension : extensions) {
+            requireNonNull(extension, "Extension must not be null.");
+            String normalized = extension.startsWith(".") ? extension.substring(1) : extension;
+            if (normalized.isEmpty()) {
+                throw new IllegalArgumentException("Extension must not be empty.");
+            }
+            modifiedExtensions.add(normalized.toLowerCase(Locale.ROOT));
+        }
+        return new PathFilter(modifiedExtensions, includedGlobs, excludedGlobs, skipHiddenDirectories, fileCondition,
+                              directoryCondition);
+    }
+
+    /**
+     * Includes files matching the given glob pattern, see {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+     *
+     * @param glob The glob pattern, e.g. <code>"**&#47;*.{tif,tiff}"</code>.
+     * @return The modified filter.
+     */
+    public PathFilter includeGlob(@Nonnull String glob) {
+        return new PathFilter(extensions, append(includedGlobs, glob), excludedGlobs, skipHiddenDirectories,
+                              fileCondition, directoryCondition);
+    }
+
+    /**
+     * Excludes files and directories matching the given glob pattern. Excluded directories are not scanned.
+     *
+     * @param glob The glob pattern, e.g. <code>"**&#47;thumbnails"</code>.
+     * @return The modified filter.
+     */
+    public PathFilter excludeGlob(@Nonnull String glob) {
+        return new PathFilter(extensions, includedGlobs, append(excludedGlobs, glob), skipHiddenDirectories,
+                              fileCondition, directoryCondition);
+    }
+
+    /**
+     * Skips directories whose names start with a dot.
+     *
+     * @param flag <code>true</code>, if hidden directories should not be scanned.
+     * @return The modified filter.
+     */
+    public PathFilter skipHiddenDirectories(boolean flag) {
+        return new PathFilter(extensions, includedGlobs, excludedGlobs, flag, fileCondition, directoryCondition);
+    }
+
+    /**
+     * Additionally requires files and directories to satisfy the given conditions, e.g. to restrict the filter to a
+     * part of a library. Directories not satisfying the directory condition are not scanned, so it must only reject
+     * directories which cannot contain any file satisfying the file condition.
+     *
+     * @param fileCondition      The condition files have to satisfy.
+     * @param directoryCondition The condition directories have to satisfy to be scanned.
+     * @return The modified filter.
+     */
+    public PathFilter restrict(@Nonnull Predicate<Path> fileCondition, @Nonnull Predicate<Path> directoryCondition) {
+        requireNonNull(fileCondition, "File condition must not be null.");
+        requireNonNull(directoryCondition, "Directory condition must not be null.");
+        return new PathFilter(extensions, includedGlobs, excludedGlobs, skipHiddenDirectories,
+                              and(this.fileCondition, fileCondition), and(this.directoryCondition, directoryCondition));
+    }
+
+    /**
+     * @return The included extensions in lower case and without a leading dot.
+     */
+    @Nonnull
+    public Set<String> includedExtensions() {
+        return unmodifiableSet(extensions);
+    }
+
+    /**
+     * @return The included glob patterns in the order they have been added.
+     */
+    @Nonnull
+    public List<String> includedGlobs() {
+        return unmodifiableList(includedGlobs);
+    }
+
+    /**
+     * @return The excluded glob patterns in the order they have been added.
+     */
+    @Nonnull
+    public List<String> excludedGlobs() {
+        return unmodifiableList(excludedGlobs);
+    }
+
+    /**
+     * @return <code>true</code>, if hidden directories are not scanned.
+     */
+    public boolean skipsHiddenDirectories() {
+        return skipHiddenDirectories;
+    }
+
+    /**
+     * @return <code>true</code>, if conditions have been added using {@link #restrict(Predicate, Predicate)}, which
+     * are not reflected by the other properties of the filter.
+     */
+    public boolean isRestricted() {
+        return fileCondition != null || directoryCondition != null;
+    }
+
+    @Override
+    public boolean test(Path file) {
+        return (includesAll || hasIncludedExtension(file) || matchesAny(includedGlobMatchers, file))
+                && !matchesAny(excludedGlobMatchers, file)
+                && (fileCondition == null || fileCondition.test(file));
+    }
+
+    /**
+     * Checks if a directory should be scanned.
+     *
+     * @param directory The directory found while scanning.
+     * @return <code>false</code>, if the directory and all of its content should be skipped.
+     */
+    public boolean acceptsDirectory(@Nonnull Path directory) {
+        if (skipHiddenDirectories) {
+            Path name = directory.getFileName();
+            if (name != null && name.toString().startsWith(".")) {
+                return false;
+            }
+        }
+        return !matchesAny(excludedGlobMatchers, directory)
+                && (directoryCondition == null || directoryCondition.test(directory));
+    }
+
+    private boolean hasIncludedExtension(Path file) {
+        Path name = file.getFileName();
+        if (name == null) {
+            return false;
+        }
+        String fileName = name.toString();
+        int dot = fileName.lastIndexOf('.');
+        int length = fileName.length() - dot - 1;
+        if (dot < 0 || length >= extensionsByLength.length) {
+            return false;
+        }
+        for (String extension : extensionsByLength[length]) {
+            if (fileName.regionMatches(true, dot + 1, extension, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(PathMatcher[] matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PathMatcher compile(String glob) {
+        requireNonNull(glob, "Glob must not be null.");
+        return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    }
+
+    private static Predicate<Path> and(Predicate<Path> condition, Predicate<Path> additionalCondition) {
+        return condition == null ? additionalCondition : condition.and(additionalCondition);
+    }
+
+    private static List<String> append(List<String> globs, String glob) {
+        compile(glob);
+        List<String> modifiedGlobs = new ArrayList<>(globs);
+        modifiedGlobs.add(glob);
+        return modifiedGlobs;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("PathFilter{");
+        sb.append("extensions=").append(extensions);
+        sb.append(", includedGlobs=").append(includedGlobs);
+        sb.append(", excludedGlobs=").append(excludedGlobs);
+        sb.append(", skipHiddenDirectories=").append(skipHiddenDirectories);
+        sb.append(", restricted=").append(isRestricted());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.indexing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Lists a file tree lazily, keeping at most one directory open at a time. Subdirectories are collected while listing
+ * a directory and listed after it, the most recently found one first. Splitting hands over half of the collected
+ * subdirectories to a new spliterator. If there are not enough subdirectories to split, e.g. while only the root
+ * folder is pending, the next directory is listed at once before, so its subdirectories and files can be handed over.
+ * Like {@link ParallelWalk}, the iteration behaves like
+ * {@link Files#walkFileTree(Path, java.util.Set, int, java.nio.file.FileVisitor)}.
+ * <p>
+ * All spliterators split off from the same root share a registry, so closing the root closes every directory still
+ * being listed.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 15.03.16
+ */
+final class ScanSpliterator implements Spliterator<ScannedFile> {
+
+    private static final class Directory {
+
+        private final Path path;
+        private final int depth;
+        private final Directory parent;
+        private final Object fileKey;
+
+        private Directory(Path path, int depth, Directory parent, Object fileKey) {
+            this.path = path;
+            this.depth = depth;
+            this.parent = parent;
+            this.fileKey = fileKey;
+        }
+    }
+
+    private final Predicate<Path> filter;
+    private final Predicate<Path> directoryFilter;
+    private final int maxDepth;
+    private final boolean followLinks;
+    private final Queue<ScanSpliterator> registry;
+    private final Deque<Directory> pendingDirectories;
+    private final Deque<ScannedFile> pendingFiles;
+
+    private Directory currentDirectory;
+    private volatile DirectoryStream<Path> currentStream;
+    private Iterator<Path> currentEntries;
+    private volatile boolean closed = false;
+
+    private ScanSpliterator(Predicate<Path> filter,
+                            int maxDepth,
+                            boolean followLinks,
+                            Queue<ScanSpliterator> registry,
+                            Deque<Directory> pendingDirectories,
+                            Deque<ScannedFile> pendingFiles) {
+        this.filter = filter;
+        this.directoryFilter = FilesystemScanner.directoryFilterOf(filter);
+        this.maxDepth = maxDepth;
+        this.followLinks = followLinks;
+        this.registry = registry;
+        this.pendingDirectories = pendingDirectories;
+        this.pendingFiles = pendingFiles;
+        registry.add(this);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ScannedFile> action) {
+        try {
+            while (!closed) {
+                ScannedFile pendingFile = pendingFiles.poll();
+                if (pendingFile != null) {
+                    action.accept(pendingFile);
+                    return true;
+                }
+                if (currentEntries == null && !openNextDirectory()) {
+                    return false;
+                }
+                while (currentEntries.hasNext()) {
+                    ScannedFile scannedFile = visit(currentEntries.next());
+                    if (scannedFile != null) {
+                        action.accept(scannedFile);
+                        return true;
+                    }
+                }
+                closeCurrentDirectory();
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DirectoryIteratorException e) {
+            throw new UncheckedIOException(e.getCause());
+        }
+    }
+
+    @Override
+    public Spliterator<ScannedFile> trySplit() {
+        if (closed) {
+            return null;
+        }
+        if (pendingDirectories.size() < 2) {
+            listNextDirectoryAtOnce();
+        }
+        int directoryCount = pendingDirectories.size() / 2;
+        int fileCount = pendingFiles.size() / 2;
+        if (directoryCount == 0 && fileCount == 0) {
+            return null;
+        }
+        // The oldest subdirectories are handed over, they are the most likely ones to contain large subtrees
+        Deque<Directory> splitDirectories = new ArrayDeque<>(directoryCount);
+        for (int i = 0; i < directoryCount; i++) {
+            splitDirectories.push(pendingDirectories.removeLast());
+        }
+        Deque<ScannedFile> splitFiles = new ArrayDeque<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            splitFiles.push(pendingFiles.removeLast());
+        }
+        return new ScanSpliterator(filter, maxDepth, followLinks, registry, splitDirectories, splitFiles);
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | DISTINCT;
+    }
+
+    /**
+     * Closes the directory being listed by this spliterator and by all spliterators split off from the same root.
+     */
+    void close() {
+        for (ScanSpliterator spliterator : registry) {
+            spliterator.closed = true;
+            DirectoryStream<Path> stream = spliterator.currentStream;
+            if (stream != null) {
+                close(stream);
+            }
+        }
+    }
+
+    /**
+     * Lists the rest of the directory being listed, or the next pending directory, keeping its matching files.
+     */
+    private void listNextDirectoryAtOnce() {
+        try {
+            if (currentEntries == null && !openNextDirectory()) {
+                return;
+            }
+            while (currentEntries.hasNext()) {
+                ScannedFile scannedFile = visit(currentEntries.next());
+                if (scannedFile != null) {
+                    pendingFiles.add(scannedFile);
+                }
+            }
+            closeCurrentDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DirectoryIteratorException e) {
+            throw new UncheckedIOException(e.getCause());
+        }
+    }
+
+    /**
+     * Collects an entry of the directory being listed if it is a subdirectory to be listed.
+     *
+     * @return The entry if it is a matching file, otherwise <code>null</code>.
+     */
+    private ScannedFile visit(Path entry) throws IOException {
+        BasicFileAttributes attributes = FilesystemScanner.readAttributes(entry, followLinks);
+        if (attributes.isDirectory() && currentDirectory.depth + 1 < maxDepth) {
+            if (directoryFilter.test(entry)) {
+                checkForCycle(entry, attributes);
+                pendingDirectories.push(new Directory(entry,
+                                                      currentDirectory.depth + 1,
+                                                      currentDirectory,
+                                                      attributes.fileKey()));
+            }
+            return null;
+        }
+        return filter.test(entry) ? ScannedFile.of(entry, attributes) : null;
+    }
+
+    private boolean openNextDirectory() throws IOException {
+        Directory directory = pendingDirectories.poll();
+        if (directory == null) {
+            return false;
+        }
+        currentDirectory = directory;
+        currentStream = Files.newDirectoryStream(directory.path);
+        currentEntries = currentStream.iterator();
+        return true;
+    }
+
+    private void closeCurrentDirectory() {
+        DirectoryStream<Path> stream = currentStream;
+        currentStream = null;
+        currentEntries = null;
+        close(stream);
+    }
+
+    private static void close(DirectoryStream<Path> stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkForCycle(Path entry, BasicFileAttributes attributes) throws FileSystemLoopException {
+        if (!followLinks || attributes.fileKey() == null) {
+            return;
+        }
+        for (Directory ancestor = currentDirectory; ancestor != null; ancestor = ancestor.parent) {
+            if (Objects.equals(ancestor.fileKey, attributes.fileKey())) {
+                throw new FileSystemLoopException(entry.toString());
+            }
+        }
+    }
+
+    static ScanSpliterator of(Path rootFolder,
+                              BasicFileAttributes rootAttributes,
+                              Predicate<Path> filter,
+                              int maxDepth,
+                              boolean followLinks) {
+        Deque<Directory> pendingDirectories = new ArrayDeque<>();
+        pendingDirectories.push(new Directory(rootFolder, 0, null, rootAttributes.fileKey()));
+        return new ScanSpliterator(filter, maxDepth, followLinks, new ConcurrentLinkedQueue<>(), pendingDirectories,
+                                   new ArrayDeque<>());
+    }
+}
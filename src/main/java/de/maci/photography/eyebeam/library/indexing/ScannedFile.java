@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.indexing;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A file matched while scanning, together with the attributes read while scanning.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 02.03.16
+ */
+public final class ScannedFile {
+
+    private final Path path;
+    private final BasicFileAttributes attributes;
+
+    private ScannedFile(@Nonnull Path path, @Nonnull BasicFileAttributes attributes) {
+        requireNonNull(path, "Path must not be null.");
+        requireNonNull(attributes, "Attributes must not be null.");
+        this.path = path;
+        this.attributes = attributes;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public BasicFileAttributes attributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("ScannedFile{");
+        sb.append("path=").append(path);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public static ScannedFile of(@Nonnull Path path, @Nonnull BasicFileAttributes attributes) {
+        return new ScannedFile(path, attributes);
+    }
+}
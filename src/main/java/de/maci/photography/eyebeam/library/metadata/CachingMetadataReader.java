@@ -0,0 +1,71 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decorates a {@link MetadataReader}, looking up the metadata of a file in a {@link MetadataCache} before reading it.
+ * Since the cache is keyed by the file's path, size and modification time, rebuilding a library from scratch mostly
+ * hits the cache instead of parsing files again.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class CachingMetadataReader implements MetadataReader {
+
+    private final MetadataReader delegate;
+    private final MetadataCache cache;
+
+    private CachingMetadataReader(MetadataReader delegate, MetadataCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Metadata readFrom(@Nonnull Path path) {
+        try {
+            return readFrom(path, FileFingerprint.of(Files.readAttributes(path, BasicFileAttributes.class)));
+        } catch (IOException | SecurityException e) {
+            throw new MetadataReadingException(String.format("Failed to read metadata of '%s'.",
+                                                             path.toAbsolutePath()), e);
+        }
+    }
+
+    @Override
+    public Metadata readFrom(@Nonnull Path path, @Nonnull FileFingerprint fingerprint) {
+        Optional<Metadata> cached = cache.get(path, fingerprint);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Metadata metadata = delegate.readFrom(path, fingerprint);
+        cache.put(path, fingerprint, metadata);
+        return metadata;
+    }
+
+    public static CachingMetadataReader of(@Nonnull MetadataReader delegate, @Nonnull MetadataCache cache) {
+        requireNonNull(delegate, "Delegate must not be null.");
+        requireNonNull(cache, "Cache must not be null.");
+        return new CachingMetadataReader(delegate, cache);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A digest of a file's content. Photos with equal content hashes are byte-identical copies.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 12.03.16
+ */
+public final class ContentHash {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final byte[] digest;
+
+    private ContentHash(byte[] digest) {
+        this.digest = digest;
+    }
+
+    @Nonnull
+    public String toHex() {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContentHash that = (ContentHash) o;
+        return Arrays.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(digest);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    public static ContentHash of(@Nonnull byte[] digest) {
+        requireNonNull(digest, "Digest must not be null.");
+        return new ContentHash(digest.clone());
+    }
+
+    public static ContentHash fromHex(@Nonnull String hex) {
+        requireNonNull(hex, "Hex string must not be null.");
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException(String.format("Invalid content hash '%s'.", hex));
+        }
+        byte[] digest = new byte[hex.length() / 2];
+        for (int i = 0; i < digest.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException(String.format("Invalid content hash '%s'.", hex));
+            }
+            digest[i] = (byte) ((high << 4) | low);
+        }
+        return new ContentHash(digest);
+    }
+}
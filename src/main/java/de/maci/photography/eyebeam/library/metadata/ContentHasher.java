@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Computes {@link ContentHash}es by streaming files through a SHA-256 digest. The read buffer and the digest are
+ * reused for all files, so hashing does not allocate per file. Not thread-safe, each thread needs a hasher of its
+ * own.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 12.03.16
+ */
+public class ContentHasher {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MessageDigest digest;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private ContentHasher() {
+        try {
+            this.digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hashes the content of a file.
+     *
+     * @param path The file's path.
+     * @return The file's content hash.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    public ContentHash hash(@Nonnull Path path) throws IOException {
+        requireNonNull(path, "Path must not be null.");
+        digest.reset();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return ContentHash.of(digest.digest());
+    }
+
+    public static ContentHasher newInstance() {
+        return new ContentHasher();
+    }
+}
@@ -16,25 +16,42 @@
 package de.maci.photography.eyebeam.library.metadata;
 
 import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.MetadataException;
+import com.drew.lang.GeoLocation;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifReader;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Optional;
 
 import static com.drew.metadata.exif.ExifDirectoryBase.TAG_35MM_FILM_EQUIV_FOCAL_LENGTH;
 import static com.drew.metadata.exif.ExifDirectoryBase.TAG_DATETIME_ORIGINAL;
+import static com.drew.metadata.exif.ExifDirectoryBase.TAG_EXPOSURE_TIME;
 import static com.drew.metadata.exif.ExifDirectoryBase.TAG_FNUMBER;
 import static com.drew.metadata.exif.ExifDirectoryBase.TAG_FOCAL_LENGTH;
 import static com.drew.metadata.exif.ExifDirectoryBase.TAG_ISO_EQUIVALENT;
+import static com.drew.metadata.exif.ExifDirectoryBase.TAG_LENS_MODEL;
+import static com.drew.metadata.exif.ExifDirectoryBase.TAG_MAKE;
+import static com.drew.metadata.exif.ExifDirectoryBase.TAG_MODEL;
+import static com.drew.metadata.exif.ExifDirectoryBase.TAG_ORIENTATION;
+import static com.drew.metadata.exif.ExifDirectoryBase.TAG_WHITE_BALANCE_MODE;
 
 /**
+ * Reads EXIF data and image sizes, parsing only the tags needed. Files are accessed through the {@link HeaderWindow}
+ * of the current thread, so only the parts of a file containing metadata are read.
+ *
  * @author Daniel Götten <daniel.goetten@googlemail.com>
  * @since 09.10.15
  */
@@ -48,26 +65,185 @@ class DefaultExifDataReader {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultExifDataReader.class);
 
+    private static final int MARKER_SOF0 = 0xC0;
+    private static final int MARKER_DHT = 0xC4;
+    private static final int MARKER_JPG = 0xC8;
+    private static final int MARKER_DAC = 0xCC;
+    private static final int MARKER_SOF15 = 0xCF;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final byte[] EXIF_PREAMBLE = ExifReader.JPEG_SEGMENT_PREAMBLE.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PNG_IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param path The file to be read.
+     * @return The EXIF data of the file.
+     * @throws MetadataReadingException Thrown if the file cannot be read or does not contain EXIF data.
+     */
     public ExifData readFrom(@Nonnull Path path) {
-        File file = path.toFile();
+        return readHeaderFrom(path).exifData().orElseThrow(() -> new MetadataReadingException(
+                String.format("No EXIF data found in '%s'.", path.toAbsolutePath())));
+    }
+
+    /**
+     * Reads the EXIF data and the image size of a file, without decoding any pixel data.
+     *
+     * @param path The file to be read.
+     * @return The header of the image file.
+     */
+    ImageHeader readHeaderFrom(@Nonnull Path path) {
+        HeaderWindow window = HeaderWindow.ofCurrentThread();
         try {
-            return fromMetadata(ImageMetadataReader.readMetadata(file));
+            window.open(path);
+            return readHeader(window);
         } catch (Exception e) {
             throw new MetadataReadingException(String.format("Failed to read metadata of '%s'.",
-                                                             file.getAbsolutePath()), e);
+                                                             path.toAbsolutePath()), e);
+        } finally {
+            closeQuietly(window);
+        }
+    }
+
+    /**
+     * Reads the header of JPEG, TIFF based, PNG and HEIF files directly, using {@link TiffExifParser} for the EXIF
+     * data, which only visits the directory entries needed. Other formats are parsed completely by metadata-extractor,
+     * without determining the image size.
+     */
+    static ImageHeader readHeader(HeaderWindow window) throws ImageProcessingException, IOException {
+        return readHeader(window, detectFormat(window));
+    }
+
+    static ImageHeader readHeader(HeaderWindow window, ImageFormat format)
+            throws ImageProcessingException, IOException {
+        switch (format) {
+            case JPEG:
+                return readJpegHeader(window);
+            case TIFF:
+                return TiffExifParser.parse(window, 0);
+            case PNG:
+                return ImageHeader.of(null, readPngImageSize(window));
+            case HEIF:
+                return HeifParser.parse(window);
+            default:
+                return ImageHeader.of(fromMetadata(ImageMetadataReader.readMetadata(window.inputStream())), null);
         }
     }
 
+    static ImageFormat detectFormat(HeaderWindow window) throws IOException {
+        return ImageFormat.detect(window.getBytes(0, (int) Math.min(ImageFormat.SIGNATURE_LENGTH,
+                                                                    window.getLength())));
+    }
+
+    /**
+     * Walks the segment headers of a JPEG file up to the start of the image data, looking for the first APP1 segment
+     * starting with the EXIF preamble and the start of frame segment giving the image size. Other segments like XMP
+     * packets or ICC profiles are skipped without being read.
+     */
+    private static ImageHeader readJpegHeader(HeaderWindow window) throws IOException {
+        window.setMotorolaByteOrder(true);
+        int tiffHeaderOffset = -1;
+        ImageSize frameSize = null;
+        int offset = 2;
+        while (window.isValidIndex(offset, 4) && (tiffHeaderOffset < 0 || frameSize == null)) {
+            if (window.getUInt8(offset) != 0xFF) {
+                break;
+            }
+            int marker = window.getUInt8(offset + 1);
+            if (marker == 0xFF) {
+                // Fill byte preceding the actual marker
+                offset++;
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                break;
+            }
+            int segmentLength = window.getUInt16(offset + 2);
+            int segmentStart = offset + 4;
+            if (marker == MARKER_APP1 && tiffHeaderOffset < 0 && segmentLength - 2 >= EXIF_PREAMBLE.length
+                    && Arrays.equals(window.getBytes(segmentStart, EXIF_PREAMBLE.length), EXIF_PREAMBLE)) {
+                tiffHeaderOffset = segmentStart + EXIF_PREAMBLE.length;
+            } else if (isStartOfFrame(marker) && frameSize == null && window.isValidIndex(segmentStart, 5)) {
+                int height = window.getUInt16(segmentStart + 1);
+                int width = window.getUInt16(segmentStart + 3);
+                if (width > 0 && height > 0) {
+                    frameSize = new ImageSize(width, height);
+                }
+            }
+            offset += 2 + segmentLength;
+        }
+
+        ImageHeader header = tiffHeaderOffset < 0 ? ImageHeader.of(null, null)
+                                                  : TiffExifParser.parse(window, tiffHeaderOffset);
+        return frameSize != null ? header.withImageSize(frameSize) : header;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= MARKER_SOF0 && marker <= MARKER_SOF15
+                && marker != MARKER_DHT && marker != MARKER_JPG && marker != MARKER_DAC;
+    }
+
+    /**
+     * Reads the image size from the IHDR chunk, which has to be the first chunk of a PNG file.
+     */
+    private static ImageSize readPngImageSize(HeaderWindow window) throws IOException {
+        window.setMotorolaByteOrder(true);
+        if (!Arrays.equals(window.getBytes(12, 4), PNG_IHDR)) {
+            return null;
+        }
+        long width = window.getUInt32(16);
+        long height = window.getUInt32(20);
+        if (width < 1 || height < 1 || width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+            return null;
+        }
+        return new ImageSize((int) width, (int) height);
+    }
+
+    static void closeQuietly(HeaderWindow window) {
+        try {
+            window.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close file.", e);
+        }
+    }
+
+    /**
+     * @return The EXIF data, <code>null</code> if the metadata does not contain an EXIF sub-IFD.
+     */
     private static ExifData fromMetadata(@Nonnull Metadata metadata) {
         ExifSubIFDDirectory directory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
-        return ExifData.empty()
-                       .withFnumber(tryExecute(() -> directory.getDouble(TAG_FNUMBER)).orElse(null))
-                       .withFocalLength(tryExecute(() -> directory.getInteger(TAG_FOCAL_LENGTH)).orElse(null))
-                       .withFocalLengthFullFrameEquivalent(tryExecute(() -> directory
-                               .getInteger(TAG_35MM_FILM_EQUIV_FOCAL_LENGTH)).orElse(null))
-                       .withIso(tryExecute(() -> directory.getInteger(TAG_ISO_EQUIVALENT)).orElse(null))
-                       .withTakenAt(tryExecute(() -> directory.getDate(TAG_DATETIME_ORIGINAL)).map(Date::toInstant)
-                                                                                              .orElse(null));
+        if (directory == null) {
+            return null;
+        }
+        ExifData.Builder exifData = ExifData.builder();
+        tryExecute(() -> directory.getDouble(TAG_FNUMBER)).ifPresent(exifData::fnumber);
+        tryExecute(() -> directory.getInteger(TAG_FOCAL_LENGTH)).ifPresent(exifData::focalLength);
+        tryExecute(() -> directory.getInteger(TAG_35MM_FILM_EQUIV_FOCAL_LENGTH))
+                .ifPresent(exifData::focalLengthFullFrameEquivalent);
+        tryExecute(() -> directory.getInteger(TAG_ISO_EQUIVALENT)).ifPresent(exifData::iso);
+        tryExecute(() -> directory.getDate(TAG_DATETIME_ORIGINAL)).map(Date::toInstant).ifPresent(exifData::takenAt);
+        tryExecute(() -> directory.getDouble(TAG_EXPOSURE_TIME)).ifPresent(exifData::exposureTime);
+        Optional.ofNullable(directory.getInteger(TAG_WHITE_BALANCE_MODE)).ifPresent(exifData::whiteBalance);
+        exifData.lensModel(trimToNull(directory.getString(TAG_LENS_MODEL)));
+
+        ExifIFD0Directory ifd0Directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+        if (ifd0Directory != null) {
+            exifData.make(trimToNull(ifd0Directory.getString(TAG_MAKE)));
+            exifData.model(trimToNull(ifd0Directory.getString(TAG_MODEL)));
+            Optional.ofNullable(ifd0Directory.getInteger(TAG_ORIENTATION)).ifPresent(exifData::orientation);
+        }
+
+        GpsDirectory gpsDirectory = metadata.getFirstDirectoryOfType(GpsDirectory.class);
+        GeoLocation location = gpsDirectory != null ? gpsDirectory.getGeoLocation() : null;
+        if (location != null) {
+            exifData.location(location.getLatitude(), location.getLongitude());
+        }
+        return exifData.build();
+    }
+
+    private static String trimToNull(String value) {
+        String trimmed = value != null ? value.trim() : null;
+        return trimmed != null && !trimmed.isEmpty() ? trimmed : null;
     }
 
     private static <T> Optional<T> tryExecute(ThrowingMetadataException<T> action) {
@@ -16,8 +16,10 @@
 package de.maci.photography.eyebeam.library.metadata;
 
 import javax.annotation.Nonnull;
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * @author Daniel Götten <daniel.goetten@googlemail.com>
@@ -29,12 +31,25 @@ public class DefaultMetadataReader implements MetadataReader {
 
     @Override
     public Metadata readFrom(@Nonnull Path path) {
-        File file = path.toFile();
         try {
-            return new Metadata(file.length(), null, exifDataReader.readFrom(path));
+            return readFrom(path, FileFingerprint.of(Files.readAttributes(path, BasicFileAttributes.class)));
+        } catch (IOException | SecurityException e) {
+            throw new MetadataReadingException(String.format("Failed to read metadata of '%s'.",
+                                                             path.toAbsolutePath()), e);
+        }
+    }
+
+    @Override
+    public Metadata readFrom(@Nonnull Path path, @Nonnull FileFingerprint fingerprint) {
+        try {
+            ImageHeader header = exifDataReader.readHeaderFrom(path);
+            return new Metadata(fingerprint.size(),
+                                header.imageSize().orElse(null),
+                                header.exifData().orElse(null),
+                                fingerprint);
         } catch (SecurityException e) {
             throw new MetadataReadingException(String.format("Failed to read metadata of '%s'.",
-                                                             file.getAbsolutePath()), e);
+                                                             path.toAbsolutePath()), e);
         }
     }
 }
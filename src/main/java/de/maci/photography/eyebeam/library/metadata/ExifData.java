@@ -21,87 +21,469 @@ import java.time.Instant;
 import java.util.Optional;
 
 /**
+ * The EXIF data of a photo. Values are held in primitive fields, whose presence is tracked by a bitmask, so an
+ * instance stays small even when millions of them are held in memory. The <code>has...()</code> and
+ * <code>...OrElse()</code> accessors do not allocate, unlike the {@link Optional} returning ones. Camera makes,
+ * models and lens models are shared using the {@link StringDictionary}, since they repeat across photos.
+ * <p>
+ * Instances are built using a {@link Builder}, or derived from other instances using the <code>with...()</code>
+ * methods, each of which creates a copy.
+ *
  * @author Daniel Götten <daniel.goetten@googlemail.com>
  * @since 02.10.15
  */
 public class ExifData {
 
-    private final Double fnumber;
-    private final Integer focalLength;
-    private final Integer focalLengthFullFrameEquivalent;
-    private final Integer iso;
-    private final Instant takenAt;
+    /**
+     * Collects the values of a single {@link ExifData} instance. A builder is not thread-safe.
+     */
+    public static final class Builder {
+
+        private short present;
+        private double fnumber;
+        private int focalLength;
+        private int focalLengthFullFrameEquivalent;
+        private int iso;
+        private long takenAtEpochSecond;
+        private int takenAtNano;
+        private String make;
+        private String model;
+        private String lensModel;
+        private double exposureTime;
+        private int whiteBalance;
+        private int orientation;
+        private double latitude;
+        private double longitude;
+
+        private Builder() {
+            super();
+        }
+
+        public Builder fnumber(double fnumber) {
+            this.fnumber = fnumber;
+            return with(FNUMBER);
+        }
+
+        public Builder focalLength(int focalLength) {
+            this.focalLength = focalLength;
+            return with(FOCAL_LENGTH);
+        }
+
+        public Builder focalLengthFullFrameEquivalent(int focalLengthFullFrameEquivalent) {
+            this.focalLengthFullFrameEquivalent = focalLengthFullFrameEquivalent;
+            return with(FOCAL_LENGTH_FULL_FRAME_EQUIVALENT);
+        }
+
+        public Builder iso(int iso) {
+            this.iso = iso;
+            return with(ISO);
+        }
+
+        public Builder takenAt(@Nullable Instant takenAt) {
+            if (takenAt == null) {
+                return without(TAKEN_AT);
+            }
+            return takenAt(takenAt.getEpochSecond(), takenAt.getNano());
+        }
+
+        public Builder takenAt(long epochSecond, int nano) {
+            this.takenAtEpochSecond = epochSecond;
+            this.takenAtNano = nano;
+            return with(TAKEN_AT);
+        }
+
+        public Builder make(@Nullable String make) {
+            if (make == null) {
+                return without(MAKE);
+            }
+            this.make = StringDictionary.shared().canonicalize(make);
+            return with(MAKE);
+        }
+
+        public Builder model(@Nullable String model) {
+            if (model == null) {
+                return without(MODEL);
+            }
+            this.model = StringDictionary.shared().canonicalize(model);
+            return with(MODEL);
+        }
+
+        public Builder lensModel(@Nullable String lensModel) {
+            if (lensModel == null) {
+                return without(LENS_MODEL);
+            }
+            this.lensModel = StringDictionary.shared().canonicalize(lensModel);
+            return with(LENS_MODEL);
+        }
+
+        /**
+         * @param exposureTime The exposure time in seconds.
+         * @return The builder.
+         */
+        public Builder exposureTime(double exposureTime) {
+            this.exposureTime = exposureTime;
+            return with(EXPOSURE_TIME);
+        }
+
+        /**
+         * @param whiteBalance The white balance mode as defined by EXIF, <code>0</code> for auto and <code>1</code>
+         *                     for manual white balance.
+         * @return The builder.
+         */
+        public Builder whiteBalance(int whiteBalance) {
+            this.whiteBalance = whiteBalance;
+            return with(WHITE_BALANCE);
+        }
+
+        /**
+         * @param orientation The orientation as defined by EXIF, ranging from <code>1</code> to <code>8</code>.
+         * @return The builder.
+         */
+        public Builder orientation(int orientation) {
+            this.orientation = orientation;
+            return with(ORIENTATION);
+        }
+
+        /**
+         * @param latitude  The latitude in decimal degrees, negative for southern latitudes.
+         * @param longitude The longitude in decimal degrees, negative for western longitudes.
+         * @return The builder.
+         */
+        public Builder location(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            return with(LOCATION);
+        }
+
+        private Builder with(short field) {
+            present |= field;
+            return this;
+        }
+
+        private Builder without(short field) {
+            present &= ~field;
+            return this;
+        }
+
+        @Nonnull
+        public ExifData build() {
+            return new ExifData(this);
+        }
+    }
+
+    private static final short FNUMBER = 1;
+    private static final short FOCAL_LENGTH = 1 << 1;
+    private static final short FOCAL_LENGTH_FULL_FRAME_EQUIVALENT = 1 << 2;
+    private static final short ISO = 1 << 3;
+    private static final short TAKEN_AT = 1 << 4;
+    private static final short MAKE = 1 << 5;
+    private static final short MODEL = 1 << 6;
+    private static final short LENS_MODEL = 1 << 7;
+    private static final short EXPOSURE_TIME = 1 << 8;
+    private static final short WHITE_BALANCE = 1 << 9;
+    private static final short ORIENTATION = 1 << 10;
+    private static final short LOCATION = 1 << 11;
+
+    private static final ExifData EMPTY = new Builder().build();
+
+    private final short present;
+    private final double fnumber;
+    private final int focalLength;
+    private final int focalLengthFullFrameEquivalent;
+    private final int iso;
+    private final long takenAtEpochSecond;
+    private final int takenAtNano;
+    private final String make;
+    private final String model;
+    private final String lensModel;
+    private final double exposureTime;
+    private final int whiteBalance;
+    private final int orientation;
+    private final double latitude;
+    private final double longitude;
+
+    private ExifData(Builder builder) {
+        this.present = builder.present;
+        this.fnumber = builder.fnumber;
+        this.focalLength = builder.focalLength;
+        this.focalLengthFullFrameEquivalent = builder.focalLengthFullFrameEquivalent;
+        this.iso = builder.iso;
+        this.takenAtEpochSecond = builder.takenAtEpochSecond;
+        this.takenAtNano = builder.takenAtNano;
+        this.make = builder.make;
+        this.model = builder.model;
+        this.lensModel = builder.lensModel;
+        this.exposureTime = builder.exposureTime;
+        this.whiteBalance = builder.whiteBalance;
+        this.orientation = builder.orientation;
+        this.latitude = builder.latitude;
+        this.longitude = builder.longitude;
+    }
+
+    private boolean has(short field) {
+        return (present & field) != 0;
+    }
+
+    public boolean hasFnumber() {
+        return has(FNUMBER);
+    }
 
-    private ExifData(@Nullable Double fnumber,
-                     @Nullable Integer focalLength,
-                     @Nullable Integer focalLengthFullFrameEquivalent,
-                     @Nullable Integer iso,
-                     @Nullable Instant takenAt) {
-        this.fnumber = fnumber;
-        this.focalLength = focalLength;
-        this.focalLengthFullFrameEquivalent = focalLengthFullFrameEquivalent;
-        this.iso = iso;
-        this.takenAt = takenAt;
+    public double fnumberOrElse(double other) {
+        return hasFnumber() ? fnumber : other;
     }
 
     @Nonnull
     public Optional<Double> fnumber() {
-        return Optional.ofNullable(fnumber);
+        return hasFnumber() ? Optional.of(fnumber) : Optional.empty();
+    }
+
+    public boolean hasFocalLength() {
+        return has(FOCAL_LENGTH);
+    }
+
+    public int focalLengthOrElse(int other) {
+        return hasFocalLength() ? focalLength : other;
     }
 
     @Nonnull
     public Optional<Integer> focalLength() {
-        return Optional.ofNullable(focalLength);
+        return hasFocalLength() ? Optional.of(focalLength) : Optional.empty();
+    }
+
+    public boolean hasFocalLengthFullFrameEquivalent() {
+        return has(FOCAL_LENGTH_FULL_FRAME_EQUIVALENT);
+    }
+
+    public int focalLengthFullFrameEquivalentOrElse(int other) {
+        return hasFocalLengthFullFrameEquivalent() ? focalLengthFullFrameEquivalent : other;
     }
 
     @Nonnull
     public Optional<Integer> focalLengthFullFrameEquivalent() {
-        return Optional.ofNullable(focalLengthFullFrameEquivalent);
+        return hasFocalLengthFullFrameEquivalent() ? Optional.of(focalLengthFullFrameEquivalent) : Optional.empty();
+    }
+
+    public boolean hasIso() {
+        return has(ISO);
+    }
+
+    public int isoOrElse(int other) {
+        return hasIso() ? iso : other;
     }
 
     @Nonnull
     public Optional<Integer> iso() {
-        return Optional.ofNullable(iso);
+        return hasIso() ? Optional.of(iso) : Optional.empty();
+    }
+
+    public boolean hasTakenAt() {
+        return has(TAKEN_AT);
+    }
+
+    /**
+     * @param other The value to be returned if the time the photo has been taken at is unknown.
+     * @return The time the photo has been taken at in milliseconds since the epoch, which does not require an
+     * {@link Instant} to be created.
+     */
+    public long takenAtEpochMilliOrElse(long other) {
+        return hasTakenAt() ? takenAtEpochSecond * 1000 + takenAtNano / 1000000 : other;
     }
 
     @Nonnull
     public Optional<Instant> takenAt() {
-        return Optional.ofNullable(takenAt);
+        return hasTakenAt() ? Optional.of(Instant.ofEpochSecond(takenAtEpochSecond, takenAtNano)) : Optional.empty();
+    }
+
+    public boolean hasMake() {
+        return has(MAKE);
+    }
+
+    @Nullable
+    public String makeOrElse(@Nullable String other) {
+        return hasMake() ? make : other;
+    }
+
+    @Nonnull
+    public Optional<String> make() {
+        return hasMake() ? Optional.of(make) : Optional.empty();
+    }
+
+    public boolean hasModel() {
+        return has(MODEL);
+    }
+
+    @Nullable
+    public String modelOrElse(@Nullable String other) {
+        return hasModel() ? model : other;
+    }
+
+    @Nonnull
+    public Optional<String> model() {
+        return hasModel() ? Optional.of(model) : Optional.empty();
+    }
+
+    public boolean hasLensModel() {
+        return has(LENS_MODEL);
+    }
+
+    @Nullable
+    public String lensModelOrElse(@Nullable String other) {
+        return hasLensModel() ? lensModel : other;
+    }
+
+    @Nonnull
+    public Optional<String> lensModel() {
+        return hasLensModel() ? Optional.of(lensModel) : Optional.empty();
+    }
+
+    public boolean hasExposureTime() {
+        return has(EXPOSURE_TIME);
+    }
+
+    public double exposureTimeOrElse(double other) {
+        return hasExposureTime() ? exposureTime : other;
+    }
+
+    /**
+     * @return The exposure time in seconds.
+     */
+    @Nonnull
+    public Optional<Double> exposureTime() {
+        return hasExposureTime() ? Optional.of(exposureTime) : Optional.empty();
+    }
+
+    public boolean hasWhiteBalance() {
+        return has(WHITE_BALANCE);
+    }
+
+    public int whiteBalanceOrElse(int other) {
+        return hasWhiteBalance() ? whiteBalance : other;
+    }
+
+    /**
+     * @return The white balance mode as defined by EXIF, <code>0</code> for auto and <code>1</code> for manual white
+     * balance.
+     */
+    @Nonnull
+    public Optional<Integer> whiteBalance() {
+        return hasWhiteBalance() ? Optional.of(whiteBalance) : Optional.empty();
+    }
+
+    public boolean hasOrientation() {
+        return has(ORIENTATION);
+    }
+
+    public int orientationOrElse(int other) {
+        return hasOrientation() ? orientation : other;
+    }
+
+    /**
+     * @return The orientation as defined by EXIF, ranging from <code>1</code> to <code>8</code>.
+     */
+    @Nonnull
+    public Optional<Integer> orientation() {
+        return hasOrientation() ? Optional.of(orientation) : Optional.empty();
+    }
+
+    public boolean hasLocation() {
+        return has(LOCATION);
+    }
+
+    public double latitudeOrElse(double other) {
+        return hasLocation() ? latitude : other;
+    }
+
+    public double longitudeOrElse(double other) {
+        return hasLocation() ? longitude : other;
+    }
+
+    /**
+     * @return The latitude in decimal degrees, negative for southern latitudes.
+     */
+    @Nonnull
+    public Optional<Double> latitude() {
+        return hasLocation() ? Optional.of(latitude) : Optional.empty();
+    }
+
+    /**
+     * @return The longitude in decimal degrees, negative for western longitudes.
+     */
+    @Nonnull
+    public Optional<Double> longitude() {
+        return hasLocation() ? Optional.of(longitude) : Optional.empty();
     }
 
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("ExifData{");
-        sb.append("fnumber=").append(fnumber);
-        sb.append(", focalLength=").append(focalLength);
-        sb.append(", focalLengthFullFrameEquivalent=").append(focalLengthFullFrameEquivalent);
-        sb.append(", iso=").append(iso);
-        sb.append(", takenAt=").append(takenAt);
+        sb.append("fnumber=").append(fnumber().orElse(null));
+        sb.append(", focalLength=").append(focalLength().orElse(null));
+        sb.append(", focalLengthFullFrameEquivalent=").append(focalLengthFullFrameEquivalent().orElse(null));
+        sb.append(", iso=").append(iso().orElse(null));
+        sb.append(", takenAt=").append(takenAt().orElse(null));
+        sb.append(", make=").append(make().orElse(null));
+        sb.append(", model=").append(model().orElse(null));
+        sb.append(", lensModel=").append(lensModel().orElse(null));
+        sb.append(", exposureTime=").append(exposureTime().orElse(null));
+        sb.append(", whiteBalance=").append(whiteBalance().orElse(null));
+        sb.append(", orientation=").append(orientation().orElse(null));
+        sb.append(", latitude=").append(latitude().orElse(null));
+        sb.append(", longitude=").append(longitude().orElse(null));
         sb.append('}');
         return sb.toString();
     }
 
     public ExifData withFnumber(@Nullable Double fnumber) {
-        return new ExifData(fnumber, focalLength, focalLengthFullFrameEquivalent, iso, takenAt);
+        Builder builder = toBuilder();
+        return (fnumber != null ? builder.fnumber(fnumber) : builder.without(FNUMBER)).build();
     }
 
     public ExifData withFocalLength(@Nullable Integer focalLength) {
-        return new ExifData(fnumber, focalLength, focalLengthFullFrameEquivalent, iso, takenAt);
+        Builder builder = toBuilder();
+        return (focalLength != null ? builder.focalLength(focalLength) : builder.without(FOCAL_LENGTH)).build();
     }
 
     public ExifData withFocalLengthFullFrameEquivalent(@Nullable Integer focalLengthFullFrameEquivalent) {
-        return new ExifData(fnumber, focalLength, focalLengthFullFrameEquivalent, iso, takenAt);
+        Builder builder = toBuilder();
+        return (focalLengthFullFrameEquivalent != null
+                ? builder.focalLengthFullFrameEquivalent(focalLengthFullFrameEquivalent)
+                : builder.without(FOCAL_LENGTH_FULL_FRAME_EQUIVALENT)).build();
     }
 
     public ExifData withIso(@Nullable Integer iso) {
-        return new ExifData(fnumber, focalLength, focalLengthFullFrameEquivalent, iso, takenAt);
+        Builder builder = toBuilder();
+        return (iso != null ? builder.iso(iso) : builder.without(ISO)).build();
     }
 
     public ExifData withTakenAt(@Nullable Instant takenAt) {
-        return new ExifData(fnumber, focalLength, focalLengthFullFrameEquivalent, iso, takenAt);
+        return toBuilder().takenAt(takenAt).build();
+    }
+
+    private Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.present = present;
+        builder.fnumber = fnumber;
+        builder.focalLength = focalLength;
+        builder.focalLengthFullFrameEquivalent = focalLengthFullFrameEquivalent;
+        builder.iso = iso;
+        builder.takenAtEpochSecond = takenAtEpochSecond;
+        builder.takenAtNano = takenAtNano;
+        builder.make = make;
+        builder.model = model;
+        builder.lensModel = lensModel;
+        builder.exposureTime = exposureTime;
+        builder.whiteBalance = whiteBalance;
+        builder.orientation = orientation;
+        builder.latitude = latitude;
+        builder.longitude = longitude;
+        return builder;
+    }
+
+    public static Builder builder() {
+        return new Builder();
     }
 
     public static ExifData empty() {
-        return new ExifData(null, null, null, null, null);
+        return EMPTY;
     }
 }
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records that the metadata of a photo could not be read completely, e.g. because the file is corrupt or does not
+ * contain EXIF data. Reading the metadata again is pointless until the file has been changed.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 10.03.16
+ */
+public final class ExtractionFailure {
+
+    private final FileFingerprint fingerprint;
+    private final String reason;
+    private final Instant failedAt;
+
+    public ExtractionFailure(@Nullable FileFingerprint fingerprint, @Nonnull String reason, @Nonnull Instant failedAt) {
+        requireNonNull(reason, "Reason must not be null.");
+        requireNonNull(failedAt, "Failure time must not be null.");
+        this.fingerprint = fingerprint;
+        this.reason = reason;
+        this.failedAt = failedAt;
+    }
+
+    /**
+     * @return The fingerprint of the file at the time of the failure, if it has been available.
+     */
+    @Nonnull
+    public Optional<FileFingerprint> fingerprint() {
+        return Optional.ofNullable(fingerprint);
+    }
+
+    @Nonnull
+    public String reason() {
+        return reason;
+    }
+
+    @Nonnull
+    public Instant failedAt() {
+        return failedAt;
+    }
+
+    /**
+     * Checks if reading the metadata again is still pointless, i.e. the file has not been changed and the retry
+     * interval has not expired yet. Without a fingerprint, only the retry interval is considered.
+     *
+     * @param attributes    The current file attributes.
+     * @param retryInterval The interval after which reading the metadata is retried anyway.
+     * @param now           The current time.
+     * @return <code>true</code>, if the metadata does not need to be read again.
+     */
+    public boolean isStillValid(@Nonnull BasicFileAttributes attributes,
+                                @Nonnull Duration retryInterval,
+                                @Nonnull Instant now) {
+        if (fingerprint != null && !fingerprint.matches(attributes)) {
+            return false;
+        }
+        return now.isBefore(failedAt.plus(retryInterval));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ExtractionFailure that = (ExtractionFailure) o;
+        return Objects.equals(fingerprint, that.fingerprint) && Objects.equals(reason, that.reason)
+                && Objects.equals(failedAt, that.failedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fingerprint, reason, failedAt);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("ExtractionFailure{");
+        sb.append("fingerprint=").append(fingerprint);
+        sb.append(", reason='").append(reason).append('\'');
+        sb.append(", failedAt=").append(failedAt);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public static ExtractionFailure of(@Nullable FileFingerprint fingerprint, @Nonnull String reason) {
+        return new ExtractionFailure(fingerprint, reason, Instant.now());
+    }
+}
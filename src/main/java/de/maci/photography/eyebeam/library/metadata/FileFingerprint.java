@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Identifies the state of a file at the time its metadata has been extracted, so that changes of the file can be
+ * detected using its file attributes only.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 23.02.16
+ */
+public final class FileFingerprint {
+
+    private final long size;
+    private final Instant lastModified;
+    private final String fileKey;
+
+    public FileFingerprint(long size, @Nonnull Instant lastModified, @Nullable String fileKey) {
+        requireNonNull(lastModified, "Last modification time must not be null.");
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    @Nonnull
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    @Nonnull
+    public Optional<String> fileKey() {
+        return Optional.ofNullable(fileKey);
+    }
+
+    /**
+     * Checks if the given file attributes describe the same file state. The file key is only compared if it is
+     * available on both sides.
+     *
+     * @param attributes The file attributes to be compared.
+     * @return <code>true</code>, if the file has not been changed.
+     */
+    public boolean matches(@Nonnull BasicFileAttributes attributes) {
+        if (size != attributes.size() || !lastModified.equals(attributes.lastModifiedTime().toInstant())) {
+            return false;
+        }
+        Object otherFileKey = attributes.fileKey();
+        return fileKey == null || otherFileKey == null || fileKey.equals(otherFileKey.toString());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FileFingerprint that = (FileFingerprint) o;
+        return size == that.size && Objects.equals(lastModified, that.lastModified)
+                && Objects.equals(fileKey, that.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, lastModified, fileKey);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("FileFingerprint{");
+        sb.append("size=").append(size);
+        sb.append(", lastModified=").append(lastModified);
+        sb.append(", fileKey=").append(fileKey);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public static FileFingerprint of(@Nonnull BasicFileAttributes attributes) {
+        requireNonNull(attributes, "File attributes must not be null.");
+        Object fileKey = attributes.fileKey();
+        return new FileFingerprint(attributes.size(),
+                                   attributes.lastModifiedTime().toInstant(),
+                                   fileKey != null ? fileKey.toString() : null);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+
+/**
+ * A snapshot of the metadata reads of files of a single {@link ImageFormat}.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public final class FormatMetrics {
+
+    private final long readCount;
+    private final long failureCount;
+    private final long totalNanos;
+    private final long bytesRead;
+
+    FormatMetrics(long readCount, long failureCount, long totalNanos, long bytesRead) {
+        this.readCount = readCount;
+        this.failureCount = failureCount;
+        this.totalNanos = totalNanos;
+        this.bytesRead = bytesRead;
+    }
+
+    /**
+     * @return The number of files read, including failed reads.
+     */
+    public long readCount() {
+        return readCount;
+    }
+
+    public long failureCount() {
+        return failureCount;
+    }
+
+    @Nonnull
+    public Duration totalTime() {
+        return Duration.ofNanos(totalNanos);
+    }
+
+    @Nonnull
+    public Duration averageTime() {
+        return readCount > 0 ? Duration.ofNanos(totalNanos / readCount) : Duration.ZERO;
+    }
+
+    /**
+     * @return The number of bytes read, including detecting the format. Registered readers only contribute the bytes
+     * they read using built-in readers, see {@link MetadataReader#bytesReadOnCurrentThread()}.
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("FormatMetrics{");
+        sb.append("readCount=").append(readCount);
+        sb.append(", failureCount=").append(failureCount);
+        sb.append(", totalTime=").append(totalTime());
+        sb.append(", bytesRead=").append(bytesRead);
+        sb.append('}');
+        return sb.toString();
+    }
+}
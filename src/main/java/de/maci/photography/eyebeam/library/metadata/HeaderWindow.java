@@ -0,0 +1,276 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import com.drew.lang.BufferBoundsException;
+import com.drew.lang.RandomAccessReader;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Gives metadata parsers access to a file while reading as little of it as possible. The header of the file is read
+ * using a single read. Further parts of the file are read in pages of {@value #PAGE_SIZE} bytes, only once a
+ * segment crosses the part of the file read so far, so the I/O per file is a few kilobytes even for large RAW files.
+ * <p>
+ * The header pages are kept while a file is open. Of the pages read beyond the header, only the
+ * {@value #MAX_RESIDENT_PAGES} used last are kept, so reading a large file completely, e.g. through
+ * {@link #inputStream()}, does not hold the whole file in memory.
+ * <p>
+ * A window can be reused for any number of files, keeping its page buffers, but it is not thread-safe.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 19.03.16
+ */
+final class HeaderWindow extends RandomAccessReader implements Closeable {
+
+    static final int PAGE_SIZE = 16 * 1024;
+    static final int HEADER_PAGES = 4;
+
+    private static final int PAGE_SHIFT = 14;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int MAX_RESIDENT_PAGES = 16;
+
+    private static final int MAX_POOLED_PAGES = HEADER_PAGES + MAX_RESIDENT_PAGES;
+
+    private static final ThreadLocal<HeaderWindow> windows = ThreadLocal.withInitial(HeaderWindow::new);
+
+    private final Deque<byte[]> pagePool = new ArrayDeque<>();
+    private final byte[][] headerPages = new byte[HEADER_PAGES][];
+    private final Map<Long, byte[]> pages = new LinkedHashMap<Long, byte[]>(MAX_RESIDENT_PAGES * 2, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            if (size() <= MAX_RESIDENT_PAGES) {
+                return false;
+            }
+            releasePage(eldest.getValue());
+            return true;
+        }
+    };
+
+    private FileChannel channel;
+    private long length;
+    private long bytesRead;
+    private long totalBytesRead;
+
+    /**
+     * @return The window reused by all reads on the current thread.
+     */
+    static HeaderWindow ofCurrentThread() {
+        return windows.get();
+    }
+
+    /**
+     * Opens a file, closing the file opened before, and reads its header.
+     *
+     * @param path The file to be read.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    void open(@Nonnull Path path) throws IOException {
+        close();
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        length = channel.size();
+
+        int headerPageCount = (int) Math.min(HEADER_PAGES, (length + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+        ByteBuffer[] buffers = new ByteBuffer[headerPageCount];
+        for (int page = 0; page < headerPageCount; page++) {
+            byte[] buffer = allocatePage();
+            headerPages[page] = buffer;
+            buffers[page] = ByteBuffer.wrap(buffer, 0, pageLength(page));
+        }
+        while (headerPageCount > 0 && buffers[headerPageCount - 1].hasRemaining()) {
+            long read = channel.read(buffers);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file while reading header.");
+            }
+            bytesRead += read;
+            totalBytesRead += read;
+        }
+    }
+
+    /**
+     * @return The number of bytes read from all files opened by the window of the current thread so far, including
+     * the file currently open.
+     */
+    static long bytesReadOnCurrentThread() {
+        return windows.get().totalBytesRead;
+    }
+
+    /**
+     * @return The number of bytes read from the file opened last.
+     */
+    long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return A stream reading the file from its beginning. Skipping bytes does not read them.
+     */
+    InputStream inputStream() {
+        return new InputStream() {
+
+            private long position = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (position >= length) {
+                    return -1;
+                }
+                long index = position++;
+                return page(index >>> PAGE_SHIFT)[(int) (index & PAGE_MASK)] & 0xff;
+            }
+
+            @Override
+            public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (position >= length) {
+                    return -1;
+                }
+                int count = (int) Math.min(len, length - position);
+                copy(position, b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public long skip(long n) {
+                long skipped = Math.max(0, Math.min(n, length - position));
+                position += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, length - position);
+            }
+        };
+    }
+
+    @Override
+    protected byte getByte(int index) throws IOException {
+        return page(index >>> PAGE_SHIFT)[index & PAGE_MASK];
+    }
+
+    @Override
+    public byte[] getBytes(int index, int count) throws IOException {
+        validateIndex(index, count);
+        byte[] bytes = new byte[count];
+        copy(index, bytes, 0, count);
+        return bytes;
+    }
+
+    @Override
+    protected void validateIndex(int index, int bytesRequested) throws IOException {
+        if (!isValidIndex(index, bytesRequested)) {
+            throw new BufferBoundsException(index, bytesRequested, length);
+        }
+    }
+
+    @Override
+    protected boolean isValidIndex(int index, int bytesRequested) {
+        return bytesRequested >= 0 && index >= 0 && (long) index + bytesRequested <= length;
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Closes the file opened last, keeping the page buffers for the next file.
+     */
+    @Override
+    public void close() throws IOException {
+        for (int page = 0; page < HEADER_PAGES; page++) {
+            if (headerPages[page] != null) {
+                releasePage(headerPages[page]);
+                headerPages[page] = null;
+            }
+        }
+        pages.values().forEach(this::releasePage);
+        pages.clear();
+        bytesRead = 0;
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    private void copy(long index, byte[] target, int offset, int count) throws IOException {
+        while (count > 0) {
+            int pageOffset = (int) (index & PAGE_MASK);
+            int chunk = Math.min(count, PAGE_SIZE - pageOffset);
+            System.arraycopy(page(index >>> PAGE_SHIFT), pageOffset, target, offset, chunk);
+            index += chunk;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    private byte[] page(long page) throws IOException {
+        if (page < HEADER_PAGES && headerPages[(int) page] != null) {
+            return headerPages[(int) page];
+        }
+        byte[] buffer = pages.get(page);
+        if (buffer == null) {
+            buffer = allocatePage();
+            ByteBuffer target = ByteBuffer.wrap(buffer, 0, pageLength(page));
+            long position = page << PAGE_SHIFT;
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position + target.position());
+                if (read < 0) {
+                    throw new EOFException(String.format("Unexpected end of file while reading page %d.", page));
+                }
+                bytesRead += read;
+                totalBytesRead += read;
+            }
+            pages.put(page, buffer);
+        }
+        return buffer;
+    }
+
+    private int pageLength(long page) {
+        return (int) Math.min(PAGE_SIZE, length - (page << PAGE_SHIFT));
+    }
+
+    private byte[] allocatePage() {
+        byte[] page = pagePool.poll();
+        return page != null ? page : new byte[PAGE_SIZE];
+    }
+
+    private void releasePage(byte[] page) {
+        if (pagePool.size() < MAX_POOLED_PAGES) {
+            pagePool.push(page);
+        }
+    }
+}
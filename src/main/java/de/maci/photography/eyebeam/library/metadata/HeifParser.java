@@ -0,0 +1,236 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import com.drew.lang.RandomAccessReader;
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the EXIF data and the image size of a HEIF file from its <code>meta</code> box. The image size is taken from
+ * the largest image spatial extent property, the EXIF data from the item of type <code>Exif</code>, which is located
+ * using the item location box and parsed by {@link TiffExifParser}. The media data itself is never read.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+final class HeifParser {
+
+    private static final class Box {
+
+        private final long payload;
+        private final long end;
+
+        private Box(long payload, long end) {
+            this.payload = payload;
+            this.end = end;
+        }
+    }
+
+    private static final int TYPE_META = fourCc("meta");
+    private static final int TYPE_IINF = fourCc("iinf");
+    private static final int TYPE_INFE = fourCc("infe");
+    private static final int TYPE_ILOC = fourCc("iloc");
+    private static final int TYPE_IPRP = fourCc("iprp");
+    private static final int TYPE_IPCO = fourCc("ipco");
+    private static final int TYPE_ISPE = fourCc("ispe");
+    private static final int TYPE_EXIF = fourCc("Exif");
+
+    private static final int FULL_BOX_HEADER_SIZE = 4;
+
+    private HeifParser() {
+        super();
+    }
+
+    /**
+     * @param reader The reader providing the HEIF file.
+     * @return The EXIF data found, which is empty if the file does not contain an EXIF item, and the size of the
+     * largest image.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    static ImageHeader parse(@Nonnull RandomAccessReader reader) throws IOException {
+        requireNonNull(reader, "Reader must not be null.");
+        reader.setMotorolaByteOrder(true);
+        Box meta = findBox(reader, 0, reader.getLength(), TYPE_META);
+        if (meta == null) {
+            return ImageHeader.of(null, null);
+        }
+        long children = meta.payload + FULL_BOX_HEADER_SIZE;
+
+        ImageSize imageSize = null;
+        Box iprp = findBox(reader, children, meta.end, TYPE_IPRP);
+        Box ipco = iprp != null ? findBox(reader, iprp.payload, iprp.end, TYPE_IPCO) : null;
+        if (ipco != null) {
+            imageSize = largestImageSpatialExtent(reader, ipco);
+        }
+
+        long exifItemId = -1;
+        Box iinf = findBox(reader, children, meta.end, TYPE_IINF);
+        if (iinf != null) {
+            exifItemId = findExifItemId(reader, iinf);
+        }
+        long exifOffset = -1;
+        Box iloc = exifItemId >= 0 ? findBox(reader, children, meta.end, TYPE_ILOC) : null;
+        if (iloc != null) {
+            exifOffset = findItemOffset(reader, iloc, exifItemId);
+        }
+
+        if (exifOffset < 0 || !isValid(reader, exifOffset, 4)) {
+            return ImageHeader.of(null, imageSize);
+        }
+        // The EXIF item starts with the offset of the TIFF header relative to the end of the offset itself
+        long tiffHeaderOffset = exifOffset + 4 + reader.getUInt32((int) exifOffset);
+        if (!isValid(reader, tiffHeaderOffset, 8)) {
+            return ImageHeader.of(null, imageSize);
+        }
+        ImageHeader header = TiffExifParser.parse(reader, (int) tiffHeaderOffset);
+        return imageSize != null ? header.withImageSize(imageSize) : header;
+    }
+
+    private static ImageSize largestImageSpatialExtent(RandomAccessReader reader, Box ipco) throws IOException {
+        ImageSize largest = null;
+        long offset = ipco.payload;
+        Box ispe;
+        while ((ispe = findBox(reader, offset, ipco.end, TYPE_ISPE)) != null) {
+            long propertyOffset = ispe.payload + FULL_BOX_HEADER_SIZE;
+            if (isValid(reader, propertyOffset, 8)) {
+                long width = reader.getUInt32((int) propertyOffset);
+                long height = reader.getUInt32((int) propertyOffset + 4);
+                if (width > 0 && height > 0 && width <= Integer.MAX_VALUE && height <= Integer.MAX_VALUE
+                        && (largest == null || width * height > (long) largest.width() * largest.height())) {
+                    largest = new ImageSize((int) width, (int) height);
+                }
+            }
+            offset = ispe.end;
+        }
+        return largest;
+    }
+
+    private static long findExifItemId(RandomAccessReader reader, Box iinf) throws IOException {
+        int version = reader.getUInt8((int) iinf.payload);
+        long entries = iinf.payload + FULL_BOX_HEADER_SIZE + (version == 0 ? 2 : 4);
+        Box infe;
+        while ((infe = findBox(reader, entries, iinf.end, TYPE_INFE)) != null) {
+            int infeVersion = reader.getUInt8((int) infe.payload);
+            long fields = infe.payload + FULL_BOX_HEADER_SIZE;
+            // Item types are only given by version 2 and later
+            if (infeVersion >= 2) {
+                int idSize = infeVersion == 2 ? 2 : 4;
+                long typeOffset = fields + idSize + 2;
+                if (isValid(reader, typeOffset, 4) && reader.getInt32((int) typeOffset) == TYPE_EXIF) {
+                    return idSize == 2 ? reader.getUInt16((int) fields) : reader.getUInt32((int) fields);
+                }
+            }
+            entries = infe.end;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The absolute offset of the first extent of an item stored in the file itself, <code>-1</code> if there
+     * is no such item.
+     */
+    private static long findItemOffset(RandomAccessReader reader, Box iloc, long itemId) throws IOException {
+        int version = reader.getUInt8((int) iloc.payload);
+        long offset = iloc.payload + FULL_BOX_HEADER_SIZE;
+        int sizes = reader.getUInt16((int) offset);
+        int offsetSize = sizes >>> 12;
+        int lengthSize = (sizes >>> 8) & 0xF;
+        int baseOffsetSize = (sizes >>> 4) & 0xF;
+        int indexSize = version == 0 ? 0 : sizes & 0xF;
+        offset += 2;
+
+        long itemCount = version < 2 ? reader.getUInt16((int) offset) : reader.getUInt32((int) offset);
+        offset += version < 2 ? 2 : 4;
+        for (long i = 0; i < itemCount && offset < iloc.end; i++) {
+            long id = version < 2 ? reader.getUInt16((int) offset) : reader.getUInt32((int) offset);
+            offset += version < 2 ? 2 : 4;
+            int constructionMethod = 0;
+            if (version > 0) {
+                constructionMethod = reader.getUInt16((int) offset) & 0xF;
+                offset += 2;
+            }
+            // Skip the data reference index
+            offset += 2;
+            long baseOffset = readUnsigned(reader, offset, baseOffsetSize);
+            offset += baseOffsetSize;
+            int extentCount = reader.getUInt16((int) offset);
+            offset += 2;
+            if (id == itemId) {
+                if (constructionMethod != 0 || extentCount < 1) {
+                    return -1;
+                }
+                return baseOffset + readUnsigned(reader, offset + indexSize, offsetSize);
+            }
+            offset += (long) extentCount * (indexSize + offsetSize + lengthSize);
+        }
+        return -1;
+    }
+
+    private static long readUnsigned(RandomAccessReader reader, long offset, int size) throws IOException {
+        switch (size) {
+            case 0:
+                return 0;
+            case 4:
+                return reader.getUInt32((int) offset);
+            case 8:
+                return reader.getInt64((int) offset);
+            default:
+                throw new IOException(String.format("Invalid field size %d.", size));
+        }
+    }
+
+    /**
+     * Finds the first box of a type among the sibling boxes located between two offsets.
+     */
+    private static Box findBox(RandomAccessReader reader, long start, long end, int type) throws IOException {
+        long offset = start;
+        while (offset + 8 <= end && isValid(reader, offset, 8)) {
+            long size = reader.getUInt32((int) offset);
+            int boxType = reader.getInt32((int) offset + 4);
+            long headerSize = 8;
+            if (size == 1) {
+                if (!isValid(reader, offset + 8, 8)) {
+                    return null;
+                }
+                size = reader.getInt64((int) offset + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - offset;
+            }
+            if (size < headerSize || offset + size > end) {
+                return null;
+            }
+            if (boxType == type) {
+                return new Box(offset + headerSize, offset + size);
+            }
+            offset += size;
+        }
+        return null;
+    }
+
+    private static boolean isValid(RandomAccessReader reader, long offset, long byteCount) throws IOException {
+        return offset >= 0 && offset + byteCount <= Math.min(reader.getLength(), Integer.MAX_VALUE);
+    }
+
+    private static int fourCc(String type) {
+        return type.charAt(0) << 24 | type.charAt(1) << 16 | type.charAt(2) << 8 | type.charAt(3);
+    }
+}
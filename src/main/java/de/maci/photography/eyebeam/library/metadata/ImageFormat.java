@@ -0,0 +1,108 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The image formats whose metadata is read by specialised readers, detected by the signature at the beginning of a
+ * file. All other formats are read by the generic reader of metadata-extractor.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public enum ImageFormat {
+
+    JPEG,
+    /**
+     * TIFF including the RAW formats based on it, like CR2, NEF, ARW, DNG, ORF and RW2.
+     */
+    TIFF,
+    PNG,
+    /**
+     * HEIF including its variants like HEIC and AVIF.
+     */
+    HEIF,
+    OTHER;
+
+    /**
+     * The number of bytes at the beginning of a file needed to detect its format.
+     */
+    static final int SIGNATURE_LENGTH = 12;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final String[] HEIF_BRANDS = {"heic", "heix", "hevc", "hevx", "heim", "heis", "mif1", "msf1",
+                                                 "avif", "avis"};
+
+    /**
+     * @param signature The first {@value #SIGNATURE_LENGTH} bytes of a file, fewer if the file is shorter.
+     * @return The format of the file.
+     */
+    static ImageFormat detect(@Nonnull byte[] signature) {
+        requireNonNull(signature, "Signature must not be null.");
+        if (startsWith(signature, (byte) 0xFF, (byte) 0xD8, (byte) 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(signature, PNG_SIGNATURE)) {
+            return PNG;
+        }
+        if (isTiff(signature)) {
+            return TIFF;
+        }
+        if (isHeif(signature)) {
+            return HEIF;
+        }
+        return OTHER;
+    }
+
+    private static boolean isTiff(byte[] signature) {
+        // The magic number following the byte order is 42 for TIFF, but differs for ORF and RW2
+        return startsWith(signature, (byte) 'I', (byte) 'I', (byte) 42, (byte) 0)
+                || startsWith(signature, (byte) 'M', (byte) 'M', (byte) 0, (byte) 42)
+                || startsWith(signature, (byte) 'I', (byte) 'I', (byte) 'R', (byte) 'O')
+                || startsWith(signature, (byte) 'I', (byte) 'I', (byte) 'R', (byte) 'S')
+                || startsWith(signature, (byte) 'M', (byte) 'M', (byte) 'O', (byte) 'R')
+                || startsWith(signature, (byte) 'I', (byte) 'I', (byte) 'U', (byte) 0);
+    }
+
+    private static boolean isHeif(byte[] signature) {
+        if (signature.length < 12 || signature[4] != 'f' || signature[5] != 't' || signature[6] != 'y'
+                || signature[7] != 'p') {
+            return false;
+        }
+        for (String brand : HEIF_BRANDS) {
+            if (signature[8] == brand.charAt(0) && signature[9] == brand.charAt(1)
+                    && signature[10] == brand.charAt(2) && signature[11] == brand.charAt(3)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] signature, byte... prefix) {
+        if (signature.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (signature[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
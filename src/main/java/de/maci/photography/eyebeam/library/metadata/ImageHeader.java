@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Optional;
+
+/**
+ * The metadata read from the header of an image file, without decoding any pixel data.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+final class ImageHeader {
+
+    private final ExifData exifData;
+    private final ImageSize imageSize;
+
+    private ImageHeader(ExifData exifData, ImageSize imageSize) {
+        this.exifData = exifData;
+        this.imageSize = imageSize;
+    }
+
+    /**
+     * @return The EXIF data, which is absent if the file does not contain any.
+     */
+    @Nonnull
+    Optional<ExifData> exifData() {
+        return Optional.ofNullable(exifData);
+    }
+
+    @Nonnull
+    Optional<ImageSize> imageSize() {
+        return Optional.ofNullable(imageSize);
+    }
+
+    ImageHeader withImageSize(@Nullable ImageSize imageSize) {
+        return new ImageHeader(exifData, imageSize);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("ImageHeader{");
+        sb.append("exifData=").append(exifData);
+        sb.append(", imageSize=").append(imageSize);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    static ImageHeader of(@Nullable ExifData exifData, @Nullable ImageSize imageSize) {
+        return new ImageHeader(exifData, imageSize);
+    }
+}
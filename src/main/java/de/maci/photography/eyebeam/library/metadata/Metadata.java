@@ -18,8 +18,11 @@ package de.maci.photography.eyebeam.library.metadata;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.time.Instant;
+import java.util.Objects;
 import java.util.Optional;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * @author Daniel Götten <daniel.goetten@googlemail.com>
  * @since 10.10.15
@@ -44,6 +47,19 @@ public class Metadata {
             return height;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ImageSize that = (ImageSize) o;
+            return width == that.width && height == that.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height);
+        }
+
         @Override
         public String toString() {
             final StringBuffer sb = new StringBuffer("ImageSize{");
@@ -57,17 +73,46 @@ public class Metadata {
     private final Long fileSize;
     private final ImageSize imageSize;
     private final ExifData exifData;
+    private final FileFingerprint fingerprint;
+    private final ContentHash contentHash;
 
     private final Instant gatheredAt;
 
     public Metadata(@Nullable Long fileSize,
                     @Nullable ImageSize imageSize,
                     @Nullable ExifData exifData) {
+        this(fileSize, imageSize, exifData, null);
+    }
+
+    public Metadata(@Nullable Long fileSize,
+                    @Nullable ImageSize imageSize,
+                    @Nullable ExifData exifData,
+                    @Nullable FileFingerprint fingerprint) {
+        this(fileSize, imageSize, exifData, fingerprint, Instant.now());
+    }
+
+    public Metadata(@Nullable Long fileSize,
+                    @Nullable ImageSize imageSize,
+                    @Nullable ExifData exifData,
+                    @Nullable FileFingerprint fingerprint,
+                    @Nonnull Instant extractedAt) {
+        this(fileSize, imageSize, exifData, fingerprint, null, extractedAt);
+    }
+
+    public Metadata(@Nullable Long fileSize,
+                    @Nullable ImageSize imageSize,
+                    @Nullable ExifData exifData,
+                    @Nullable FileFingerprint fingerprint,
+                    @Nullable ContentHash contentHash,
+                    @Nonnull Instant extractedAt) {
+        requireNonNull(extractedAt, "Extraction time must not be null.");
         this.fileSize = fileSize;
         this.imageSize = imageSize;
         this.exifData = exifData;
+        this.fingerprint = fingerprint;
+        this.contentHash = contentHash;
 
-        this.gatheredAt = Instant.now();
+        this.gatheredAt = extractedAt;
     }
 
     @Nonnull
@@ -85,17 +130,44 @@ public class Metadata {
         return Optional.ofNullable(exifData);
     }
 
+    /**
+     * Returns the fingerprint of the file the metadata has been extracted from.
+     *
+     * @return The file's fingerprint, which is absent if it has not been captured during extraction.
+     */
+    @Nonnull
+    public Optional<FileFingerprint> fingerprint() {
+        return Optional.ofNullable(fingerprint);
+    }
+
+    /**
+     * Returns the hash of the content of the file the metadata has been extracted from.
+     *
+     * @return The file's content hash, which is absent if content hashing has not been enabled.
+     */
+    @Nonnull
+    public Optional<ContentHash> contentHash() {
+        return Optional.ofNullable(contentHash);
+    }
+
     @Nonnull
     public Instant extractedAt() {
         return gatheredAt;
     }
 
+    @Nonnull
+    public Metadata withContentHash(@Nullable ContentHash contentHash) {
+        return new Metadata(fileSize, imageSize, exifData, fingerprint, contentHash, gatheredAt);
+    }
+
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("Metadata{");
         sb.append("exifData=").append(exifData);
         sb.append(", fileSize=").append(fileSize);
         sb.append(", imageSize=").append(imageSize);
+        sb.append(", fingerprint=").append(fingerprint);
+        sb.append(", contentHash=").append(contentHash);
         sb.append('}');
         return sb.toString();
     }
@@ -0,0 +1,640 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A disk-backed cache of extracted metadata, keyed by the path, the size and the modification time of a file, so the
+ * metadata of unchanged files survives clearing or rebuilding a data store.
+ * <p>
+ * Metadata is appended to a data file as compact binary records. An index file maps the hash of each path to the
+ * offset of its latest record and is rewritten when the cache is flushed, so the index holds a single entry per file
+ * and the key stored in the record is checked when reading. Records appended after the index has been written last,
+ * e.g. before a crash, are recovered by scanning the end of the data file when the cache is opened. Records replaced
+ * by later ones are dropped by compacting the data file when flushing, once they make up most of it. Recently used
+ * metadata is additionally kept in a bounded in-heap front cache.
+ * <p>
+ * A cache is thread-safe, so a single instance can be shared by the metadata readers of all worker threads.
+ * Content hashes are not cached.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public final class MetadataCache implements Closeable {
+
+    private static final class Key {
+
+        private final String path;
+        private final long size;
+        private final Instant lastModified;
+
+        private Key(String path, long size, Instant lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return The 64 bit FNV-1a hash of the path, which is stable across runs.
+         */
+        private long pathHash() {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < path.length(); i++) {
+                hash = (hash ^ path.charAt(i)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return size == that.size && Objects.equals(path, that.path)
+                    && Objects.equals(lastModified, that.lastModified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+
+        private static Key of(Path path, FileFingerprint fingerprint) {
+            return new Key(path.toAbsolutePath().toString(), fingerprint.size(), fingerprint.lastModified());
+        }
+    }
+
+    public static final int DEFAULT_FRONT_CACHE_CAPACITY = 10000;
+
+    static final String DATA_FILE_NAME = "metadata-cache.dat";
+    static final String INDEX_FILE_NAME = "metadata-cache.idx";
+
+    private static final int INDEX_MAGIC = 0x45424D43;
+    private static final int INDEX_VERSION = 2;
+
+    /**
+     * The share of replaced records in the data file above which the data file is compacted.
+     */
+    static final double COMPACTION_THRESHOLD = 0.5;
+    static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private static final int HAS_FILE_SIZE = 1;
+    private static final int HAS_IMAGE_SIZE = 1 << 1;
+    private static final int HAS_EXIF_DATA = 1 << 2;
+    private static final int HAS_FNUMBER = 1 << 3;
+    private static final int HAS_FOCAL_LENGTH = 1 << 4;
+    private static final int HAS_FOCAL_LENGTH_FULL_FRAME_EQUIVALENT = 1 << 5;
+    private static final int HAS_ISO = 1 << 6;
+    private static final int HAS_TAKEN_AT = 1 << 7;
+    private static final int HAS_FILE_KEY = 1 << 8;
+    private static final int HAS_MAKE = 1 << 9;
+    private static final int HAS_MODEL = 1 << 10;
+    private static final int HAS_LENS_MODEL = 1 << 11;
+    private static final int HAS_EXPOSURE_TIME = 1 << 12;
+    private static final int HAS_WHITE_BALANCE = 1 << 13;
+    private static final int HAS_ORIENTATION = 1 << 14;
+    private static final int HAS_LOCATION = 1 << 15;
+    /**
+     * Marks records which have been written including the camera, exposure, orientation and location fields. Records
+     * written before these fields were cached are treated as misses, so their metadata is extracted again.
+     */
+    private static final int HAS_EXTENDED_EXIF_FIELDS = 1 << 16;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private final Map<Long, Long> index = new ConcurrentHashMap<>();
+    private final Map<Key, Metadata> frontCache;
+    /**
+     * Guards the data file, which is replaced while compacting. Records are read using the read lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel data;
+    private long dataLength;
+    private long replacedLength;
+
+    private MetadataCache(Path dataFile, Path indexFile, FileChannel data, int frontCacheCapacity) {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        this.data = data;
+        this.frontCache = new LinkedHashMap<Key, Metadata>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Metadata> eldest) {
+                return size() > frontCacheCapacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up the cached metadata of a file.
+     *
+     * @param path        The path of the file.
+     * @param fingerprint The current fingerprint of the file.
+     * @return The cached metadata, which is absent if the file has not been cached in its current state or the cache
+     * cannot be read.
+     */
+    @Nonnull
+    public Optional<Metadata> get(@Nonnull Path path, @Nonnull FileFingerprint fingerprint) {
+        requireNonNull(path, "Path must not be null.");
+        requireNonNull(fingerprint, "Fingerprint must not be null.");
+        Key key = Key.of(path, fingerprint);
+        synchronized (frontCache) {
+            Metadata metadata = frontCache.get(key);
+            if (metadata != null) {
+                return Optional.of(metadata);
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            Long offset = index.get(key.pathHash());
+            if (offset == null) {
+                return Optional.empty();
+            }
+            DataInputStream record = readRecord(offset);
+            if (!key.equals(readKey(record))) {
+                return Optional.empty();
+            }
+            Metadata metadata = readMetadata(record, fingerprint);
+            if (metadata == null) {
+                return Optional.empty();
+            }
+            synchronized (frontCache) {
+                frontCache.put(key, metadata);
+            }
+            return Optional.of(metadata);
+        } catch (IOException | DateTimeException e) {
+            logger.debug(String.format("Failed to read cached metadata of '%s'.", path), e);
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Caches the metadata of a file, replacing any metadata cached for the file before.
+     *
+     * @param path        The path of the file.
+     * @param fingerprint The fingerprint of the file at the time the metadata has been extracted.
+     * @param metadata    The metadata to be cached.
+     */
+    public void put(@Nonnull Path path, @Nonnull FileFingerprint fingerprint, @Nonnull Metadata metadata) {
+        requireNonNull(path, "Path must not be null.");
+        requireNonNull(fingerprint, "Fingerprint must not be null.");
+        requireNonNull(metadata, "Metadata must not be null.");
+        Key key = Key.of(path, fingerprint);
+        try {
+            ByteBuffer record = ByteBuffer.wrap(encode(key, fingerprint, metadata));
+            lock.writeLock().lock();
+            try {
+                long offset = dataLength;
+                while (record.hasRemaining()) {
+                    data.write(record, offset + record.position());
+                }
+                dataLength += record.limit();
+                indexRecord(key.pathHash(), offset);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            synchronized (frontCache) {
+                frontCache.put(key, metadata.withContentHash(null));
+            }
+        } catch (IOException e) {
+            logger.warn(String.format("Failed to cache metadata of '%s'.", path), e);
+        }
+    }
+
+    /**
+     * @return The number of files whose metadata is cached.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Forces all records to the disk and rewrites the index, compacting the data file before if most of it consists
+     * of replaced records.
+     *
+     * @throws IOException Thrown if the cache cannot be written.
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (replacedLength >= MIN_COMPACTION_BYTES && replacedLength > dataLength * COMPACTION_THRESHOLD) {
+                compact();
+            }
+            data.force(false);
+            writeIndex();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!data.isOpen()) {
+                return;
+            }
+            try {
+                flush();
+            } finally {
+                data.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        Path temporaryFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(INDEX_VERSION);
+            output.writeLong(dataLength);
+            output.writeLong(replacedLength);
+            output.writeInt(index.size());
+            for (Map.Entry<Long, Long> entry : index.entrySet()) {
+                output.writeLong(entry.getKey());
+                output.writeLong(entry.getValue());
+            }
+        }
+        Files.move(temporaryFile, indexFile, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /**
+     * Copies the latest record of each file to a new data file replacing the current one. The index is deleted
+     * before, as its offsets are not valid for the new data file, so a crash while compacting leads to scanning the
+     * data file when the cache is opened the next time.
+     */
+    private void compact() throws IOException {
+        Path temporaryFile = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+        Map<Long, Long> compactedIndex = new HashMap<>();
+        long compactedLength = 0;
+        try (FileChannel output = FileChannel.open(temporaryFile, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            for (Map.Entry<Long, Long> entry : index.entrySet()) {
+                ByteBuffer record = ByteBuffer.allocate(4 + recordLength(entry.getValue()));
+                readFully(record, entry.getValue());
+                record.flip();
+                while (record.hasRemaining()) {
+                    output.write(record);
+                }
+                compactedIndex.put(entry.getKey(), compactedLength);
+                compactedLength += record.limit();
+            }
+            output.force(false);
+        }
+
+        Files.deleteIfExists(indexFile);
+        data.close();
+        try {
+            Files.move(temporaryFile, dataFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            data = FileChannel.open(dataFile, READ, WRITE);
+        }
+        logger.info(String.format("Compacted metadata cache from %d to %d bytes.", dataLength, compactedLength));
+        index.clear();
+        index.putAll(compactedIndex);
+        dataLength = compactedLength;
+        replacedLength = 0;
+    }
+
+    /**
+     * Points the index entry of a path to a record, accounting for the record replaced by it.
+     */
+    private void indexRecord(long pathHash, long offset) throws IOException {
+        Long replacedOffset = index.put(pathHash, offset);
+        if (replacedOffset != null) {
+            replacedLength += 4 + recordLength(replacedOffset);
+        }
+    }
+
+    private DataInputStream readRecord(long offset) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(recordLength(offset));
+        readFully(record, offset + 4);
+        return new DataInputStream(new ByteArrayInputStream(record.array()));
+    }
+
+    private int recordLength(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset);
+        int recordLength = length.getInt(0);
+        if (recordLength < 0 || offset + 4 + recordLength > dataLength) {
+            throw new IOException(String.format("Invalid metadata cache record at offset %d.", offset));
+        }
+        return recordLength;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of metadata cache.");
+            }
+        }
+    }
+
+    private static Key readKey(DataInputStream record) throws IOException {
+        String path = record.readUTF();
+        long size = record.readLong();
+        return new Key(path, size, Instant.ofEpochSecond(record.readLong(), record.readInt()));
+    }
+
+    /**
+     * @return The metadata of the record, <code>null</code> if the record lacks fields cached today.
+     */
+    private static Metadata readMetadata(DataInputStream record, FileFingerprint fingerprint) throws IOException {
+        int fields = record.readInt();
+        if ((fields & HAS_EXTENDED_EXIF_FIELDS) == 0) {
+            return null;
+        }
+        Long fileSize = (fields & HAS_FILE_SIZE) != 0 ? record.readLong() : null;
+        ImageSize imageSize = (fields & HAS_IMAGE_SIZE) != 0 ? new ImageSize(record.readInt(), record.readInt()) : null;
+        ExifData exifData = null;
+        if ((fields & HAS_EXIF_DATA) != 0) {
+            ExifData.Builder builder = ExifData.builder();
+            if ((fields & HAS_FNUMBER) != 0) {
+                builder.fnumber(record.readDouble());
+            }
+            if ((fields & HAS_FOCAL_LENGTH) != 0) {
+                builder.focalLength(record.readInt());
+            }
+            if ((fields & HAS_FOCAL_LENGTH_FULL_FRAME_EQUIVALENT) != 0) {
+                builder.focalLengthFullFrameEquivalent(record.readInt());
+            }
+            if ((fields & HAS_ISO) != 0) {
+                builder.iso(record.readInt());
+            }
+            if ((fields & HAS_TAKEN_AT) != 0) {
+                builder.takenAt(record.readLong(), record.readInt());
+            }
+            if ((fields & HAS_MAKE) != 0) {
+                builder.make(record.readUTF());
+            }
+            if ((fields & HAS_MODEL) != 0) {
+                builder.model(record.readUTF());
+            }
+            if ((fields & HAS_LENS_MODEL) != 0) {
+                builder.lensModel(record.readUTF());
+            }
+            if ((fields & HAS_EXPOSURE_TIME) != 0) {
+                builder.exposureTime(record.readDouble());
+            }
+            if ((fields & HAS_WHITE_BALANCE) != 0) {
+                builder.whiteBalance(record.readInt());
+            }
+            if ((fields & HAS_ORIENTATION) != 0) {
+                builder.orientation(record.readInt());
+            }
+            if ((fields & HAS_LOCATION) != 0) {
+                builder.location(record.readDouble(), record.readDouble());
+            }
+            exifData = builder.build();
+        }
+        String fileKey = (fields & HAS_FILE_KEY) != 0 ? record.readUTF() : null;
+        Instant extractedAt = readInstant(record);
+        return new Metadata(fileSize,
+                            imageSize,
+                            exifData,
+                            new FileFingerprint(fingerprint.size(), fingerprint.lastModified(), fileKey),
+                            extractedAt);
+    }
+
+    private static Instant readInstant(DataInputStream record) throws IOException {
+        return Instant.ofEpochSecond(record.readLong(), record.readInt());
+    }
+
+    private static byte[] encode(Key key, FileFingerprint fingerprint, Metadata metadata) throws IOException {
+        ExifData exifData = metadata.exifData().orElse(null);
+        String fileKey = fingerprint.fileKey().orElse(null);
+        int fields = (metadata.fileSize().isPresent() ? HAS_FILE_SIZE : 0)
+                | (metadata.imageSize().isPresent() ? HAS_IMAGE_SIZE : 0)
+                | (fileKey != null ? HAS_FILE_KEY : 0)
+                | HAS_EXTENDED_EXIF_FIELDS;
+        if (exifData != null) {
+            fields |= HAS_EXIF_DATA
+                    | (exifData.hasFnumber() ? HAS_FNUMBER : 0)
+                    | (exifData.hasFocalLength() ? HAS_FOCAL_LENGTH : 0)
+                    | (exifData.hasFocalLengthFullFrameEquivalent() ? HAS_FOCAL_LENGTH_FULL_FRAME_EQUIVALENT : 0)
+                    | (exifData.hasIso() ? HAS_ISO : 0)
+                    | (exifData.hasTakenAt() ? HAS_TAKEN_AT : 0)
+                    | (exifData.hasMake() ? HAS_MAKE : 0)
+                    | (exifData.hasModel() ? HAS_MODEL : 0)
+                    | (exifData.hasLensModel() ? HAS_LENS_MODEL : 0)
+                    | (exifData.hasExposureTime() ? HAS_EXPOSURE_TIME : 0)
+                    | (exifData.hasWhiteBalance() ? HAS_WHITE_BALANCE : 0)
+                    | (exifData.hasOrientation() ? HAS_ORIENTATION : 0)
+                    | (exifData.hasLocation() ? HAS_LOCATION : 0);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeInt(0);
+        record.writeUTF(key.path);
+        record.writeLong(key.size);
+        writeInstant(record, key.lastModified);
+        record.writeInt(fields);
+        if (metadata.fileSize().isPresent()) {
+            record.writeLong(metadata.fileSize().get());
+        }
+        if (metadata.imageSize().isPresent()) {
+            record.writeInt(metadata.imageSize().get().width());
+            record.writeInt(metadata.imageSize().get().height());
+        }
+        if (exifData != null) {
+            if (exifData.hasFnumber()) {
+                record.writeDouble(exifData.fnumberOrElse(0));
+            }
+            if (exifData.hasFocalLength()) {
+                record.writeInt(exifData.focalLengthOrElse(0));
+            }
+            if (exifData.hasFocalLengthFullFrameEquivalent()) {
+                record.writeInt(exifData.focalLengthFullFrameEquivalentOrElse(0));
+            }
+            if (exifData.hasIso()) {
+                record.writeInt(exifData.isoOrElse(0));
+            }
+            if (exifData.hasTakenAt()) {
+                writeInstant(record, exifData.takenAt().get());
+            }
+            if (exifData.hasMake()) {
+                record.writeUTF(exifData.makeOrElse(null));
+            }
+            if (exifData.hasModel()) {
+                record.writeUTF(exifData.modelOrElse(null));
+            }
+            if (exifData.hasLensModel()) {
+                record.writeUTF(exifData.lensModelOrElse(null));
+            }
+            if (exifData.hasExposureTime()) {
+                record.writeDouble(exifData.exposureTimeOrElse(0));
+            }
+            if (exifData.hasWhiteBalance()) {
+                record.writeInt(exifData.whiteBalanceOrElse(0));
+            }
+            if (exifData.hasOrientation()) {
+                record.writeInt(exifData.orientationOrElse(0));
+            }
+            if (exifData.hasLocation()) {
+                record.writeDouble(exifData.latitudeOrElse(0));
+                record.writeDouble(exifData.longitudeOrElse(0));
+            }
+        }
+        if (fileKey != null) {
+            record.writeUTF(fileKey);
+        }
+        writeInstant(record, metadata.extractedAt());
+        record.flush();
+
+        byte[] encoded = bytes.toByteArray();
+        ByteBuffer.wrap(encoded).putInt(0, encoded.length - 4);
+        return encoded;
+    }
+
+    private static void writeInstant(DataOutputStream record, Instant instant) throws IOException {
+        record.writeLong(instant.getEpochSecond());
+        record.writeInt(instant.getNano());
+    }
+
+    /**
+     * Loads the index, if it is consistent with the data file, and indexes all records appended after the index has
+     * been written. An incomplete or unreadable record at the end of the data file is discarded, as it may have been
+     * torn by a crash while appending.
+     */
+    private void load() throws IOException {
+        long offset = loadIndex();
+        long length = data.size();
+        dataLength = length;
+        while (offset + 4 <= length) {
+            try {
+                int bodyLength = recordLength(offset);
+                indexRecord(readKey(readRecord(offset)).pathHash(), offset);
+                offset += 4 + bodyLength;
+            } catch (IOException | DateTimeException e) {
+                logger.debug(String.format("Failed to read metadata cache record at offset %d.", offset), e);
+                break;
+            }
+        }
+        if (offset < length) {
+            logger.warn(String.format("Discarding %d bytes of incomplete metadata cache records.", length - offset));
+            data.truncate(offset);
+        }
+        dataLength = offset;
+    }
+
+    private long loadIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return 0;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION) {
+                return 0;
+            }
+            long indexedLength = input.readLong();
+            if (indexedLength > data.size()) {
+                return 0;
+            }
+            replacedLength = input.readLong();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                index.put(input.readLong(), input.readLong());
+            }
+            return indexedLength;
+        } catch (EOFException e) {
+            logger.warn("Ignoring incomplete metadata cache index.", e);
+            index.clear();
+            replacedLength = 0;
+            return 0;
+        }
+    }
+
+    /**
+     * Opens the cache located in a directory, creating it if it does not exist yet.
+     *
+     * @param directory The directory containing the cache files.
+     * @return The opened cache.
+     * @throws IOException Thrown if the cache cannot be opened.
+     */
+    public static MetadataCache open(@Nonnull Path directory) throws IOException {
+        return open(directory, DEFAULT_FRONT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Opens the cache located in a directory, creating it if it does not exist yet.
+     *
+     * @param directory          The directory containing the cache files.
+     * @param frontCacheCapacity The maximum number of files whose metadata is kept in memory.
+     * @return The opened cache.
+     * @throws IOException Thrown if the cache cannot be opened.
+     */
+    public static MetadataCache open(@Nonnull Path directory, int frontCacheCapacity) throws IOException {
+        requireNonNull(directory, "Directory must not be null.");
+        if (frontCacheCapacity < 0) {
+            throw new IllegalArgumentException("Front cache capacity must not be negative.");
+        }
+        Files.createDirectories(directory);
+        Path dataFile = directory.resolve(DATA_FILE_NAME);
+        FileChannel data = FileChannel.open(dataFile, CREATE, READ, WRITE);
+        MetadataCache cache = new MetadataCache(dataFile, directory.resolve(INDEX_FILE_NAME), data, frontCacheCapacity);
+        try {
+            cache.load();
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+        return cache;
+    }
+}
@@ -33,4 +33,30 @@ public interface MetadataReader {
      * @throws MetadataReadingException Is thrown a the photo's metadata for the specific path could not be read.
      */
     Metadata readFrom(@Nonnull Path path);
+
+    /**
+     * Reads a photo's {@link Metadata} for a specific path, whose file attributes have already been read, e.g. while
+     * scanning. Implementations should use the given fingerprint instead of reading the file attributes again, which
+     * is expensive on network file systems. The default implementation falls back to {@link #readFrom(Path)}.
+     *
+     * @param path        The photo's path.
+     * @param fingerprint The fingerprint of the file, which becomes the fingerprint of the read {@link Metadata}.
+     * @return The read {@link Metadata}.
+     * @throws MetadataReadingException Is thrown a the photo's metadata for the specific path could not be read.
+     */
+    default Metadata readFrom(@Nonnull Path path, @Nonnull FileFingerprint fingerprint) {
+        return readFrom(path);
+    }
+
+    /**
+     * Returns the number of bytes the built-in readers have read from files on the current thread so far. The
+     * difference between two calls is the I/O caused by the reads in between, which is usually just the headers of the
+     * files instead of their full size. Reads which are answered from a {@link MetadataCache}, as well as reads of
+     * custom readers not delegating to a built-in reader, are not counted.
+     *
+     * @return The total number of bytes read on the current thread.
+     */
+    static long bytesReadOnCurrentThread() {
+        return HeaderWindow.bytesReadOnCurrentThread();
+    }
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads metadata using a reader specialised for the format of each file, which is detected by the signature at the
+ * beginning of the file. Built-in readers for JPEG, TIFF based RAW formats, PNG and HEIF only parse the headers
+ * needed, files of other formats are read by the generic reader of metadata-extractor. Readers registered for a format
+ * replace the built-in reader, a reader registered for {@link ImageFormat#OTHER} replaces the generic reader.
+ * <p>
+ * The number of reads, failures, the time spent and the bytes read are recorded per format, so slow formats can be
+ * identified. The bytes read include detecting the format and are counted as described for
+ * {@link MetadataReader#bytesReadOnCurrentThread()}, so registered readers only contribute the bytes they read using
+ * a built-in reader. A registry is thread-safe, so a single instance can be shared by all worker threads to collect
+ * the metrics of a complete reindexing.
+ * <p>
+ * A registry is not used unless it is returned by
+ * {@link de.maci.photography.eyebeam.library.LibraryConfiguration#metadataReader()}.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public final class MetadataReaderRegistry implements MetadataReader {
+
+    private static final class Counters {
+
+        private final LongAdder readCount = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+
+        private void record(long nanos, long bytes, boolean failed) {
+            readCount.increment();
+            totalNanos.add(nanos);
+            bytesRead.add(bytes);
+            if (failed) {
+                failureCount.increment();
+            }
+        }
+
+        private FormatMetrics snapshot() {
+            return new FormatMetrics(readCount.sum(), failureCount.sum(), totalNanos.sum(), bytesRead.sum());
+        }
+    }
+
+    private final Map<ImageFormat, MetadataReader> readers;
+    private final Map<ImageFormat, Counters> counters = new EnumMap<>(ImageFormat.class);
+
+    private MetadataReaderRegistry(Map<ImageFormat, MetadataReader> readers) {
+        this.readers = readers;
+        for (ImageFormat format : ImageFormat.values()) {
+            counters.put(format, new Counters());
+        }
+    }
+
+    @Override
+    public Metadata readFrom(@Nonnull Path path) {
+        try {
+            return readFrom(path, FileFingerprint.of(Files.readAttributes(path, BasicFileAttributes.class)));
+        } catch (IOException | SecurityException e) {
+            throw new MetadataReadingException(String.format("Failed to read metadata of '%s'.",
+                                                             path.toAbsolutePath()), e);
+        }
+    }
+
+    @Override
+    public Metadata readFrom(@Nonnull Path path, @Nonnull FileFingerprint fingerprint) {
+        long start = System.nanoTime();
+        long bytesReadBefore = MetadataReader.bytesReadOnCurrentThread();
+        HeaderWindow window = HeaderWindow.ofCurrentThread();
+        ImageFormat format = ImageFormat.OTHER;
+        boolean failed = true;
+        try {
+            window.open(path);
+            format = DefaultExifDataReader.detectFormat(window);
+            MetadataReader reader = readers.get(format);
+            Metadata metadata;
+            if (reader != null) {
+                window.close();
+                metadata = reader.readFrom(path, fingerprint);
+            } else {
+                ImageHeader header = DefaultExifDataReader.readHeader(window, format);
+                metadata = new Metadata(fingerprint.size(),
+                                        header.imageSize().orElse(null),
+                                        header.exifData().orElse(null),
+                                        fingerprint);
+            }
+            failed = false;
+            return metadata;
+        } catch (MetadataReadingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MetadataReadingException(String.format("Failed to read metadata of '%s'.",
+                                                             path.toAbsolutePath()), e);
+        } finally {
+            DefaultExifDataReader.closeQuietly(window);
+            counters.get(format).record(System.nanoTime() - start,
+                                        MetadataReader.bytesReadOnCurrentThread() - bytesReadBefore,
+                                        failed);
+        }
+    }
+
+    /**
+     * @return A snapshot of the metrics of each format.
+     */
+    @Nonnull
+    public Map<ImageFormat, FormatMetrics> metrics() {
+        Map<ImageFormat, FormatMetrics> metrics = new EnumMap<>(ImageFormat.class);
+        counters.forEach((format, formatCounters) -> metrics.put(format, formatCounters.snapshot()));
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Registers a reader for a format, replacing the built-in reader.
+     *
+     * @param format The format to be read by the reader.
+     * @param reader The reader.
+     * @return A new registry containing the reader, whose metrics are reset.
+     */
+    public MetadataReaderRegistry withReader(@Nonnull ImageFormat format, @Nonnull MetadataReader reader) {
+        requireNonNull(format, "Format must not be null.");
+        requireNonNull(reader, "Reader must not be null.");
+        Map<ImageFormat, MetadataReader> readers = new EnumMap<>(ImageFormat.class);
+        readers.putAll(this.readers);
+        readers.put(format, reader);
+        return new MetadataReaderRegistry(readers);
+    }
+
+    /**
+     * @return A registry using the built-in readers only.
+     */
+    public static MetadataReaderRegistry newInstance() {
+        return new MetadataReaderRegistry(new EnumMap<>(ImageFormat.class));
+    }
+}
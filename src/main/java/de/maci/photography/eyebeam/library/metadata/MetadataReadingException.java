@@ -21,6 +21,10 @@ package de.maci.photography.eyebeam.library.metadata;
  */
 public class MetadataReadingException extends RuntimeException {
 
+    public MetadataReadingException(String message) {
+        super(message);
+    }
+
     public MetadataReadingException(String message, Throwable cause) {
         super(message, cause);
     }
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shares a single instance among equal strings repeating across many photos, like camera makes, models and lens
+ * models, so each photo only holds a reference instead of its own copy of the string.
+ * <p>
+ * The dictionary never shrinks, so it is bounded: strings longer than the maximum length are not added, and once the
+ * maximum number of strings has been reached, further strings are returned as they are. Such strings are held by
+ * each photo separately, which only costs memory for values not repeating much anyway. It is thread-safe.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+final class StringDictionary {
+
+    static final int DEFAULT_MAX_LENGTH = 128;
+    static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final StringDictionary shared = new StringDictionary(DEFAULT_MAX_LENGTH, DEFAULT_MAX_SIZE);
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final int maxLength;
+    private final int maxSize;
+
+    StringDictionary(int maxLength, int maxSize) {
+        this.maxLength = maxLength;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param value The string to be looked up.
+     * @return The instance held by the dictionary equal to the given string, which is added if it has not been added
+     * before and the bounds of the dictionary permit. The given string itself otherwise.
+     */
+    @Nonnull
+    String canonicalize(@Nonnull String value) {
+        requireNonNull(value, "Value must not be null.");
+        String canonical = values.get(value);
+        if (canonical != null) {
+            return canonical;
+        }
+        // Concurrent additions may exceed the maximum size by the number of adding threads
+        if (value.length() > maxLength || values.size() >= maxSize) {
+            return value;
+        }
+        canonical = values.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    static StringDictionary shared() {
+        return shared;
+    }
+}
@@ -0,0 +1,491 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.metadata;
+
+import com.drew.lang.RandomAccessReader;
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the EXIF data and the image size of a TIFF structure, as used by JPEG files and most RAW formats, without
+ * building the complete metadata tree. Only the first image file directory and its sub-IFDs are walked to find the
+ * size of the full resolution image, the camera make, model and orientation, the EXIF sub-IFD, whose entries are read
+ * until all tags needed have been found, and the GPS sub-IFD. Thumbnails, maker notes and any other directories are
+ * never visited.
+ * <p>
+ * Values are interpreted like metadata-extractor does: rationals are converted to doubles, respectively truncated to
+ * integers, and dates are read in the default time zone.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+final class TiffExifParser {
+
+    private static final int TAG_NEW_SUBFILE_TYPE = 0x00FE;
+    private static final int TAG_IMAGE_WIDTH = 0x0100;
+    private static final int TAG_IMAGE_HEIGHT = 0x0101;
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_SUB_IFD_OFFSET = 0x014A;
+    private static final int TAG_EXIF_SUB_IFD_OFFSET = 0x8769;
+    private static final int TAG_GPS_INFO_OFFSET = 0x8825;
+    private static final int TAG_EXPOSURE_TIME = 0x829A;
+    private static final int TAG_FNUMBER = 0x829D;
+    private static final int TAG_ISO_EQUIVALENT = 0x8827;
+    private static final int TAG_DATETIME_ORIGINAL = 0x9003;
+    private static final int TAG_FOCAL_LENGTH = 0x920A;
+    private static final int TAG_EXIF_IMAGE_WIDTH = 0xA002;
+    private static final int TAG_EXIF_IMAGE_HEIGHT = 0xA003;
+    private static final int TAG_WHITE_BALANCE_MODE = 0xA403;
+    private static final int TAG_35MM_FILM_EQUIV_FOCAL_LENGTH = 0xA405;
+    private static final int TAG_LENS_MODEL = 0xA434;
+
+    private static final int TAG_GPS_LATITUDE_REF = 0x0001;
+    private static final int TAG_GPS_LATITUDE = 0x0002;
+    private static final int TAG_GPS_LONGITUDE_REF = 0x0003;
+    private static final int TAG_GPS_LONGITUDE = 0x0004;
+
+    private static final int FORMAT_BYTE = 1;
+    private static final int FORMAT_STRING = 2;
+    private static final int FORMAT_SHORT = 3;
+    private static final int FORMAT_LONG = 4;
+    private static final int FORMAT_RATIONAL = 5;
+    private static final int FORMAT_SIGNED_SHORT = 8;
+    private static final int FORMAT_SIGNED_LONG = 9;
+    private static final int FORMAT_SIGNED_RATIONAL = 10;
+    private static final int FORMAT_IFD = 13;
+
+    private static final int[] BYTES_PER_FORMAT = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4};
+
+    /**
+     * Marks integral values which are not present or cannot be converted, avoiding boxed values.
+     */
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private static final int ENTRY_SIZE = 12;
+    private static final int MAX_SUB_IFDS = 8;
+    private static final int ALL_EXIF_TAGS_FOUND = 0b1111111111;
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    private TiffExifParser() {
+        super();
+    }
+
+    /**
+     * @param reader           The reader providing the TIFF structure.
+     * @param tiffHeaderOffset The offset of the TIFF header, all offsets within the structure are relative to it.
+     * @return The EXIF data found, which is absent if the structure does not contain an EXIF sub-IFD, and the size of
+     * the full resolution image, falling back to the pixel dimensions of the EXIF sub-IFD.
+     * @throws IOException Thrown if the TIFF header is invalid or the structure cannot be read.
+     */
+    static ImageHeader parse(@Nonnull RandomAccessReader reader, int tiffHeaderOffset) throws IOException {
+        requireNonNull(reader, "Reader must not be null.");
+        int byteOrder = reader.getUInt16(tiffHeaderOffset);
+        if (byteOrder == 0x4D4D) {
+            reader.setMotorolaByteOrder(true);
+        } else if (byteOrder == 0x4949) {
+            reader.setMotorolaByteOrder(false);
+        } else {
+            throw new IOException(String.format("Unknown TIFF byte order 0x%04X.", byteOrder));
+        }
+
+        int firstIfd = absoluteOffset(reader, tiffHeaderOffset, reader.getUInt32(tiffHeaderOffset + 4), 2);
+        if (firstIfd < 0) {
+            return ImageHeader.of(null, null);
+        }
+
+        ExifData.Builder exifData = ExifData.builder();
+        ImageSize imageSize = fullResolutionImageSize(reader, firstIfd);
+        int exifIfd = -1;
+        int gpsIfd = -1;
+        int entryCount = reader.getUInt16(firstIfd);
+        for (int entry = firstIfd + 2, i = 0;
+             i < entryCount && isValid(reader, entry, ENTRY_SIZE);
+             entry += ENTRY_SIZE, i++) {
+            int tag = reader.getUInt16(entry);
+            int format = reader.getUInt16(entry + 2);
+            switch (tag) {
+                case TAG_EXIF_SUB_IFD_OFFSET:
+                    if (format == FORMAT_LONG || format == FORMAT_IFD) {
+                        exifIfd = absoluteOffset(reader, tiffHeaderOffset, reader.getUInt32(entry + 8), 2);
+                    }
+                    break;
+                case TAG_GPS_INFO_OFFSET:
+                    if (format == FORMAT_LONG || format == FORMAT_IFD) {
+                        gpsIfd = absoluteOffset(reader, tiffHeaderOffset, reader.getUInt32(entry + 8), 2);
+                    }
+                    break;
+                case TAG_SUB_IFD_OFFSET:
+                    if (format == FORMAT_LONG || format == FORMAT_IFD) {
+                        imageSize = larger(imageSize, largestSubIfdImageSize(reader, tiffHeaderOffset, entry));
+                    }
+                    break;
+                case TAG_MAKE:
+                    exifData.make(toAscii(reader, tiffHeaderOffset, entry));
+                    break;
+                case TAG_MODEL:
+                    exifData.model(toAscii(reader, tiffHeaderOffset, entry));
+                    break;
+                case TAG_ORIENTATION: {
+                    long orientation = toLong(reader, format, entry + 8);
+                    if (orientation >= 1 && orientation <= 8) {
+                        exifData.orientation((int) orientation);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        if (exifIfd < 0) {
+            return ImageHeader.of(null, imageSize);
+        }
+        if (gpsIfd >= 0) {
+            readGpsIfd(reader, tiffHeaderOffset, gpsIfd, exifData);
+        }
+        imageSize = readExifSubIfd(reader, tiffHeaderOffset, exifIfd, exifData, imageSize);
+        return ImageHeader.of(exifData.build(), imageSize);
+    }
+
+    private static ImageSize largestSubIfdImageSize(RandomAccessReader reader, int tiffHeaderOffset, int entry)
+            throws IOException {
+        long count = Math.min(reader.getUInt32(entry + 4), MAX_SUB_IFDS);
+        int offsets = count == 1 ? entry + 8
+                                 : absoluteOffset(reader, tiffHeaderOffset, reader.getUInt32(entry + 8), count * 4);
+        ImageSize largest = null;
+        for (int i = 0; offsets >= 0 && i < count; i++) {
+            int subIfd = absoluteOffset(reader, tiffHeaderOffset, reader.getUInt32(offsets + i * 4), 2);
+            if (subIfd >= 0) {
+                largest = larger(largest, fullResolutionImageSize(reader, subIfd));
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * @return The image size given by the directory, <code>null</code> if the directory does not describe a full
+     * resolution image, but for example a thumbnail.
+     */
+    private static ImageSize fullResolutionImageSize(RandomAccessReader reader, int ifd) throws IOException {
+        long subfileType = 0;
+        long width = MISSING;
+        long height = MISSING;
+        int entryCount = reader.getUInt16(ifd);
+        for (int entry = ifd + 2, i = 0;
+             i < entryCount && isValid(reader, entry, ENTRY_SIZE);
+             entry += ENTRY_SIZE, i++) {
+            int tag = reader.getUInt16(entry);
+            if (tag == TAG_NEW_SUBFILE_TYPE) {
+                long value = toLong(reader, reader.getUInt16(entry + 2), entry + 8);
+                subfileType = value != MISSING ? value : 0;
+            } else if (tag == TAG_IMAGE_WIDTH) {
+                width = toLong(reader, reader.getUInt16(entry + 2), entry + 8);
+            } else if (tag == TAG_IMAGE_HEIGHT) {
+                height = toLong(reader, reader.getUInt16(entry + 2), entry + 8);
+            }
+        }
+        return subfileType == 0 ? imageSize(width, height) : null;
+    }
+
+    /**
+     * @return The image size given, falling back to the pixel dimensions of the EXIF sub-IFD.
+     */
+    private static ImageSize readExifSubIfd(RandomAccessReader reader, int tiffHeaderOffset, int ifd,
+                                            ExifData.Builder exifData, ImageSize imageSize) throws IOException {
+        long exifImageWidth = MISSING;
+        long exifImageHeight = MISSING;
+        int found = 0;
+        int entryCount = reader.getUInt16(ifd);
+        for (int entry = ifd + 2, i = 0;
+             i < entryCount && found != ALL_EXIF_TAGS_FOUND && isValid(reader, entry, ENTRY_SIZE);
+             entry += ENTRY_SIZE, i++) {
+            int tag = reader.getUInt16(entry);
+            int format = reader.getUInt16(entry + 2);
+            int value = valueOffset(reader, tiffHeaderOffset, entry);
+            if (value < 0) {
+                continue;
+            }
+
+            switch (tag) {
+                case TAG_FNUMBER: {
+                    double fnumber = toDouble(reader, format, value);
+                    if (!Double.isNaN(fnumber)) {
+                        exifData.fnumber(fnumber);
+                    }
+                    found |= 1;
+                    break;
+                }
+                case TAG_FOCAL_LENGTH: {
+                    long focalLength = toInteger(reader, format, value);
+                    if (focalLength != MISSING) {
+                        exifData.focalLength((int) focalLength);
+                    }
+                    found |= 1 << 1;
+                    break;
+                }
+                case TAG_35MM_FILM_EQUIV_FOCAL_LENGTH: {
+                    long focalLength = toInteger(reader, format, value);
+                    if (focalLength != MISSING) {
+                        exifData.focalLengthFullFrameEquivalent((int) focalLength);
+                    }
+                    found |= 1 << 2;
+                    break;
+                }
+                case TAG_ISO_EQUIVALENT: {
+                    long iso = toInteger(reader, format, value);
+                    if (iso != MISSING) {
+                        exifData.iso((int) iso);
+                    }
+                    found |= 1 << 3;
+                    break;
+                }
+                case TAG_DATETIME_ORIGINAL:
+                    if (format == FORMAT_STRING) {
+                        exifData.takenAt(toInstant(reader, value, (int) reader.getUInt32(entry + 4)));
+                    }
+                    found |= 1 << 4;
+                    break;
+                case TAG_EXIF_IMAGE_WIDTH:
+                    exifImageWidth = toLong(reader, format, value);
+                    found |= 1 << 5;
+                    break;
+                case TAG_EXIF_IMAGE_HEIGHT:
+                    exifImageHeight = toLong(reader, format, value);
+                    found |= 1 << 6;
+                    break;
+                case TAG_EXPOSURE_TIME: {
+                    double exposureTime = toDouble(reader, format, value);
+                    if (!Double.isNaN(exposureTime)) {
+                        exifData.exposureTime(exposureTime);
+                    }
+                    found |= 1 << 7;
+                    break;
+                }
+                case TAG_WHITE_BALANCE_MODE: {
+                    long whiteBalance = toLong(reader, format, value);
+                    if (whiteBalance != MISSING) {
+                        exifData.whiteBalance((int) whiteBalance);
+                    }
+                    found |= 1 << 8;
+                    break;
+                }
+                case TAG_LENS_MODEL:
+                    exifData.lensModel(toAscii(reader, tiffHeaderOffset, entry));
+                    found |= 1 << 9;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return imageSize != null ? imageSize : imageSize(exifImageWidth, exifImageHeight);
+    }
+
+    private static void readGpsIfd(RandomAccessReader reader, int tiffHeaderOffset, int ifd,
+                                   ExifData.Builder exifData) throws IOException {
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        String latitudeRef = null;
+        String longitudeRef = null;
+        int entryCount = reader.getUInt16(ifd);
+        for (int entry = ifd + 2, i = 0;
+             i < entryCount && isValid(reader, entry, ENTRY_SIZE);
+             entry += ENTRY_SIZE, i++) {
+            int tag = reader.getUInt16(entry);
+            switch (tag) {
+                case TAG_GPS_LATITUDE_REF:
+                    latitudeRef = toAscii(reader, tiffHeaderOffset, entry);
+                    break;
+                case TAG_GPS_LATITUDE:
+                    latitude = toDegrees(reader, tiffHeaderOffset, entry);
+                    break;
+                case TAG_GPS_LONGITUDE_REF:
+                    longitudeRef = toAscii(reader, tiffHeaderOffset, entry);
+                    break;
+                case TAG_GPS_LONGITUDE:
+                    longitude = toDegrees(reader, tiffHeaderOffset, entry);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return;
+        }
+        exifData.location("S".equalsIgnoreCase(latitudeRef) ? -latitude : latitude,
+                          "W".equalsIgnoreCase(longitudeRef) ? -longitude : longitude);
+    }
+
+    /**
+     * @return The offset of the value of the entry, which is either inlined or referenced by the entry, -1 if the
+     * entry is invalid.
+     */
+    private static int valueOffset(RandomAccessReader reader, int tiffHeaderOffset, int entry) throws IOException {
+        int format = reader.getUInt16(entry + 2);
+        long componentCount = reader.getUInt32(entry + 4);
+        if (format >= BYTES_PER_FORMAT.length || componentCount < 1) {
+            return -1;
+        }
+        long byteCount = componentCount * BYTES_PER_FORMAT[format];
+        return byteCount <= 4 ? entry + 8
+                              : absoluteOffset(reader, tiffHeaderOffset, reader.getUInt32(entry + 8), byteCount);
+    }
+
+    private static ImageSize imageSize(long width, long height) {
+        if (width < 1 || height < 1 || width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+            return null;
+        }
+        return new ImageSize((int) width, (int) height);
+    }
+
+    private static ImageSize larger(ImageSize first, ImageSize second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return (long) second.width() * second.height() > (long) first.width() * first.height() ? second : first;
+    }
+
+    /**
+     * @return The value converted to a double, {@link Double#NaN} if it cannot be converted.
+     */
+    private static double toDouble(RandomAccessReader reader, int format, int offset) throws IOException {
+        switch (format) {
+            case FORMAT_RATIONAL: {
+                long denominator = reader.getUInt32(offset + 4);
+                return denominator == 0 ? Double.NaN : (double) reader.getUInt32(offset) / denominator;
+            }
+            case FORMAT_SIGNED_RATIONAL: {
+                int denominator = reader.getInt32(offset + 4);
+                return denominator == 0 ? Double.NaN : (double) reader.getInt32(offset) / denominator;
+            }
+            default: {
+                long value = toLong(reader, format, offset);
+                return value != MISSING ? value : Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * @return The value truncated to an integer, {@link #MISSING} if it cannot be converted.
+     */
+    private static long toInteger(RandomAccessReader reader, int format, int offset) throws IOException {
+        switch (format) {
+            case FORMAT_RATIONAL: {
+                long denominator = reader.getUInt32(offset + 4);
+                return denominator == 0 ? MISSING : (int) (reader.getUInt32(offset) / denominator);
+            }
+            case FORMAT_SIGNED_RATIONAL: {
+                int denominator = reader.getInt32(offset + 4);
+                return denominator == 0 ? MISSING : reader.getInt32(offset) / denominator;
+            }
+            default: {
+                long value = toLong(reader, format, offset);
+                return value != MISSING ? (int) value : MISSING;
+            }
+        }
+    }
+
+    /**
+     * @return The integral value, {@link #MISSING} if the format is not integral.
+     */
+    private static long toLong(RandomAccessReader reader, int format, int offset) throws IOException {
+        switch (format) {
+            case FORMAT_BYTE:
+                return (long) reader.getUInt8(offset);
+            case FORMAT_SHORT:
+                return (long) reader.getUInt16(offset);
+            case FORMAT_LONG:
+                return reader.getUInt32(offset);
+            case FORMAT_SIGNED_SHORT:
+                return (long) reader.getInt16(offset);
+            case FORMAT_SIGNED_LONG:
+                return (long) reader.getInt32(offset);
+            default:
+                return MISSING;
+        }
+    }
+
+    /**
+     * @return The degrees given by the three rationals of the entry, {@link Double#NaN} if they cannot be converted.
+     */
+    private static double toDegrees(RandomAccessReader reader, int tiffHeaderOffset, int entry) throws IOException {
+        int format = reader.getUInt16(entry + 2);
+        int value = valueOffset(reader, tiffHeaderOffset, entry);
+        if (value < 0 || format != FORMAT_RATIONAL || reader.getUInt32(entry + 4) != 3) {
+            return Double.NaN;
+        }
+        return toDouble(reader, format, value) + toDouble(reader, format, value + 8) / 60
+                + toDouble(reader, format, value + 16) / 3600;
+    }
+
+    /**
+     * @return The string value of the entry without trailing zeros and surrounding whitespace, <code>null</code> if it
+     * is not a string or empty.
+     */
+    private static String toAscii(RandomAccessReader reader, int tiffHeaderOffset, int entry) throws IOException {
+        int format = reader.getUInt16(entry + 2);
+        int value = valueOffset(reader, tiffHeaderOffset, entry);
+        if (value < 0 || format != FORMAT_STRING) {
+            return null;
+        }
+        byte[] bytes = reader.getBytes(value, (int) reader.getUInt32(entry + 4));
+        int length = 0;
+        while (length < bytes.length && bytes[length] != 0) {
+            length++;
+        }
+        String string = new String(bytes, 0, length, StandardCharsets.US_ASCII).trim();
+        return string.isEmpty() ? null : string;
+    }
+
+    private static Instant toInstant(RandomAccessReader reader, int offset, int length) throws IOException {
+        String value = new String(reader.getBytes(offset, length), StandardCharsets.US_ASCII).trim();
+        if (value.length() < 19) {
+            return null;
+        }
+        try {
+            // Some cameras use dashes to separate the parts of the date
+            String dateTime = value.substring(0, 19).replace('-', ':');
+            return LocalDateTime.parse(dateTime, DATE_TIME_FORMATTER).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int absoluteOffset(RandomAccessReader reader, int tiffHeaderOffset, long relativeOffset,
+                                      long byteCount) throws IOException {
+        long offset = tiffHeaderOffset + relativeOffset;
+        return offset <= Integer.MAX_VALUE && isValid(reader, offset, byteCount) ? (int) offset : -1;
+    }
+
+    private static boolean isValid(RandomAccessReader reader, long offset, long byteCount) throws IOException {
+        return offset >= 0 && offset + byteCount <= reader.getLength();
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.sharding;
+
+import de.maci.photography.eyebeam.library.indexing.PathFilter;
+import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reindexes a library using one {@link ShardWorker} process per shard on the local machine and merges the shards'
+ * data stores afterwards. The worker processes use the class path of the current process.
+ * <p>
+ * Worker processes only know the root folder of the library. Its file filter and metadata reader have to be passed
+ * using {@link #withFileFilter(PathFilter)} and {@link #withMetadataReader(Class)}, otherwise all files are indexed
+ * using the {@link de.maci.photography.eyebeam.library.metadata.DefaultMetadataReader}.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 13.03.16
+ */
+public final class LocalShardedReindexing {
+
+    private final Path rootFolder;
+    private final Path workDirectory;
+    private final int shardCount;
+    private final ShardingStrategy strategy;
+    private final int parallelism;
+    private final PathFilter fileFilter;
+    private final Class<? extends MetadataReader> metadataReaderClass;
+
+    private LocalShardedReindexing(Path rootFolder,
+                                   Path workDirectory,
+                                   int shardCount,
+                                   ShardingStrategy strategy,
+                                   int parallelism,
+                                   PathFilter fileFilter,
+                                   Class<? extends MetadataReader> metadataReaderClass) {
+        this.rootFolder = rootFolder;
+        this.workDirectory = workDirectory;
+        this.shardCount = shardCount;
+        this.strategy = strategy;
+        this.parallelism = parallelism;
+        this.fileFilter = fileFilter;
+        this.metadataReaderClass = metadataReaderClass;
+    }
+
+    /**
+     * Runs the worker processes and waits for all of them to complete. The data store of each shard is kept in a
+     * subdirectory of the work directory, along with the output of its worker process.
+     *
+     * @return The data directories of the shards.
+     * @throws IOException Thrown if a worker process cannot be started or has failed.
+     */
+    public List<Path> runWorkers() throws IOException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        String classPath = System.getProperty("java.class.path");
+
+        List<Process> workers = new ArrayList<>(shardCount);
+        List<Path> shardDataDirectories = new ArrayList<>(shardCount);
+        for (int index = 0; index < shardCount; index++) {
+            Path shardDataDirectory = workDirectory.resolve("shard-" + index);
+            Files.createDirectories(shardDataDirectory);
+            shardDataDirectories.add(shardDataDirectory);
+
+            List<String> command = new ArrayList<>();
+            command.addAll(Arrays.asList(java.toString(), "-cp", classPath, ShardWorker.class.getName(),
+                                         rootFolder.toString(), shardDataDirectory.toString(),
+                                         String.valueOf(index), String.valueOf(shardCount), strategy.name(),
+                                         String.valueOf(parallelism)));
+            command.addAll(workerOptions());
+            workers.add(new ProcessBuilder(command)
+                                .redirectErrorStream(true)
+                                .redirectOutput(shardDataDirectory.resolve("worker.log").toFile())
+                                .start());
+        }
+
+        for (int index = 0; index < shardCount; index++) {
+            int exitCode = awaitTermination(workers.get(index), workers);
+            if (exitCode != 0) {
+                workers.forEach(Process::destroy);
+                throw new IOException(String.format("Worker of shard %d has failed with exit code %d, see '%s'.",
+                                                    index, exitCode,
+                                                    shardDataDirectories.get(index).resolve("worker.log")));
+            }
+        }
+        return shardDataDirectories;
+    }
+
+    private List<String> workerOptions() {
+        List<String> options = new ArrayList<>();
+        if (fileFilter != null) {
+            fileFilter.includedExtensions()
+                      .forEach(extension -> options.add(ShardWorker.INCLUDE_EXTENSION + extension));
+            fileFilter.includedGlobs().forEach(glob -> options.add(ShardWorker.INCLUDE_GLOB + glob));
+            fileFilter.excludedGlobs().forEach(glob -> options.add(ShardWorker.EXCLUDE_GLOB + glob));
+            if (fileFilter.skipsHiddenDirectories()) {
+                options.add(ShardWorker.SKIP_HIDDEN_DIRECTORIES);
+            }
+        }
+        if (metadataReaderClass != null) {
+            options.add(ShardWorker.METADATA_READER + metadataReaderClass.getName());
+        }
+        return options;
+    }
+
+    /**
+     * Runs the worker processes and merges the shards' data stores into the given data store.
+     *
+     * @param target The data store the shards are merged into.
+     * @return The number of merged photos.
+     * @throws IOException Thrown if a worker process has failed or a shard's data store cannot be restored.
+     */
+    public long reindexInto(@Nonnull LibraryDataStore target) throws IOException {
+        requireNonNull(target, "Target data store must not be null.");
+        return ShardMerge.mergeInto(target, runWorkers());
+    }
+
+    private static int awaitTermination(Process worker, List<Process> workers) throws IOException {
+        try {
+            return worker.waitFor();
+        } catch (InterruptedException e) {
+            workers.forEach(Process::destroy);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for worker processes.", e);
+        }
+    }
+
+    public LocalShardedReindexing withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be larger than 0.");
+        }
+        return new LocalShardedReindexing(rootFolder, workDirectory, shardCount, strategy, parallelism, fileFilter,
+                                          metadataReaderClass);
+    }
+
+    /**
+     * Sets the file filter of the library, which is passed to the worker processes.
+     *
+     * @param fileFilter The file filter, which must not be {@link PathFilter#isRestricted() restricted}.
+     * @return The modified reindexing.
+     */
+    public LocalShardedReindexing withFileFilter(@Nonnull PathFilter fileFilter) {
+        requireNonNull(fileFilter, "File filter must not be null.");
+        if (fileFilter.isRestricted()) {
+            throw new IllegalArgumentException("Restricted file filters cannot be passed to worker processes.");
+        }
+        return new LocalShardedReindexing(rootFolder, workDirectory, shardCount, strategy, parallelism, fileFilter,
+                                          metadataReaderClass);
+    }
+
+    /**
+     * Sets the metadata reader of the library, which is created by the worker processes using its public no-argument
+     * constructor.
+     *
+     * @param metadataReaderClass The class of the metadata reader.
+     * @return The modified reindexing.
+     */
+    public LocalShardedReindexing withMetadataReader(@Nonnull Class<? extends MetadataReader> metadataReaderClass) {
+        requireNonNull(metadataReaderClass, "Metadata reader class must not be null.");
+        return new LocalShardedReindexing(rootFolder, workDirectory, shardCount, strategy, parallelism, fileFilter,
+                                          metadataReaderClass);
+    }
+
+    public static LocalShardedReindexing newInstance(@Nonnull Path rootFolder,
+                                                     @Nonnull Path workDirectory,
+                                                     int shardCount,
+                                                     @Nonnull ShardingStrategy strategy) {
+        requireNonNull(rootFolder, "Root folder must not be null.");
+        requireNonNull(workDirectory, "Work directory must not be null.");
+        requireNonNull(strategy, "Sharding strategy must not be null.");
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be larger than 0.");
+        }
+        return new LocalShardedReindexing(rootFolder, workDirectory, shardCount, strategy, 1, null, null);
+    }
+}
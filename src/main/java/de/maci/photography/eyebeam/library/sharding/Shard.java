@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.sharding;
+
+import de.maci.photography.eyebeam.library.LibraryConfiguration;
+import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+
+import de.maci.photography.eyebeam.library.indexing.PathFilter;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * One of several disjoint parts of a library, which can be reindexed independently of the others.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 13.03.16
+ */
+public final class Shard {
+
+    private final int index;
+    private final int count;
+    private final ShardingStrategy strategy;
+
+    private Shard(int index, int count, ShardingStrategy strategy) {
+        this.index = index;
+        this.count = count;
+        this.strategy = strategy;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    @Nonnull
+    public ShardingStrategy strategy() {
+        return strategy;
+    }
+
+    /**
+     * @param relativePath The path of a photo relative to the library's root folder.
+     * @return <code>true</code>, if the photo belongs to this shard.
+     */
+    public boolean contains(@Nonnull Path relativePath) {
+        return strategy.shardOf(relativePath, count) == index;
+    }
+
+    /**
+     * @param relativeDirectory The path of a directory relative to the library's root folder.
+     * @return <code>false</code>, if the directory cannot contain any photo belonging to this shard.
+     */
+    public boolean mayContain(@Nonnull Path relativeDirectory) {
+        requireNonNull(relativeDirectory, "Relative directory must not be null.");
+        return strategy.mayContain(relativeDirectory, index, count);
+    }
+
+    /**
+     * Restricts a library configuration to the photos belonging to this shard. The file filter of the restricted
+     * configuration is a {@link PathFilter}, so directories which cannot contain any photo of this shard are not
+     * scanned at all.
+     *
+     * @param configuration The configuration of the whole library.
+     * @return The configuration of this shard.
+     */
+    public LibraryConfiguration restrict(@Nonnull LibraryConfiguration configuration) {
+        requireNonNull(configuration, "Configuration must not be null.");
+        Path rootFolder = configuration.rootFolder();
+        Predicate<Path> fileFilter = configuration.fileFilter().orElse(path -> true);
+        PathFilter libraryFilter = fileFilter instanceof PathFilter
+                ? (PathFilter) fileFilter
+                : PathFilter.newInstance().restrict(fileFilter, directory -> true);
+        PathFilter shardFilter = libraryFilter.restrict(path -> contains(rootFolder.relativize(path)),
+                                                        directory -> mayContain(rootFolder.relativize(directory)));
+        return new LibraryConfiguration() {
+
+            @Override
+            public Path rootFolder() {
+                return rootFolder;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.of(shardFilter);
+            }
+
+            @Override
+            public Supplier<MetadataReader> metadataReader() {
+                return configuration.metadataReader();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("Shard{");
+        sb.append("index=").append(index);
+        sb.append(", count=").append(count);
+        sb.append(", strategy=").append(strategy);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public static Shard of(int index, int count, @Nonnull ShardingStrategy strategy) {
+        requireNonNull(strategy, "Sharding strategy must not be null.");
+        if (count < 1) {
+            throw new IllegalArgumentException("Shard count must be larger than 0.");
+        }
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException(String.format("Shard index must be between 0 and %d.", count - 1));
+        }
+        return new Shard(index, count, strategy);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.sharding;
+
+import de.maci.photography.eyebeam.library.Photo;
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
+import de.maci.photography.eyebeam.library.metadata.Metadata;
+import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
+import de.maci.photography.eyebeam.library.storage.persistent.FileDataStore;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Combines the data stores of several shards into a single data store.
+ * <p>
+ * The shards are restored one after another and copied in batches using the data store's batch mutations, so only a
+ * single shard has to be kept in memory besides the target. Since shards are disjoint, a photo is usually contained
+ * in a single shard only. If it is contained in several ones, e.g. because the sharding has been changed, the most
+ * recently extracted metadata wins.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 13.03.16
+ */
+public final class ShardMerge {
+
+    private static final int BATCH_SIZE = 4096;
+
+    private ShardMerge() {
+        super();
+    }
+
+    /**
+     * Merges the data stores of several shards into the given data store.
+     *
+     * @param target               The data store the shards are merged into.
+     * @param shardDataDirectories The data directories of the shards' {@link FileDataStore}s.
+     * @return The number of merged photos.
+     * @throws IOException Thrown if a shard's data store cannot be restored.
+     */
+    public static long mergeInto(@Nonnull LibraryDataStore target,
+                                 @Nonnull Collection<Path> shardDataDirectories) throws IOException {
+        requireNonNull(target, "Target data store must not be null.");
+        requireNonNull(shardDataDirectories, "Shard data directories must not be null.");
+
+        long merged = 0;
+        for (Path shardDataDirectory : shardDataDirectories) {
+            FileDataStore shard = new FileDataStore(shardDataDirectory);
+            shard.restore();
+            merged += merge(shard, target);
+        }
+        return merged;
+    }
+
+    private static long merge(LibraryDataStore shard, LibraryDataStore target) {
+        long merged = 0;
+        List<Photo> batch = new ArrayList<>(BATCH_SIZE);
+        Iterator<Photo> photos = shard.photos().iterator();
+        while (photos.hasNext()) {
+            batch.add(photos.next());
+            if (batch.size() == BATCH_SIZE || !photos.hasNext()) {
+                mergeBatch(shard, target, batch);
+                merged += batch.size();
+                batch.clear();
+            }
+        }
+        return merged;
+    }
+
+    private static void mergeBatch(LibraryDataStore shard, LibraryDataStore target, List<Photo> batch) {
+        target.storeAll(batch);
+
+        Map<Photo, Metadata> metadata = new LinkedHashMap<>();
+        List<Photo> photosTakenFromShard = new ArrayList<>(batch.size());
+        for (Photo photo : batch) {
+            Optional<Metadata> shardMetadata = shard.metadataOf(photo);
+            Optional<Metadata> targetMetadata = target.metadataOf(photo);
+            if (!targetMetadata.isPresent() || shardMetadata.isPresent()
+                    && shardMetadata.get().extractedAt().isAfter(targetMetadata.get().extractedAt())) {
+                shardMetadata.ifPresent(photoMetadata -> metadata.put(photo, photoMetadata));
+                photosTakenFromShard.add(photo);
+            }
+        }
+        target.replaceMetadataAll(metadata);
+
+        for (Photo photo : photosTakenFromShard) {
+            Optional<ExtractionFailure> failure = shard.extractionFailureOf(photo);
+            if (failure.isPresent()) {
+                target.recordExtractionFailure(photo, failure.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.sharding;
+
+import de.maci.photography.eyebeam.library.Library;
+import de.maci.photography.eyebeam.library.LibraryConfiguration;
+import de.maci.photography.eyebeam.library.LibraryReindexer;
+import de.maci.photography.eyebeam.library.ReindexingResult;
+import de.maci.photography.eyebeam.library.indexing.PathFilter;
+import de.maci.photography.eyebeam.library.metadata.DefaultMetadataReader;
+import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+import de.maci.photography.eyebeam.library.storage.persistent.FileDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reindexes a single shard of a library into a {@link FileDataStore} of its own. Can be run as a separate process,
+ * see {@link #main(String[])}.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 13.03.16
+ */
+public final class ShardWorker {
+
+    static final int EXIT_CODE_FAILURE = 1;
+    static final int EXIT_CODE_USAGE = 2;
+
+    static final String INCLUDE_EXTENSION = "--include-extension=";
+    static final String INCLUDE_GLOB = "--include-glob=";
+    static final String EXCLUDE_GLOB = "--exclude-glob=";
+    static final String SKIP_HIDDEN_DIRECTORIES = "--skip-hidden-directories";
+    static final String METADATA_READER = "--metadata-reader=";
+
+    private static final String USAGE = "Usage: ShardWorker <root folder> <data directory> <shard index> "
+            + "<shard count> <TOP_LEVEL_DIRECTORY|PATH_HASH> [<parallelism>] [" + INCLUDE_EXTENSION + "<extension>]... "
+            + "[" + INCLUDE_GLOB + "<glob>]... [" + EXCLUDE_GLOB + "<glob>]... [" + SKIP_HIDDEN_DIRECTORIES + "] "
+            + "[" + METADATA_READER + "<class name>]";
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardWorker.class);
+
+    private ShardWorker() {
+        super();
+    }
+
+    /**
+     * Reindexes a shard. If the shard's data store has been flushed before, it is restored first, so repeated runs
+     * only need to refresh what has been changed.
+     *
+     * @param configuration The configuration of the whole library.
+     * @param shard         The shard to be reindexed.
+     * @param dataDirectory The data directory of the shard's data store.
+     * @param options       The reindexing options.
+     * @return The result of the reindexing.
+     * @throws IOException Thrown if the shard's data store cannot be restored or flushed.
+     */
+    public static ReindexingResult reindex(@Nonnull LibraryConfiguration configuration,
+                                           @Nonnull Shard shard,
+                                           @Nonnull Path dataDirectory,
+                                           @Nonnull LibraryReindexer.Options options) throws IOException {
+        requireNonNull(configuration, "Configuration must not be null.");
+        requireNonNull(shard, "Shard must not be null.");
+        requireNonNull(dataDirectory, "Data directory must not be null.");
+        requireNonNull(options, "Options must not be null.");
+
+        Files.createDirectories(dataDirectory);
+        FileDataStore dataStore = new FileDataStore(dataDirectory);
+        if (dataStore.dataFileExists()) {
+            dataStore.restore();
+        }
+
+        ReindexingResult result = Library.newInstance(dataStore, shard.restrict(configuration))
+                                         .createReindexer()
+                                         .withOptions(options)
+                                         .reindexLibrary();
+        dataStore.flush();
+        return result;
+    }
+
+    /**
+     * Reindexes a shard, see {@link #USAGE} for the arguments. The file filter of the library is passed as a
+     * {@link PathFilter} using the filter options, and its metadata reader as the name of a class having a public
+     * no-argument constructor.
+     *
+     * @param args The arguments.
+     */
+    public static void main(String[] args) {
+        List<String> positionalArgs = new ArrayList<>();
+        List<String> optionArgs = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? optionArgs : positionalArgs).add(arg);
+        }
+        if (positionalArgs.size() < 5 || positionalArgs.size() > 6) {
+            System.err.println(USAGE);
+            System.exit(EXIT_CODE_USAGE);
+        }
+
+        Path rootFolder;
+        Path dataDirectory;
+        Shard shard;
+        LibraryReindexer.Options options = LibraryReindexer.Options.newInstance();
+        PathFilter fileFilter = PathFilter.newInstance();
+        Supplier<MetadataReader> metadataReader = DefaultMetadataReader::new;
+        try {
+            rootFolder = Paths.get(positionalArgs.get(0));
+            dataDirectory = Paths.get(positionalArgs.get(1));
+            shard = Shard.of(Integer.parseInt(positionalArgs.get(2)),
+                             Integer.parseInt(positionalArgs.get(3)),
+                             ShardingStrategy.valueOf(positionalArgs.get(4)));
+            if (positionalArgs.size() == 6) {
+                options = options.parallelism(Integer.parseInt(positionalArgs.get(5)));
+            }
+            for (String option : optionArgs) {
+                if (option.startsWith(INCLUDE_EXTENSION)) {
+                    fileFilter = fileFilter.includeExtensions(option.substring(INCLUDE_EXTENSION.length()));
+                } else if (option.startsWith(INCLUDE_GLOB)) {
+                    fileFilter = fileFilter.includeGlob(option.substring(INCLUDE_GLOB.length()));
+                } else if (option.startsWith(EXCLUDE_GLOB)) {
+                    fileFilter = fileFilter.excludeGlob(option.substring(EXCLUDE_GLOB.length()));
+                } else if (option.equals(SKIP_HIDDEN_DIRECTORIES)) {
+                    fileFilter = fileFilter.skipHiddenDirectories(true);
+                } else if (option.startsWith(METADATA_READER)) {
+                    metadataReader = metadataReaderOf(option.substring(METADATA_READER.length()));
+                } else {
+                    throw new IllegalArgumentException(String.format("Unknown option '%s'.", option));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(EXIT_CODE_USAGE);
+            return;
+        }
+
+        PathFilter libraryFileFilter = fileFilter;
+        Supplier<MetadataReader> libraryMetadataReader = metadataReader;
+        try {
+            ReindexingResult result = reindex(new LibraryConfiguration() {
+                @Override
+                public Path rootFolder() {
+                    return rootFolder;
+                }
+
+                @Override
+                public Optional<Predicate<Path>> fileFilter() {
+                    return Optional.of(libraryFileFilter);
+                }
+
+                @Override
+                public Supplier<MetadataReader> metadataReader() {
+                    return libraryMetadataReader;
+                }
+            }, shard, dataDirectory, options);
+            System.out.println(result);
+        } catch (IOException | RuntimeException e) {
+            logger.error(String.format("Failed to reindex %s.", shard), e);
+            System.exit(EXIT_CODE_FAILURE);
+        }
+    }
+
+    private static Supplier<MetadataReader> metadataReaderOf(String className) {
+        Constructor<? extends MetadataReader> constructor;
+        try {
+            constructor = Class.forName(className).asSubclass(MetadataReader.class).getConstructor();
+        } catch (ClassNotFoundException | NoSuchMethodException | ClassCastException e) {
+            throw new IllegalArgumentException(String.format("Invalid metadata reader '%s'.", className), e);
+        }
+        return () -> {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(String.format("Failed to create metadata reader '%s'.", className), e);
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.sharding;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Assigns the photos of a library to shards based on their paths relative to the library's root folder. The
+ * assignment only depends on the path, so independent processes agree on it.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 13.03.16
+ */
+public enum ShardingStrategy {
+
+    /**
+     * Assigns all photos below the same top-level directory to the same shard, so each worker only touches a part
+     * of the directory tree. Photos located directly in the root folder belong to the first shard.
+     */
+    TOP_LEVEL_DIRECTORY {
+        @Override
+        int hash(Path relativePath) {
+            return relativePath.getNameCount() > 1 ? relativePath.getName(0).toString().hashCode() : 0;
+        }
+
+        @Override
+        boolean mayContain(Path relativeDirectory, int shardIndex, int shardCount) {
+            if (relativeDirectory.getNameCount() != 1 || relativeDirectory.toString().isEmpty()) {
+                return true;
+            }
+            return Math.floorMod(relativeDirectory.getName(0).toString().hashCode(), shardCount) == shardIndex;
+        }
+    },
+
+    /**
+     * Assigns photos to shards by the hash of their paths, which results in evenly sized shards regardless of the
+     * directory structure.
+     */
+    PATH_HASH {
+        @Override
+        int hash(Path relativePath) {
+            int hash = 1;
+            for (Path name : relativePath) {
+                hash = 31 * hash + name.toString().hashCode();
+            }
+            return hash;
+        }
+    };
+
+    abstract int hash(Path relativePath);
+
+    /**
+     * @param relativeDirectory The path of a directory relative to the library's root folder.
+     * @param shardIndex        The index of a shard.
+     * @param shardCount        The total number of shards.
+     * @return <code>false</code>, if the directory cannot contain any photo belonging to the shard.
+     */
+    boolean mayContain(Path relativeDirectory, int shardIndex, int shardCount) {
+        return true;
+    }
+
+    /**
+     * @param relativePath The path of a photo relative to the library's root folder.
+     * @param shardCount   The total number of shards.
+     * @return The index of the shard the photo belongs to.
+     */
+    public int shardOf(@Nonnull Path relativePath, int shardCount) {
+        requireNonNull(relativePath, "Relative path must not be null.");
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be larger than 0.");
+        }
+        return Math.floorMod(hash(relativePath), shardCount);
+    }
+}
@@ -16,16 +16,28 @@
 package de.maci.photography.eyebeam.library.storage;
 
 import de.maci.photography.eyebeam.library.Photo;
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Stream;
 
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -34,7 +46,21 @@ import static java.util.Objects.requireNonNull;
  */
 public final class InMemoryDataStore implements LibraryDataStore {
 
-    private final Map<Photo, Metadata> photos = new TreeMap<>(Photo::compareTo);
+    private static final class Entry {
+
+        private Metadata metadata;
+        private ExtractionFailure extractionFailure;
+        private long generation;
+
+        private Entry(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    private final Map<Photo, Entry> photos = new TreeMap<>(Photo::compareTo);
+    private final Map<ContentHash, Set<Photo>> photosByContentHash = new HashMap<>();
+
+    private long generation = 0;
 
     private InMemoryDataStore() {
         super();
@@ -53,8 +79,7 @@ public final class InMemoryDataStore implements LibraryDataStore {
     @Override
     public Optional<Metadata> metadataOf(@Nonnull Photo photo) {
         requireNonNull(photo, "Corresponding photo must not be null.");
-        checkContained(photo);
-        return Optional.ofNullable(photos.get(photo));
+        return Optional.ofNullable(entryOf(photo).metadata);
     }
 
     @Override
@@ -77,37 +102,162 @@ public final class InMemoryDataStore implements LibraryDataStore {
         if (photo == null) {
             return false;
         }
-        boolean returnValue = photos.containsKey(photo);
-        photos.remove(photo);
-        return returnValue;
+        Entry entry = photos.remove(photo);
+        if (entry == null) {
+            return false;
+        }
+        unindex(photo, entry.metadata);
+        return true;
     }
 
     @Override
     public boolean store(@Nonnull Photo photo) {
         requireNonNull(photo, "Photo to be added must not be null.");
-        if (!photos.containsKey(photo)) {
-            photos.put(photo, null);
-            return true;
-        }
-        return false;
+        return photos.putIfAbsent(photo, new Entry(generation)) == null;
     }
 
     @Override
     public void replaceMetadata(@Nonnull Photo photo, @Nonnull Metadata metadata) {
         requireNonNull(photo, "Corresponding photo must not be null.");
         requireNonNull(metadata, "Metadata to be set must not be null.");
-        checkContained(photo);
-        photos.replace(photo, metadata);
+        replaceMetadata(photo, entryOf(photo), metadata);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<ExtractionFailure> extractionFailureOf(@Nonnull Photo photo) {
+        requireNonNull(photo, "Corresponding photo must not be null.");
+        return Optional.ofNullable(entryOf(photo).extractionFailure);
+    }
+
+    @Override
+    public void recordExtractionFailure(@Nonnull Photo photo, @Nonnull ExtractionFailure failure) {
+        requireNonNull(photo, "Corresponding photo must not be null.");
+        requireNonNull(failure, "Extraction failure must not be null.");
+        entryOf(photo).extractionFailure = failure;
+    }
+
+    @Override
+    public long storeAll(@Nonnull Collection<Photo> photosToBeStored) {
+        requireNonNull(photosToBeStored, "Photos to be added must not be null.");
+        long added = 0;
+        for (Photo photo : photosToBeStored) {
+            requireNonNull(photo, "Photo to be added must not be null.");
+            if (photos.putIfAbsent(photo, new Entry(generation)) == null) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public void replaceMetadataAll(@Nonnull Map<Photo, Metadata> metadata) {
+        requireNonNull(metadata, "Metadata to be set must not be null.");
+        List<Entry> entries = new ArrayList<>(metadata.size());
+        for (Map.Entry<Photo, Metadata> photoAndMetadata : metadata.entrySet()) {
+            requireNonNull(photoAndMetadata.getValue(), "Metadata to be set must not be null.");
+            entries.add(entryOf(photoAndMetadata.getKey()));
+        }
+        Iterator<Entry> entryIterator = entries.iterator();
+        for (Map.Entry<Photo, Metadata> photoAndMetadata : metadata.entrySet()) {
+            replaceMetadata(photoAndMetadata.getKey(), entryIterator.next(), photoAndMetadata.getValue());
+        }
+    }
+
+    @Override
+    public long removeAll(@Nonnull Collection<Photo> photosToBeRemoved) {
+        requireNonNull(photosToBeRemoved, "Photos to be removed must not be null.");
+        long removed = 0;
+        for (Photo photo : photosToBeRemoved) {
+            if (remove(photo)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public long nextGeneration() {
+        return ++generation;
+    }
+
+    @Override
+    public void mark(@Nonnull Photo photo, long generation) {
+        requireNonNull(photo, "Corresponding photo must not be null.");
+        Entry entry = entryOf(photo);
+        entry.generation = Math.max(entry.generation, generation);
+    }
+
+    @Override
+    public void markAll(@Nonnull Collection<Photo> photosToBeMarked, long generation) {
+        requireNonNull(photosToBeMarked, "Corresponding photos must not be null.");
+        for (Photo photo : photosToBeMarked) {
+            Entry entry = entryOf(photo);
+            entry.generation = Math.max(entry.generation, generation);
+        }
+    }
+
+    @Override
+    public long sweep(long generation) {
+        long removed = 0;
+        Iterator<Map.Entry<Photo, Entry>> entries = photos.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Photo, Entry> entry = entries.next();
+            if (entry.getValue().generation < generation) {
+                entries.remove();
+                unindex(entry.getKey(), entry.getValue().metadata);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Nonnull
+    @Override
+    public Set<Photo> photosWithContentHash(@Nonnull ContentHash contentHash) {
+        requireNonNull(contentHash, "Content hash must not be null.");
+        Set<Photo> photosWithContentHash = photosByContentHash.get(contentHash);
+        return photosWithContentHash != null ? unmodifiableSet(new TreeSet<>(photosWithContentHash)) : emptySet();
+    }
+
+    @Override
+    public Stream<Set<Photo>> duplicates() {
+        return photosByContentHash.values()
+                                  .stream()
+                                  .filter(photosWithContentHash -> photosWithContentHash.size() > 1)
+                                  .map(photosWithContentHash -> unmodifiableSet(new TreeSet<>(photosWithContentHash)));
     }
 
     @Override
     public void clear() {
         photos.clear();
+        photosByContentHash.clear();
+    }
+
+    private void replaceMetadata(Photo photo, Entry entry, Metadata metadata) {
+        unindex(photo, entry.metadata);
+        entry.metadata = metadata;
+        entry.extractionFailure = null;
+        metadata.contentHash().ifPresent(
+                contentHash -> photosByContentHash.computeIfAbsent(contentHash, hash -> new HashSet<>()).add(photo));
+    }
+
+    private void unindex(Photo photo, Metadata metadata) {
+        if (metadata == null || !metadata.contentHash().isPresent()) {
+            return;
+        }
+        ContentHash contentHash = metadata.contentHash().get();
+        Set<Photo> photosWithContentHash = photosByContentHash.get(contentHash);
+        if (photosWithContentHash != null && photosWithContentHash.remove(photo) && photosWithContentHash.isEmpty()) {
+            photosByContentHash.remove(contentHash);
+        }
     }
 
-    private void checkContained(Photo photo) {
-        if (!contains(photo)) {
+    private Entry entryOf(Photo photo) {
+        Entry entry = photos.get(photo);
+        if (entry == null) {
             throw new NoSuchElementException(String.format("Data store does not contain '%s'.", photo.path()));
         }
+        return entry;
     }
 }
@@ -16,13 +16,21 @@
 package de.maci.photography.eyebeam.library.storage;
 
 import de.maci.photography.eyebeam.library.Photo;
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
 import de.maci.photography.eyebeam.library.metadata.MetadataAccessor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * @author Daniel Götten <daniel.goetten@googlemail.com>
  * @since 09.10.15
@@ -39,7 +47,109 @@ public interface LibraryDataStore extends MetadataAccessor {
 
     boolean store(@Nonnull Photo photo);
 
+    /**
+     * Replaces the metadata of a photo, discarding an extraction failure recorded before.
+     *
+     * @param photo    The corresponding photo.
+     * @param metadata The metadata to be set.
+     */
     void replaceMetadata(@Nonnull Photo photo, @Nonnull Metadata metadata);
 
+    /**
+     * @param photo The corresponding photo.
+     * @return The failure recorded by the last attempt to read the photo's metadata, if any.
+     */
+    @Nonnull
+    Optional<ExtractionFailure> extractionFailureOf(@Nonnull Photo photo);
+
+    /**
+     * Records that the metadata of a photo could not be read completely. Present metadata is kept.
+     *
+     * @param photo   The corresponding photo.
+     * @param failure The failure to be recorded.
+     */
+    void recordExtractionFailure(@Nonnull Photo photo, @Nonnull ExtractionFailure failure);
+
+    /**
+     * Stores all given photos which are not contained yet.
+     *
+     * @param photos The photos to be stored.
+     * @return The number of photos which have been added.
+     */
+    default long storeAll(@Nonnull Collection<Photo> photos) {
+        requireNonNull(photos, "Photos to be added must not be null.");
+        return photos.stream().filter(this::store).count();
+    }
+
+    /**
+     * Replaces the metadata of all given photos, discarding extraction failures recorded before.
+     *
+     * @param metadata The metadata to be set by photo.
+     * @throws java.util.NoSuchElementException Thrown if any of the photos is not contained. In this case, no
+     *                                          metadata has been replaced.
+     */
+    default void replaceMetadataAll(@Nonnull Map<Photo, Metadata> metadata) {
+        requireNonNull(metadata, "Metadata to be set must not be null.");
+        metadata.keySet().forEach(this::metadataOf);
+        metadata.forEach(this::replaceMetadata);
+    }
+
+    /**
+     * Removes all given photos.
+     *
+     * @param photos The photos to be removed.
+     * @return The number of photos which have been removed.
+     */
+    default long removeAll(@Nonnull Collection<Photo> photos) {
+        requireNonNull(photos, "Photos to be removed must not be null.");
+        return photos.stream().filter(this::remove).count();
+    }
+
+    /**
+     * Starts a new generation, which can be used to mark all photos seen during a reindexing run.
+     *
+     * @return The new generation, which is larger than any generation returned before.
+     */
+    long nextGeneration();
+
+    /**
+     * Marks a photo as seen in the given generation.
+     *
+     * @param photo      The corresponding photo.
+     * @param generation The generation the photo has been seen in.
+     */
+    void mark(@Nonnull Photo photo, long generation);
+
+    /**
+     * Marks all given photos as seen in the given generation.
+     *
+     * @param photos     The corresponding photos.
+     * @param generation The generation the photos have been seen in.
+     */
+    default void markAll(@Nonnull Collection<Photo> photos, long generation) {
+        requireNonNull(photos, "Corresponding photos must not be null.");
+        photos.forEach(photo -> mark(photo, generation));
+    }
+
+    /**
+     * Removes all photos which have not been marked with the given generation or a later one.
+     *
+     * @param generation The oldest generation whose photos are kept.
+     * @return The number of removed photos.
+     */
+    long sweep(long generation);
+
+    /**
+     * @param contentHash The content hash to look up.
+     * @return All photos whose metadata has the given content hash.
+     */
+    @Nonnull
+    Set<Photo> photosWithContentHash(@Nonnull ContentHash contentHash);
+
+    /**
+     * @return All groups of at least two photos with equal content hashes, i.e. byte-identical copies.
+     */
+    Stream<Set<Photo>> duplicates();
+
     void clear();
 }
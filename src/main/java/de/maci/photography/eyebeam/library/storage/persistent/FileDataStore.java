@@ -17,14 +17,17 @@ package de.maci.photography.eyebeam.library.storage.persistent;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import de.maci.photography.eyebeam.library.Photo;
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
 import de.maci.photography.eyebeam.library.storage.InMemoryDataStore;
 import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
-import org.apache.commons.compress.utils.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,12 +41,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Stream;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -111,55 +124,143 @@ public class FileDataStore implements LibraryDataStore, Persistable {
         delegate.replaceMetadata(photo, metadata);
     }
 
+    @Nonnull
+    @Override
+    public Optional<ExtractionFailure> extractionFailureOf(@Nonnull Photo photo) {
+        return delegate.extractionFailureOf(photo);
+    }
+
+    @Override
+    public void recordExtractionFailure(@Nonnull Photo photo, @Nonnull ExtractionFailure failure) {
+        delegate.recordExtractionFailure(photo, failure);
+    }
+
+    @Override
+    public long storeAll(@Nonnull Collection<Photo> photos) {
+        return delegate.storeAll(photos);
+    }
+
+    @Override
+    public void replaceMetadataAll(@Nonnull Map<Photo, Metadata> metadata) {
+        delegate.replaceMetadataAll(metadata);
+    }
+
+    @Override
+    public long removeAll(@Nonnull Collection<Photo> photos) {
+        return delegate.removeAll(photos);
+    }
+
+    @Override
+    public long nextGeneration() {
+        return delegate.nextGeneration();
+    }
+
+    @Override
+    public void mark(@Nonnull Photo photo, long generation) {
+        delegate.mark(photo, generation);
+    }
+
+    @Override
+    public void markAll(@Nonnull Collection<Photo> photos, long generation) {
+        delegate.markAll(photos, generation);
+    }
+
+    @Override
+    public long sweep(long generation) {
+        return delegate.sweep(generation);
+    }
+
+    @Nonnull
+    @Override
+    public Set<Photo> photosWithContentHash(@Nonnull ContentHash contentHash) {
+        return delegate.photosWithContentHash(contentHash);
+    }
+
+    @Override
+    public Stream<Set<Photo>> duplicates() {
+        return delegate.duplicates();
+    }
+
     @Override
     public void clear() {
         delegate.clear();
     }
 
+    /**
+     * @return <code>true</code>, if the data store has been flushed to its data directory before.
+     */
+    public boolean dataFileExists() {
+        return Files.exists(dataDirectory.resolve(dbFileName));
+    }
+
     @Override
     public void flush() throws IOException {
-        try (OutputStream os = createCompressedFileOutputStream()) {
+        // Written to a temporary file first, so the data file is never left incomplete if the process is killed
+        Path temporaryFile = dataDirectory.resolve(dbFileName + ".tmp");
+        try (OutputStream os = createCompressedFileOutputStream(temporaryFile)) {
             try {
-                os.write(createGson().toJson(mapDataToStorables()).getBytes(Charsets.UTF_8));
+                os.write(createGson().toJson(mapDataToStorables()).getBytes(StandardCharsets.UTF_8));
             } catch (JAXBException e) {
                 logger.error("Failed to serialize data.", e);
             }
             os.flush();
         }
+        Files.move(temporaryFile, dataDirectory.resolve(dbFileName), REPLACE_EXISTING, ATOMIC_MOVE);
     }
 
-    private Map<StorablePhoto, StorableMetadata> mapDataToStorables() throws JAXBException {
-        Map<StorablePhoto, StorableMetadata> result = new TreeMap<>();
+    private StorableLibrary mapDataToStorables() throws JAXBException {
+        Map<StorablePhoto, StorableMetadata> photos = new TreeMap<>();
+        Map<StorablePhoto, StorableExtractionFailure> extractionFailures = new TreeMap<>();
+        StringTable strings = StringTable.newInstance();
         photos().forEach(photo -> {
+            StorablePhoto storablePhoto = StorablePhoto.of(photo);
             Optional<Metadata> metadata = metadataOf(photo);
-            result.put(StorablePhoto.of(photo), metadata.isPresent() ? StorableMetadata.of(metadata.get()) : null);
+            photos.put(storablePhoto, metadata.isPresent() ? StorableMetadata.of(metadata.get(), strings) : null);
+            extractionFailureOf(photo).ifPresent(
+                    failure -> extractionFailures.put(storablePhoto, StorableExtractionFailure.of(failure)));
         });
-        return result;
+        return new StorableLibrary(photos, extractionFailures, strings.strings());
     }
 
     @Override
     public void restore() throws IOException {
         try (InputStream is = createCompressedFileInputStream()) {
-            setDataFromStorables(createGson().fromJson(IOUtils.toString(is, Charsets.UTF_8), STORABLE_MAP_TYPE));
+            Gson gson = createGson();
+            JsonElement json = JsonParser.parseString(IOUtils.toString(is, StandardCharsets.UTF_8));
+            if (json.isJsonArray()) {
+                // Written by an earlier version, which stored the photos only
+                setDataFromStorables(new StorableLibrary(gson.fromJson(json, STORABLE_MAP_TYPE), null, null));
+            } else {
+                setDataFromStorables(gson.fromJson(json, StorableLibrary.class));
+            }
         }
     }
 
-    private void setDataFromStorables(Map<StorablePhoto, StorableMetadata> data) {
+    private void setDataFromStorables(StorableLibrary data) {
         clear();
 
-        for (Map.Entry<StorablePhoto, StorableMetadata> entry : data.entrySet()) {
+        List<Photo> photos = new ArrayList<>(data.photos().size());
+        Map<Photo, Metadata> metadata = new HashMap<>();
+        StringTable strings = StringTable.of(data.strings());
+        for (Map.Entry<StorablePhoto, StorableMetadata> entry : data.photos().entrySet()) {
             Photo photo = entry.getKey().unbox();
-            store(photo);
-
-            Optional<Metadata> metadata = Storables.unboxNullSafe(entry.getValue());
-            if (metadata.isPresent()) {
-                replaceMetadata(photo, metadata.get());
+            photos.add(photo);
+            if (entry.getValue() != null) {
+                metadata.put(photo, entry.getValue().unbox(strings));
             }
         }
+        storeAll(photos);
+        replaceMetadataAll(metadata);
+
+        for (Map.Entry<StorablePhoto, StorableExtractionFailure> entry : data.extractionFailures().entrySet()) {
+            recordExtractionFailure(entry.getKey().unbox(), entry.getValue().unbox());
+        }
     }
 
     private static Gson createGson() {
-        return new GsonBuilder().enableComplexMapKeySerialization().create();
+        return new GsonBuilder().enableComplexMapKeySerialization()
+                                .registerTypeAdapter(Instant.class, new InstantTypeAdapter())
+                                .create();
     }
 
     private InputStream createCompressedFileInputStream() {
@@ -170,9 +271,9 @@ public class FileDataStore implements LibraryDataStore, Persistable {
         }
     }
 
-    private OutputStream createCompressedFileOutputStream() {
+    private static OutputStream createCompressedFileOutputStream(Path file) {
         try {
-            return new GzipCompressorOutputStream(new FileOutputStream(dataDirectory.resolve(dbFileName).toFile()));
+            return new GzipCompressorOutputStream(new FileOutputStream(file.toFile()));
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.storage.persistent;
+
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 10.03.16
+ */
+public class StorableExtractionFailure implements Storable<ExtractionFailure> {
+
+    private StorableFileFingerprint fingerprint;
+    private String reason;
+    private Instant failedAt;
+
+    @SuppressWarnings("unused")
+    public StorableExtractionFailure() {
+        super();
+    }
+
+    private StorableExtractionFailure(ExtractionFailure failure) {
+        this.fingerprint = failure.fingerprint().map(StorableFileFingerprint::of).orElse(null);
+        this.reason = failure.reason();
+        this.failedAt = failure.failedAt();
+    }
+
+    @Nonnull
+    @Override
+    public ExtractionFailure unbox() {
+        return new ExtractionFailure(Storables.unboxNullSafe(fingerprint).orElse(null), reason, failedAt);
+    }
+
+    public static StorableExtractionFailure of(@Nonnull ExtractionFailure failure) {
+        return new StorableExtractionFailure(failure);
+    }
+}
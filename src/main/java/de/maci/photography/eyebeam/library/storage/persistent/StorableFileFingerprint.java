@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.storage.persistent;
+
+import de.maci.photography.eyebeam.library.metadata.FileFingerprint;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 23.02.16
+ */
+public class StorableFileFingerprint implements Storable<FileFingerprint> {
+
+    private long size;
+    private Instant lastModified;
+    private String fileKey;
+
+    @SuppressWarnings("unused")
+    public StorableFileFingerprint() {
+        super();
+    }
+
+    private StorableFileFingerprint(FileFingerprint fingerprint) {
+        this.size = fingerprint.size();
+        this.lastModified = fingerprint.lastModified();
+        this.fileKey = fingerprint.fileKey().orElse(null);
+    }
+
+    @Nonnull
+    @Override
+    public FileFingerprint unbox() {
+        return new FileFingerprint(size, lastModified, fileKey);
+    }
+
+    public static StorableFileFingerprint of(@Nonnull FileFingerprint fingerprint) {
+        return new StorableFileFingerprint(fingerprint);
+    }
+}
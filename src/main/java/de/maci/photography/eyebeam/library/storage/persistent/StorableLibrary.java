@@ -0,0 +1,59 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.storage.persistent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The content of a data file. Earlier versions stored the photos only, which is still supported when restoring.
+ * Strings shared by many photos are stored once in a string table and referenced by their index.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 10.03.16
+ */
+class StorableLibrary {
+
+    private Map<StorablePhoto, StorableMetadata> photos;
+    private Map<StorablePhoto, StorableExtractionFailure> extractionFailures;
+    private List<String> strings;
+
+    @SuppressWarnings("unused")
+    StorableLibrary() {
+        super();
+    }
+
+    StorableLibrary(Map<StorablePhoto, StorableMetadata> photos,
+                    Map<StorablePhoto, StorableExtractionFailure> extractionFailures,
+                    List<String> strings) {
+        this.photos = photos;
+        this.extractionFailures = extractionFailures;
+        this.strings = strings;
+    }
+
+    Map<StorablePhoto, StorableMetadata> photos() {
+        return photos != null ? photos : Collections.emptyMap();
+    }
+
+    Map<StorablePhoto, StorableExtractionFailure> extractionFailures() {
+        return extractionFailures != null ? extractionFailures : Collections.emptyMap();
+    }
+
+    List<String> strings() {
+        return strings != null ? strings : Collections.emptyList();
+    }
+}
@@ -15,8 +15,10 @@
  */
 package de.maci.photography.eyebeam.library.storage.persistent;
 
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
 import de.maci.photography.eyebeam.library.metadata.ExifData;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
 
 import javax.annotation.Nonnull;
 import java.time.Instant;
@@ -29,21 +31,41 @@ import java.util.Optional;
 public class StorableMetadata implements Storable<Metadata> {
 
     private Long fileSize;
+    private Integer imageWidth;
+    private Integer imageHeight;
 
     private Double fnumber;
     private Integer focalLength;
     private Integer focalLengthFullFrameEquivalent;
     private Integer iso;
     private Instant takenAt;
+    private Integer make;
+    private Integer model;
+    private Integer lensModel;
+    private Double exposureTime;
+    private Integer whiteBalance;
+    private Integer orientation;
+    private Double latitude;
+    private Double longitude;
+
+    private StorableFileFingerprint fingerprint;
+    private String contentHash;
+    private Instant extractedAt;
 
     @SuppressWarnings("unused")
     public StorableMetadata() {
         super();
     }
 
-    private StorableMetadata(Metadata metadata) {
+    private StorableMetadata(Metadata metadata, StringTable strings) {
         this.fileSize = metadata.fileSize().orElse(null);
 
+        Optional<ImageSize> imageSize = metadata.imageSize();
+        if (imageSize.isPresent()) {
+            this.imageWidth = imageSize.get().width();
+            this.imageHeight = imageSize.get().height();
+        }
+
         Optional<ExifData> exifData = metadata.exifData();
         if (exifData.isPresent()) {
             this.fnumber = exifData.get().fnumber().orElse(null);
@@ -51,19 +73,84 @@ public class StorableMetadata implements Storable<Metadata> {
             this.focalLengthFullFrameEquivalent = exifData.get().focalLengthFullFrameEquivalent().orElse(null);
             this.iso = exifData.get().iso().orElse(null);
             this.takenAt = exifData.get().takenAt().orElse(null);
+            this.make = exifData.get().make().map(strings::indexOf).orElse(null);
+            this.model = exifData.get().model().map(strings::indexOf).orElse(null);
+            this.lensModel = exifData.get().lensModel().map(strings::indexOf).orElse(null);
+            this.exposureTime = exifData.get().exposureTime().orElse(null);
+            this.whiteBalance = exifData.get().whiteBalance().orElse(null);
+            this.orientation = exifData.get().orientation().orElse(null);
+            this.latitude = exifData.get().latitude().orElse(null);
+            this.longitude = exifData.get().longitude().orElse(null);
         }
+
+        this.fingerprint = metadata.fingerprint().map(StorableFileFingerprint::of).orElse(null);
+        this.contentHash = metadata.contentHash().map(ContentHash::toHex).orElse(null);
+        this.extractedAt = metadata.extractedAt();
     }
 
+    /**
+     * Unboxes the metadata without a string table, so the camera make, model and lens model are not resolved.
+     */
     @Nonnull
     @Override
     public Metadata unbox() {
-        return new Metadata(fileSize, null,
-                            ExifData.empty().withFnumber(fnumber).withFocalLength(focalLength)
-                                    .withFocalLengthFullFrameEquivalent(focalLengthFullFrameEquivalent).withIso(iso)
-                                    .withTakenAt(takenAt));
+        return unbox(StringTable.newInstance());
+    }
+
+    /**
+     * @param strings The string table of the data file the metadata has been read from.
+     * @return The unboxed metadata.
+     */
+    @Nonnull
+    Metadata unbox(@Nonnull StringTable strings) {
+        return new Metadata(fileSize,
+                            imageWidth != null && imageHeight != null ? new ImageSize(imageWidth, imageHeight) : null,
+                            unboxExifData(strings),
+                            Storables.unboxNullSafe(fingerprint).orElse(null),
+                            contentHash != null ? ContentHash.fromHex(contentHash) : null,
+                            extractedAt != null ? extractedAt : Instant.now());
+    }
+
+    private ExifData unboxExifData(StringTable strings) {
+        ExifData.Builder exifData = ExifData.builder();
+        if (fnumber != null) {
+            exifData.fnumber(fnumber);
+        }
+        if (focalLength != null) {
+            exifData.focalLength(focalLength);
+        }
+        if (focalLengthFullFrameEquivalent != null) {
+            exifData.focalLengthFullFrameEquivalent(focalLengthFullFrameEquivalent);
+        }
+        if (iso != null) {
+            exifData.iso(iso);
+        }
+        if (exposureTime != null) {
+            exifData.exposureTime(exposureTime);
+        }
+        if (whiteBalance != null) {
+            exifData.whiteBalance(whiteBalance);
+        }
+        if (orientation != null) {
+            exifData.orientation(orientation);
+        }
+        if (latitude != null && longitude != null) {
+            exifData.location(latitude, longitude);
+        }
+        return exifData.takenAt(takenAt)
+                       .make(strings.valueAt(make))
+                       .model(strings.valueAt(model))
+                       .lensModel(strings.valueAt(lensModel))
+                       .build();
     }
 
-    public static StorableMetadata of(@Nonnull Metadata metadata) {
-        return new StorableMetadata(metadata);
+    /**
+     * @param metadata The metadata to be stored.
+     * @param strings  The string table of the data file to be written, to which the camera make, model and lens model
+     *                 are added.
+     * @return The storable metadata.
+     */
+    static StorableMetadata of(@Nonnull Metadata metadata, @Nonnull StringTable strings) {
+        return new StorableMetadata(metadata, strings);
     }
 }
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2016 Daniel Götten
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.maci.photography.eyebeam.library.storage.persistent;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Stores each distinct string of a data file once, so values repeated by many photos, like camera makes and models,
+ * are referenced by their index instead of being written again for each photo.
+ *
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+final class StringTable {
+
+    private final List<String> strings;
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    private StringTable(List<String> strings) {
+        this.strings = strings;
+        for (int i = 0; i < strings.size(); i++) {
+            indices.putIfAbsent(strings.get(i), i);
+        }
+    }
+
+    /**
+     * @param value The string to be referenced.
+     * @return The index of the string, which is added to the table if not contained yet.
+     */
+    int indexOf(@Nonnull String value) {
+        requireNonNull(value, "Value must not be null.");
+        Integer index = indices.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            indices.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param index The index of the string, may be <code>null</code> if no string is referenced.
+     * @return The string, <code>null</code> if no string is referenced or the index is unknown.
+     */
+    @Nullable
+    String valueAt(@Nullable Integer index) {
+        return index != null && index >= 0 && index < strings.size() ? strings.get(index) : null;
+    }
+
+    @Nonnull
+    List<String> strings() {
+        return Collections.unmodifiableList(strings);
+    }
+
+    static StringTable newInstance() {
+        return new StringTable(new ArrayList<>());
+    }
+
+    static StringTable of(@Nonnull List<String> strings) {
+        requireNonNull(strings, "Strings must not be null.");
+        return new StringTable(new ArrayList<>(strings));
+    }
+}
@@ -0,0 +1,42 @@
+package de.maci.photography.eyebeam.library;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class IoBudgetTest {
+
+    @Test
+    public void readingBeyondTheBudgetBlocksUntilTheDebtHasBeenPaidOff() throws Exception {
+        IoBudget sut = IoBudget.of(1000, IoBudget.UNLIMITED);
+        sut.acquireBytes(1000);
+
+        long startedAt = System.nanoTime();
+        sut.acquireBytes(200);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), greaterThanOrEqualTo(150L));
+    }
+
+    @Test
+    public void aBlockedReaderContinues_IfTheBudgetIsRaised() throws Exception {
+        IoBudget sut = IoBudget.of(10, IoBudget.UNLIMITED);
+        sut.acquireBytes(10);
+
+        long startedAt = System.nanoTime();
+        CompletableFuture<Void> blockedReader = CompletableFuture.runAsync(() -> sut.acquireBytes(1000));
+        Thread.sleep(100);
+        sut.bytesPerSecond(IoBudget.UNLIMITED);
+        blockedReader.get(10, TimeUnit.SECONDS);
+
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt), lessThan(10L));
+    }
+}
@@ -1,8 +1,10 @@
 package de.maci.photography.eyebeam.library;
 
 import de.maci.photography.eyebeam.library.indexing.FilesystemScanner;
+import de.maci.photography.eyebeam.library.metadata.FileFingerprint;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
 import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+import de.maci.photography.eyebeam.library.metadata.MetadataReadingException;
 import de.maci.photography.eyebeam.library.storage.InMemoryDataStore;
 import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
 import org.hamcrest.MatcherAssert;
@@ -11,14 +13,25 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -27,14 +40,21 @@ import static de.maci.photography.eyebeam.library.testhelper.MockingHelper.mockF
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -51,6 +71,9 @@ public class LibraryTest {
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
+    @Rule
+    public TemporaryFolder checkpointFolder = new TemporaryFolder();
+
     private Path temporaryFolderPath;
 
     private Path firstSampleFile;
@@ -199,6 +222,53 @@ public class LibraryTest {
         await().atMost(1, SECONDS).until(() -> !sut.isReindexing());
     }
 
+    @Test
+    public void concurrentCallersJoinTheRunningReindexing_IfTheLibraryIsReindexedAsynchronously() throws Exception {
+        LibraryConfiguration configuration = anyConfig();
+        Library sut = Library.newInstance(InMemoryDataStore.empty(), configuration);
+
+        List<Integer> scans = new ArrayList<>();
+        LibraryReindexer reindexer = new LibraryReindexer(sut, configuration, photo -> true) {
+
+            @Override
+            protected FilesystemScanner createScanner(Predicate<Path> fileFilter) {
+                scans.add(1);
+                return sleepingFilesystemScanner(250);
+            }
+        };
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<ReindexingResult> first = reindexer.reindexLibraryAsync(executor);
+            CompletableFuture<ReindexingResult> second = sut.createReindexer().reindexLibraryAsync(executor);
+
+            MatcherAssert.assertThat(second.get(1, SECONDS), sameInstance(first.get(1, SECONDS)));
+            assertThat(scans.size(), equalTo(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void theResultSummarizesTheReindexing() throws Exception {
+        Library sut = Library.newInstance(InMemoryDataStore.empty(), config(temporaryFolderPath, path -> true));
+
+        ReindexingResult firstResult = sut.createReindexer().reindexLibraryAsync(Runnable::run).get();
+
+        assertThat(firstResult.added(), equalTo(3L));
+        assertThat(firstResult.updated(), equalTo(3L));
+        assertThat(firstResult.removed(), equalTo(0L));
+        assertThat(firstResult.failed(), equalTo(0L));
+        assertFalse(firstResult.isCancelled());
+
+        Files.delete(secondSampleFile);
+        ReindexingResult secondResult = sut.createReindexer().reindexLibrary();
+
+        assertThat(secondResult.added(), equalTo(0L));
+        assertThat(secondResult.updated(), equalTo(0L));
+        assertThat(secondResult.removed(), equalTo(1L));
+    }
+
     @Test
     public void reindexingFlagIsNotSet_IfLibraryInstanceJustHasBeenCreated() throws Exception {
         Library sut = Library.newInstance(InMemoryDataStore.empty(), anyConfig());
@@ -226,9 +296,12 @@ public class LibraryTest {
 
         sut.createReindexer().reindexLibrary();
 
-        verify(dataStore).store(Photo.locatedAt(temporaryFolderPath.relativize(firstSampleFile)));
-        verify(dataStore).store(Photo.locatedAt(temporaryFolderPath.relativize(secondSampleFile)));
-        verify(dataStore).store(Photo.locatedAt(temporaryFolderPath.relativize(thirdSampleFile)));
+        ArgumentCaptor<Collection<Photo>> storedPhotos = ArgumentCaptor.forClass(Collection.class);
+        verify(dataStore).storeAll(storedPhotos.capture());
+        MatcherAssert.assertThat(storedPhotos.getValue(),
+                                 containsInAnyOrder(Photo.locatedAt(temporaryFolderPath.relativize(firstSampleFile)),
+                                                    Photo.locatedAt(temporaryFolderPath.relativize(secondSampleFile)),
+                                                    Photo.locatedAt(temporaryFolderPath.relativize(thirdSampleFile))));
     }
 
     @Test
@@ -236,7 +309,7 @@ public class LibraryTest {
         LibraryDataStore dataStore = InMemoryDataStore.empty();
 
         MetadataReader metadataReader = mock(MetadataReader.class);
-        when(metadataReader.readFrom(any(Path.class))).thenReturn(Metadata.empty());
+        when(metadataReader.readFrom(any(Path.class), any(FileFingerprint.class))).thenReturn(Metadata.empty());
 
         Library sut = Library.newInstance(dataStore, new LibraryConfiguration() {
             @Override
@@ -257,9 +330,9 @@ public class LibraryTest {
 
         sut.createReindexer().reindexLibrary();
 
-        verify(metadataReader).readFrom(firstSampleFile);
-        verify(metadataReader).readFrom(secondSampleFile);
-        verify(metadataReader).readFrom(thirdSampleFile);
+        verify(metadataReader).readFrom(firstSampleFile, FileFingerprint.of(readAttributes(firstSampleFile)));
+        verify(metadataReader).readFrom(secondSampleFile, FileFingerprint.of(readAttributes(secondSampleFile)));
+        verify(metadataReader).readFrom(thirdSampleFile, FileFingerprint.of(readAttributes(thirdSampleFile)));
 
         dataStore.photos().forEach(photo -> assertTrue(dataStore.metadataOf(photo).isPresent()));
     }
@@ -270,7 +343,8 @@ public class LibraryTest {
         Supplier<MetadataReader> metadataReaderFactory = mock(Supplier.class);
         when(metadataReaderFactory.get()).thenAnswer(i -> {
             MetadataReader metadataReader = mock(MetadataReader.class);
-            when(metadataReader.readFrom(any(Path.class))).thenAnswer(t -> mock(Metadata.class));
+            when(metadataReader.readFrom(any(Path.class), any(FileFingerprint.class)))
+                    .thenAnswer(t -> mock(Metadata.class));
             return metadataReader;
         });
 
@@ -296,6 +370,396 @@ public class LibraryTest {
         verify(metadataReaderFactory).get();
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void metadataIsResolvedByMultipleWorkers_IfParallelismIsConfigured() throws Exception {
+        LibraryDataStore dataStore = InMemoryDataStore.empty();
+
+        Supplier<MetadataReader> metadataReaderFactory = mock(Supplier.class);
+        when(metadataReaderFactory.get()).thenAnswer(i -> {
+            MetadataReader metadataReader = mock(MetadataReader.class);
+            when(metadataReader.readFrom(any(Path.class), any(FileFingerprint.class)))
+                    .thenAnswer(t -> Metadata.empty());
+            return metadataReader;
+        });
+
+        Library sut = Library.newInstance(dataStore, new LibraryConfiguration() {
+            @Override
+            public Path rootFolder() {
+                return temporaryFolderPath;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Supplier<MetadataReader> metadataReader() {
+                return metadataReaderFactory;
+            }
+        });
+
+        sut.createReindexer().withOptions(LibraryReindexer.Options.newInstance().parallelism(2)).reindexLibrary();
+
+        verify(metadataReaderFactory, atMost(2)).get();
+        assertThat(dataStore.size(), equalTo(3L));
+        dataStore.photos().forEach(photo -> assertTrue(dataStore.metadataOf(photo).isPresent()));
+    }
+
+    @Test
+    public void photosAndMetadataAreStored_IfTheLibraryIsReindexedPipelined() throws Exception {
+        LibraryDataStore dataStore = InMemoryDataStore.empty();
+        dataStore.store(Photo.locatedAt(Paths.get("deletedPhoto.jpg")));
+
+        Library sut = Library.newInstance(dataStore, new LibraryConfiguration() {
+            @Override
+            public Path rootFolder() {
+                return temporaryFolderPath;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.empty();
+            }
+        });
+
+        sut.createReindexer()
+           .withOptions(LibraryReindexer.Options.newInstance()
+                                                .pipelined(true)
+                                                .parallelism(2)
+                                                .queueCapacity(1)
+                                                .batchSize(2))
+           .reindexLibrary();
+
+        MatcherAssert.assertThat(sut.photos().collect(toList()),
+                                 containsInAnyOrder(photo(firstSampleFile),
+                                                    photo(secondSampleFile),
+                                                    photo(thirdSampleFile)));
+        dataStore.photos().forEach(photo -> assertTrue(dataStore.metadataOf(photo).isPresent()));
+    }
+
+    @Test
+    public void queueCapacityMustBeAPositiveNumber() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Queue capacity must be larger than 0.");
+
+        LibraryReindexer.Options.newInstance().queueCapacity(0);
+    }
+
+    @Test
+    public void batchSizeMustBeAPositiveNumber() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Batch size must be larger than 0.");
+
+        LibraryReindexer.Options.newInstance().batchSize(0);
+    }
+
+    @Test
+    public void phasesAndProgressAreReportedToTheListener() throws Exception {
+        Library sut = Library.newInstance(InMemoryDataStore.empty(), new LibraryConfiguration() {
+            @Override
+            public Path rootFolder() {
+                return temporaryFolderPath;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.empty();
+            }
+        });
+
+        List<String> events = new ArrayList<>();
+        List<ReindexingProgress> reports = new ArrayList<>();
+
+        sut.createReindexer().withListener(new ReindexingListener() {
+            @Override
+            public void phaseStarted(ReindexingPhase phase) {
+                events.add(phase + " started");
+            }
+
+            @Override
+            public void phaseCompleted(ReindexingPhase phase) {
+                events.add(phase + " completed");
+            }
+
+            @Override
+            public void progress(ReindexingProgress progress) {
+                reports.add(progress);
+            }
+        }).reindexLibrary();
+
+        MatcherAssert.assertThat(events, contains("SCANNING started", "SCANNING completed",
+                                                  "PRUNING started", "PRUNING completed",
+                                                  "EXTRACTING started", "EXTRACTING completed"));
+
+        ReindexingProgress finalProgress = reports.get(reports.size() - 1);
+        assertThat(finalProgress.filesScanned(), equalTo(3L));
+        assertThat(finalProgress.filesExtracted(), equalTo(3L));
+        assertThat(finalProgress.bytesRead(), greaterThan(0L));
+        assertThat(finalProgress.bytesRead(), lessThanOrEqualTo(3 * Files.size(firstSampleFile)));
+        assertThat(finalProgress.failures(), equalTo(0L));
+    }
+
+    @Test
+    public void reindexingIsContinued_IfTheMetadataOfAPhotoCannotBeRead() throws Exception {
+        LibraryDataStore dataStore = InMemoryDataStore.empty();
+
+        MetadataReader metadataReader = mock(MetadataReader.class);
+        when(metadataReader.readFrom(any(Path.class), any(FileFingerprint.class))).thenReturn(Metadata.empty());
+        when(metadataReader.readFrom(eq(secondSampleFile), any(FileFingerprint.class)))
+                .thenThrow(new MetadataReadingException("Failure", null));
+
+        Library sut = Library.newInstance(dataStore, new LibraryConfiguration() {
+            @Override
+            public Path rootFolder() {
+                return temporaryFolderPath;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Supplier<MetadataReader> metadataReader() {
+                return () -> metadataReader;
+            }
+        });
+
+        List<ReindexingProgress> reports = new ArrayList<>();
+        sut.createReindexer().withListener(new ReindexingListener() {
+            @Override
+            public void progress(ReindexingProgress progress) {
+                reports.add(progress);
+            }
+        }).reindexLibrary();
+
+        assertTrue(sut.metadataExists(photo(firstSampleFile)));
+        assertFalse(sut.metadataExists(photo(secondSampleFile)));
+        assertTrue(sut.metadataExists(photo(thirdSampleFile)));
+        assertThat(reports.get(reports.size() - 1).failures(), equalTo(1L));
+    }
+
+    @Test
+    public void reindexingIsStoppedAndACheckpointIsWritten_IfTheReindexingIsCancelled() throws Exception {
+        Path checkpointFile = checkpointFolder.getRoot().toPath().resolve("reindexing.checkpoint");
+        List<Path> readPaths = new ArrayList<>();
+        List<LibraryReindexer> reindexers = new ArrayList<>();
+
+        Library sut = Library.newInstance(InMemoryDataStore.empty(),
+                                          configWithMetadataReader(temporaryFolderPath, () -> path -> {
+                                              readPaths.add(path);
+                                              reindexers.get(0).cancel();
+                                              return Metadata.empty();
+                                          }));
+
+        LibraryReindexer reindexer = sut.createReindexer()
+                                        .withOptions(LibraryReindexer.Options.newInstance()
+                                                                             .checkpointFile(checkpointFile));
+        reindexers.add(reindexer);
+        reindexer.reindexLibrary();
+
+        assertThat(readPaths.size(), equalTo(1));
+        assertThat(sut.photos().filter(sut::metadataExists).count(), equalTo(1L));
+        assertTrue(Files.exists(checkpointFile));
+        assertFalse(sut.isReindexing());
+    }
+
+    @Test
+    public void metadataExtractedBeforeCancellingIsStored_IfNoCheckpointFileIsSet() throws Exception {
+        List<LibraryReindexer> reindexers = new ArrayList<>();
+
+        Library sut = Library.newInstance(InMemoryDataStore.empty(),
+                                          configWithMetadataReader(temporaryFolderPath, () -> path -> {
+                                              reindexers.get(0).cancel();
+                                              return Metadata.empty();
+                                          }));
+
+        LibraryReindexer reindexer = sut.createReindexer();
+        reindexers.add(reindexer);
+        reindexer.reindexLibrary();
+
+        assertThat(sut.photos().filter(sut::metadataExists).count(), equalTo(1L));
+    }
+
+    @Test
+    public void metadataIsNotReadAgain_IfAnInterruptedReindexingIsResumed() throws Exception {
+        Path checkpointFile = checkpointFolder.getRoot().toPath().resolve("reindexing.checkpoint");
+        List<Path> readPaths = new ArrayList<>();
+        List<LibraryReindexer> reindexers = new ArrayList<>();
+
+        Library sut = Library.newInstance(InMemoryDataStore.empty(),
+                                          configWithMetadataReader(temporaryFolderPath, () -> path -> {
+                                              readPaths.add(path);
+                                              if (readPaths.size() == 1) {
+                                                  reindexers.get(0).cancel();
+                                              }
+                                              return Metadata.empty();
+                                          }));
+
+        LibraryReindexer.Options options = LibraryReindexer.Options.newInstance().checkpointFile(checkpointFile);
+        reindexers.add(sut.createReindexer().withOptions(options));
+        reindexers.get(0).reindexLibrary();
+
+        sut.createReindexer()
+           .withCustomReindexingNecessaryDecision(photo -> true)
+           .withOptions(options)
+           .reindexLibrary();
+
+        assertThat(readPaths.size(), equalTo(3));
+        MatcherAssert.assertThat(readPaths, containsInAnyOrder(firstSampleFile, secondSampleFile, thirdSampleFile));
+        assertThat(sut.photos().filter(sut::metadataExists).count(), equalTo(3L));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    @Test
+    public void checkpointIntervalMustNotBeNegative() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Checkpoint interval must not be negative.");
+
+        LibraryReindexer.Options.newInstance().checkpointInterval(Duration.ofSeconds(-1));
+    }
+
+    @Test
+    public void photosWhoseMetadataCannotBeReadAreSkipped_UntilTheirFilesHaveBeenChanged() throws Exception {
+        List<Path> readPaths = new ArrayList<>();
+        Library sut = Library.newInstance(InMemoryDataStore.empty(),
+                                          configWithMetadataReader(temporaryFolderPath, () -> path -> {
+                                              readPaths.add(path);
+                                              if (path.equals(secondSampleFile)) {
+                                                  throw new MetadataReadingException("Failure", null);
+                                              }
+                                              return Metadata.empty();
+                                          }));
+
+        sut.createReindexer().withCustomReindexingNecessaryDecision(photo -> true).reindexLibrary();
+        assertThat(readPaths.size(), equalTo(3));
+        assertThat(sut.dataStore().extractionFailureOf(photo(secondSampleFile)).get().reason(), equalTo("Failure"));
+
+        readPaths.clear();
+        sut.createReindexer().withCustomReindexingNecessaryDecision(photo -> true).reindexLibrary();
+        assertThat(readPaths.size(), equalTo(0));
+
+        Files.setLastModifiedTime(secondSampleFile, FileTime.from(Instant.now().plusSeconds(60)));
+        sut.createReindexer().withCustomReindexingNecessaryDecision(photo -> true).reindexLibrary();
+        MatcherAssert.assertThat(readPaths, contains(secondSampleFile));
+    }
+
+    @Test
+    public void photosWhoseMetadataCannotBeReadAreRetried_IfTheRetryIntervalHasExpired() throws Exception {
+        List<Path> readPaths = new ArrayList<>();
+        Library sut = Library.newInstance(InMemoryDataStore.empty(),
+                                          configWithMetadataReader(temporaryFolderPath, () -> path -> {
+                                              readPaths.add(path);
+                                              return Metadata.empty();
+                                          }));
+
+        LibraryReindexer.Options options = LibraryReindexer.Options.newInstance()
+                                                                   .extractionRetryInterval(Duration.ZERO);
+        sut.createReindexer().withOptions(options).reindexLibrary();
+        sut.createReindexer().withOptions(options).reindexLibrary();
+
+        assertThat(readPaths.size(), equalTo(6));
+    }
+
+    @Test
+    public void reindexingIsThrottled_IfAnIoBudgetIsConfigured() throws Exception {
+        Library sut = Library.newInstance(InMemoryDataStore.empty(), config(temporaryFolderPath, path -> true));
+
+        // Scanning consumes the initial budget, reading the metadata of three files has to wait for a second
+        IoBudget ioBudget = IoBudget.of(IoBudget.UNLIMITED, 3);
+        ReindexingResult result = sut.createReindexer()
+                                     .withOptions(LibraryReindexer.Options.newInstance().ioBudget(ioBudget))
+                                     .reindexLibrary();
+
+        assertThat(result.updated(), equalTo(3L));
+        MatcherAssert.assertThat(result.duration(), greaterThanOrEqualTo(Duration.ofMillis(900)));
+    }
+
+    @Test
+    public void theLimitsOfAnIoBudgetMustNotBeNegative() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Files per second must not be negative.");
+
+        IoBudget.unlimited().filesPerSecond(-1);
+    }
+
+    @Test
+    public void photosOfUnchangedDirectoriesAreKept_IfTheLibraryIsReindexedUsingADirectoryState() throws Exception {
+        Path subfolder = Files.createDirectory(temporaryFolderPath.resolve("subfolder"));
+        Files.copy(firstSampleFile, subfolder.resolve("photoInSubfolder.jpg"));
+        Files.setLastModifiedTime(subfolder, FileTime.from(Instant.now().minusSeconds(60)));
+        Files.setLastModifiedTime(temporaryFolderPath, FileTime.from(Instant.now().minusSeconds(60)));
+        Library sut = Library.newInstance(InMemoryDataStore.empty(), config(temporaryFolderPath, path -> true));
+        LibraryReindexer.Options options =
+                LibraryReindexer.Options.newInstance()
+                                        .incremental(true)
+                                        .directoryStateFile(checkpointFolder.getRoot().toPath().resolve("state"));
+
+        sut.createReindexer().withOptions(options).reindexLibrary();
+        ReindexingResult unchanged = sut.createReindexer().withOptions(options.pipelined(true)).reindexLibrary();
+
+        assertThat(unchanged.added() + unchanged.updated() + unchanged.removed(), equalTo(0L));
+        MatcherAssert.assertThat(sut.countPhotos(), equalTo(4L));
+
+        Files.delete(secondSampleFile);
+        Files.setLastModifiedTime(temporaryFolderPath, FileTime.from(Instant.now().plusSeconds(60)));
+        ReindexingResult changed = sut.createReindexer().withOptions(options).reindexLibrary();
+
+        assertThat(changed.removed(), equalTo(1L));
+        MatcherAssert.assertThat(sut.countPhotos(), equalTo(3L));
+    }
+
+    @Test
+    public void photosWhoseMetadataCannotBeReadAreRetried_EvenIfTheirDirectoryIsUnchanged() throws Exception {
+        Files.setLastModifiedTime(temporaryFolderPath, FileTime.from(Instant.now().minusSeconds(60)));
+        List<Path> readPaths = new ArrayList<>();
+        Library sut = Library.newInstance(InMemoryDataStore.empty(),
+                                          configWithMetadataReader(temporaryFolderPath, () -> path -> {
+                                              readPaths.add(path);
+                                              return Metadata.empty();
+                                          }));
+        LibraryReindexer.Options options =
+                LibraryReindexer.Options.newInstance()
+                                        .incremental(true)
+                                        .extractionRetryInterval(Duration.ZERO)
+                                        .directoryStateFile(checkpointFolder.getRoot().toPath().resolve("state"));
+
+        sut.createReindexer().withOptions(options).reindexLibrary();
+        sut.createReindexer().withOptions(options).reindexLibrary();
+        sut.createReindexer().withOptions(options.pipelined(true)).reindexLibrary();
+
+        assertThat(readPaths.size(), equalTo(9));
+    }
+
+    @Test
+    public void duplicatesAreFound_IfContentHashingIsEnabled() throws Exception {
+        Path otherFile = temporaryFolderPath.resolve("otherFile.jpg");
+        Files.write(otherFile, new byte[]{1, 2, 3});
+        Library sut = Library.newInstance(InMemoryDataStore.empty(), config(temporaryFolderPath, path -> true));
+
+        sut.createReindexer()
+           .withOptions(LibraryReindexer.Options.newInstance().contentHashing(true).parallelism(2))
+           .reindexLibrary();
+
+        MatcherAssert.assertThat(sut.duplicatesOf(photo(firstSampleFile)),
+                                 containsInAnyOrder(photo(secondSampleFile), photo(thirdSampleFile)));
+        assertTrue(sut.duplicatesOf(photo(otherFile)).isEmpty());
+        MatcherAssert.assertThat(sut.duplicates().collect(toList()),
+                                 contains(containsInAnyOrder(photo(firstSampleFile),
+                                                             photo(secondSampleFile),
+                                                             photo(thirdSampleFile))));
+    }
+
+    @Test
+    public void parallelismMustBeAPositiveNumber() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Parallelism must be larger than 0.");
+
+        LibraryReindexer.Options.newInstance().parallelism(0);
+    }
+
     @Test
     public void presentMetadataIsNotRefreshed() throws Exception {
         LibraryDataStore dataStore = InMemoryDataStore.empty();
@@ -354,6 +818,64 @@ public class LibraryTest {
         assertTrue(sut.metadataOf(photo(thirdSampleFile)).get().extractedAt().isAfter(thirdMetadata.extractedAt()));
     }
 
+    @Test
+    public void onlyChangedPhotosAreRefreshed_IfTheLibraryIsReindexedIncrementally() throws Exception {
+        LibraryDataStore dataStore = InMemoryDataStore.empty();
+
+        Library sut = Library.newInstance(dataStore, new LibraryConfiguration() {
+            @Override
+            public Path rootFolder() {
+                return temporaryFolderPath;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.empty();
+            }
+        });
+
+        sut.createReindexer().reindexLibrary();
+
+        Metadata firstMetadata = sut.metadataOf(photo(firstSampleFile)).get();
+        Metadata secondMetadata = sut.metadataOf(photo(secondSampleFile)).get();
+
+        Files.setLastModifiedTime(secondSampleFile, FileTime.from(Instant.now().plusSeconds(60)));
+
+        sut.createReindexer()
+           .withCustomReindexingNecessaryDecision(photo -> true)
+           .withOptions(LibraryReindexer.Options.newInstance().incremental(true))
+           .reindexLibrary();
+
+        assertThat(sut.metadataOf(photo(firstSampleFile)).get().extractedAt(), equalTo(firstMetadata.extractedAt()));
+        assertTrue(sut.metadataOf(photo(secondSampleFile)).get().extractedAt().isAfter(secondMetadata.extractedAt()));
+    }
+
+    @Test
+    public void photosAreRemoved_IfTheirFilesHaveBeenDeletedSinceTheLastReindexing() throws Exception {
+        LibraryDataStore dataStore = InMemoryDataStore.empty();
+
+        Library sut = Library.newInstance(dataStore, new LibraryConfiguration() {
+            @Override
+            public Path rootFolder() {
+                return temporaryFolderPath;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.empty();
+            }
+        });
+
+        sut.createReindexer().reindexLibrary();
+
+        Files.delete(secondSampleFile);
+
+        sut.createReindexer().reindexLibrary();
+
+        MatcherAssert.assertThat(sut.photos().collect(toList()),
+                                 containsInAnyOrder(photo(firstSampleFile), photo(thirdSampleFile)));
+    }
+
     @Test
     public void aNewUpdaterInstanceCanBeCreated() throws Exception {
         Library sut = Library.newInstance(mock(LibraryDataStore.class), new LibraryConfiguration() {
@@ -394,6 +916,10 @@ public class LibraryTest {
         return Photo.locatedAt(path.getFileName());
     }
 
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
     private static LibraryConfiguration anyConfig() {
         return config(anyPath(), path -> true);
     }
@@ -402,6 +928,27 @@ public class LibraryTest {
         return Paths.get(".");
     }
 
+    private static LibraryConfiguration configWithMetadataReader(Path rootFolder,
+                                                                 Supplier<MetadataReader> metadataReader) {
+        return new LibraryConfiguration() {
+
+            @Override
+            public Path rootFolder() {
+                return rootFolder;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Supplier<MetadataReader> metadataReader() {
+                return metadataReader;
+            }
+        };
+    }
+
     private static LibraryConfiguration config(Path rootFolder, Predicate<Path> fileFilter) {
         return new LibraryConfiguration() {
 
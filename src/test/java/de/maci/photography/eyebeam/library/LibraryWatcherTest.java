@@ -0,0 +1,191 @@
+package de.maci.photography.eyebeam.library;
+
+import de.maci.photography.eyebeam.library.storage.InMemoryDataStore;
+import de.maci.photography.eyebeam.library.storage.LibraryDataStore;
+import de.maci.photography.eyebeam.library.metadata.DefaultMetadataReader;
+import de.maci.photography.eyebeam.library.metadata.MetadataReader;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 27.02.16
+ */
+public class LibraryWatcherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder outsideFolder = new TemporaryFolder();
+
+    private final AtomicBoolean readerEntered = new AtomicBoolean();
+    private volatile CountDownLatch readingBlocked = new CountDownLatch(0);
+
+    private Path sampleFilePath;
+    private Path temporaryFolderPath;
+
+    private LibraryDataStore dataStore;
+    private Library library;
+    private LibraryWatcher sut;
+
+    @Before
+    public void setUp() throws Exception {
+        this.sampleFilePath = Paths.get(getClass().getResource("sample.jpg").toURI());
+        this.temporaryFolderPath = temporaryFolder.getRoot().toPath();
+
+        this.dataStore = InMemoryDataStore.empty();
+        this.library = Library.newInstance(dataStore, new LibraryConfiguration() {
+            @Override
+            public Path rootFolder() {
+                return temporaryFolderPath;
+            }
+
+            @Override
+            public Optional<Predicate<Path>> fileFilter() {
+                return Optional.of(path -> path.toString().endsWith(".jpg"));
+            }
+
+            @Override
+            public Supplier<MetadataReader> metadataReader() {
+                MetadataReader delegate = new DefaultMetadataReader();
+                return () -> path -> {
+                    if (path.getFileName().toString().equals("blocking.jpg")) {
+                        readerEntered.set(true);
+                        try {
+                            readingBlocked.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return delegate.readFrom(path);
+                };
+            }
+        });
+        this.sut = library.createWatcher().withDebounceWindow(Duration.ofMillis(50)).start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sut.close();
+    }
+
+    @Test
+    public void createdPhotosAreAddedIncludingTheirMetadata() throws Exception {
+        Files.copy(sampleFilePath, temporaryFolderPath.resolve("photo.jpg"));
+
+        Photo photo = Photo.locatedAt(Paths.get("photo.jpg"));
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(photo) && dataStore.metadataExists(photo));
+    }
+
+    @Test
+    public void photosInCreatedDirectoriesAreAdded() throws Exception {
+        Path directory = Files.createDirectory(temporaryFolderPath.resolve("directory"));
+        Files.copy(sampleFilePath, directory.resolve("photo.jpg"));
+
+        Photo photo = Photo.locatedAt(Paths.get("directory", "photo.jpg"));
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(photo) && dataStore.metadataExists(photo));
+    }
+
+    @Test
+    public void deletedPhotosAreRemoved() throws Exception {
+        Path file = Files.copy(sampleFilePath, temporaryFolderPath.resolve("photo.jpg"));
+        Photo photo = Photo.locatedAt(Paths.get("photo.jpg"));
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(photo));
+
+        Files.delete(file);
+
+        await().atMost(5, SECONDS).until(() -> !dataStore.contains(photo));
+    }
+
+    @Test
+    public void photosInDeletedDirectoriesAreRemoved() throws Exception {
+        Path directory = Files.createDirectory(temporaryFolderPath.resolve("directory"));
+        Files.copy(sampleFilePath, directory.resolve("photo.jpg"));
+        Photo photo = Photo.locatedAt(Paths.get("directory", "photo.jpg"));
+        Photo photoWithSimilarPath = Photo.locatedAt(Paths.get("directory-2.jpg"));
+        Files.copy(sampleFilePath, temporaryFolderPath.resolve("directory-2.jpg"));
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(photo) && dataStore.contains(photoWithSimilarPath));
+
+        FileUtils.deleteDirectory(directory.toFile());
+
+        await().atMost(5, SECONDS).until(() -> !dataStore.contains(photo));
+        assertTrue(dataStore.contains(photoWithSimilarPath));
+    }
+
+    @Test
+    public void directoriesMovedOutOfTheRootFolderAreNotWatchedAnymore() throws Exception {
+        Path directory = Files.createDirectory(temporaryFolderPath.resolve("directory"));
+        Files.copy(sampleFilePath, directory.resolve("photo.jpg"));
+        Photo photo = Photo.locatedAt(Paths.get("directory", "photo.jpg"));
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(photo));
+
+        Files.move(directory, outsideFolder.getRoot().toPath().resolve("directory"));
+        await().atMost(5, SECONDS).until(() -> !dataStore.contains(photo));
+
+        // A directory created at the same path has to be registered again
+        Files.createDirectory(directory);
+        Thread.sleep(500);
+        Files.copy(sampleFilePath, directory.resolve("otherPhoto.jpg"));
+
+        Photo otherPhoto = Photo.locatedAt(Paths.get("directory", "otherPhoto.jpg"));
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(otherPhoto));
+    }
+
+    @Test
+    public void theRootFolderIsRescanned_IfChangesHaveBeenLost() throws Exception {
+        Path deletedFile = Files.copy(sampleFilePath, temporaryFolderPath.resolve("deleted.jpg"));
+        Photo deletedPhoto = Photo.locatedAt(Paths.get("deleted.jpg"));
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(deletedPhoto));
+
+        // The watch service drops the changes exceeding its limit per directory while the watcher is blocked
+        readingBlocked = new CountDownLatch(1);
+        Files.copy(sampleFilePath, temporaryFolderPath.resolve("blocking.jpg"));
+        await().atMost(5, SECONDS).until(() -> readerEntered.get());
+        for (int i = 0; i < 600; i++) {
+            Files.createFile(temporaryFolderPath.resolve("photo" + i + ".jpg"));
+        }
+        Files.delete(deletedFile);
+        readingBlocked.countDown();
+
+        await().atMost(10, SECONDS).until(() -> !dataStore.contains(deletedPhoto));
+        await().atMost(10, SECONDS).until(() -> dataStore.contains(Photo.locatedAt(Paths.get("photo599.jpg"))));
+    }
+
+    @Test
+    public void filesNotMatchingTheFileFilterAreIgnored() throws Exception {
+        Files.copy(sampleFilePath, temporaryFolderPath.resolve("photo.txt"));
+        Files.copy(sampleFilePath, temporaryFolderPath.resolve("photo.jpg"));
+
+        await().atMost(5, SECONDS).until(() -> dataStore.contains(Photo.locatedAt(Paths.get("photo.jpg"))));
+        assertFalse(dataStore.contains(Photo.locatedAt(Paths.get("photo.txt"))));
+    }
+
+    @Test
+    public void theWatcherIsStopped_IfClosed() throws Exception {
+        assertTrue(sut.isRunning());
+
+        sut.close();
+
+        assertFalse(sut.isRunning());
+    }
+}
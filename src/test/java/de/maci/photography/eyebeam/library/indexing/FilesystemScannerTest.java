@@ -9,14 +9,33 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import static java.nio.file.Files.createTempDirectory;
 import static java.nio.file.Files.createTempFile;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -134,10 +153,240 @@ public class FilesystemScannerTest {
         Options.newInstance().limitDepthTo(-1);
     }
 
+    @Test
+    public void directoriesCanBeScannedInParallel() throws Exception {
+        Path someSubfolder = createTempDirectory(directoryToBeScanned, "someSubfolder");
+        Path anotherSubfolder = createTempDirectory(someSubfolder, "anotherSubfolder");
+        Path jpgFile = createTempFile(directoryToBeScanned, "someFile", ".jpg");
+        Path jpgFileInSubfolder = createTempFile(someSubfolder, "someFile", ".jpg");
+        Path jpgFileInNestedSubfolder = createTempFile(anotherSubfolder, "someFile", ".jpg");
+        Path txtFileInSubfolder = createTempFile(someSubfolder, "someFile", ".txt");
+
+        Consumer<Path> pathConsumer = mock(Consumer.class);
+
+        FilesystemScanner.newInstance(fileNameEndsWith(".jpg"), Options.newInstance().parallelism(4))
+                         .scan(directoryToBeScanned, pathConsumer);
+
+        verify(pathConsumer).accept(jpgFile);
+        verify(pathConsumer).accept(jpgFileInSubfolder);
+        verify(pathConsumer).accept(jpgFileInNestedSubfolder);
+        verify(pathConsumer, never()).accept(txtFileInSubfolder);
+    }
+
+    @Test
+    public void scanningDepthIsLimitedIfDirectoriesAreScannedInParallel() throws Exception {
+        Path someSubfolder = createTempDirectory(directoryToBeScanned, "someSubfolder");
+        Path anotherSubfolder = createTempDirectory(someSubfolder, "anotherSubfolder");
+        Path jpgFileInSubfolder = createTempFile(someSubfolder, "someFile", ".jpg");
+        Path jpgFileInNestedSubfolder = createTempFile(anotherSubfolder, "someFile", ".jpg");
+
+        Consumer<Path> pathConsumer = mock(Consumer.class);
+
+        FilesystemScanner.newInstance(fileNameEndsWith(".jpg"), Options.newInstance().limitDepthTo(2).parallelism(4))
+                         .scan(directoryToBeScanned, pathConsumer);
+
+        verify(pathConsumer).accept(jpgFileInSubfolder);
+        verify(pathConsumer, never()).accept(jpgFileInNestedSubfolder);
+    }
+
+    @Test
+    public void matchingPathsAreHandledOnTheCallingThreadIfDirectoriesAreScannedInParallel() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            Path subfolder = createTempDirectory(directoryToBeScanned, "subfolder");
+            for (int j = 0; j < 100; j++) {
+                createTempFile(subfolder, "someFile", ".jpg");
+            }
+        }
+        Set<Thread> handlingThreads = new HashSet<>();
+
+        FilesystemScanner.newInstance(fileNameEndsWith(".jpg"), Options.newInstance().parallelism(4))
+                         .scan(directoryToBeScanned, path -> handlingThreads.add(Thread.currentThread()));
+
+        assertThat(handlingThreads, is(singleton(Thread.currentThread())));
+    }
+
+    @Test
+    public void aFailureOfTheHandlerStopsAParallelScan() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            Path subfolder = createTempDirectory(directoryToBeScanned, "subfolder");
+            for (int j = 0; j < 100; j++) {
+                createTempFile(subfolder, "someFile", ".jpg");
+            }
+        }
+        expectedException.expect(IllegalStateException.class);
+        expectedException.expectMessage("Handler failed.");
+
+        FilesystemScanner.newInstance(fileNameEndsWith(".jpg"), Options.newInstance().parallelism(4))
+                         .scan(directoryToBeScanned, path -> {
+                             throw new IllegalStateException("Handler failed.");
+                         });
+    }
+
+    @Test
+    public void scanningParallelismMustBePositive() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Parallelism must be larger than 0.");
+
+        Options.newInstance().parallelism(0);
+    }
+
+    @Test
+    public void matchingFilesCanBeStreamed() throws Exception {
+        Path someSubfolder = createTempDirectory(directoryToBeScanned, "someSubfolder");
+        Path jpgFile = createTempFile(directoryToBeScanned, "someFile", ".jpg");
+        Path jpgFileInSubfolder = createTempFile(someSubfolder, "someFile", ".jpg");
+        createTempFile(someSubfolder, "someFile", ".txt");
+
+        try (Stream<ScannedFile> files = FilesystemScanner.newInstance(fileNameEndsWith(".jpg"))
+                                                          .stream(directoryToBeScanned)) {
+            assertThat(files.map(ScannedFile::path).collect(toSet()), containsInAnyOrder(jpgFile, jpgFileInSubfolder));
+        }
+    }
+
+    @Test
+    public void streamingStopsIfNoFurtherFilesAreRequested() throws Exception {
+        Path someSubfolder = createTempDirectory(directoryToBeScanned, "someSubfolder");
+        createTempFile(directoryToBeScanned, "someFile", ".jpg");
+        createTempFile(directoryToBeScanned, "someFile", ".jpg");
+        createTempFile(someSubfolder, "someFile", ".jpg");
+
+        Predicate<Path> filter = fileNameEndsWith(".jpg");
+
+        try (Stream<ScannedFile> files = FilesystemScanner.newInstance(filter).stream(directoryToBeScanned)) {
+            assertThat(files.limit(1).count(), is(1L));
+        }
+
+        verify(filter).test(any(Path.class));
+    }
+
+    @Test
+    public void scanningDepthIsLimitedIfFilesAreStreamed() throws Exception {
+        Path someSubfolder = createTempDirectory(directoryToBeScanned, "someSubfolder");
+        Path jpgFile = createTempFile(directoryToBeScanned, "someFile", ".jpg");
+        createTempFile(someSubfolder, "someFile", ".jpg");
+
+        try (Stream<ScannedFile> files = FilesystemScanner.newInstance(fileNameEndsWith(".jpg"),
+                                                                       Options.newInstance().limitDepthTo(1))
+                                                          .stream(directoryToBeScanned)) {
+            assertThat(files.map(ScannedFile::path).collect(toSet()), containsInAnyOrder(jpgFile));
+        }
+    }
+
+    @Test
+    public void streamedFilesAreProcessedByMoreThanOneThread_IfTheStreamIsParallel() throws Exception {
+        Set<Path> jpgFiles = new HashSet<>();
+        for (int i = 0; i < 32; i++) {
+            Path someSubfolder = createTempDirectory(directoryToBeScanned, "someSubfolder");
+            for (int j = 0; j < 50; j++) {
+                jpgFiles.add(createTempFile(someSubfolder, "someFile", ".jpg"));
+            }
+        }
+
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (Stream<ScannedFile> files = FilesystemScanner.newInstance(path -> true).stream(directoryToBeScanned)) {
+            Set<Path> processedFiles = pool.submit(() -> files.parallel().map(file -> {
+                threadNames.add(Thread.currentThread().getName());
+                LockSupport.parkNanos(MILLISECONDS.toNanos(1));
+                return file.path();
+            }).collect(toSet())).get();
+
+            assertThat(processedFiles, is(jpgFiles));
+            assertThat(threadNames.size(), greaterThan(1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void unchangedDirectoriesAreNotListedAgain_IfADirectoryStateIsUsed() throws Exception {
+        Path someSubfolder = createTempDirectory(directoryToBeScanned, "someSubfolder");
+        Path anotherSubfolder = createTempDirectory(directoryToBeScanned, "anotherSubfolder");
+        Path jpgFile = createTempFile(directoryToBeScanned, "someFile", ".jpg");
+        Path jpgFileInSubfolder = createTempFile(someSubfolder, "someFile", ".jpg");
+        createTempFile(anotherSubfolder, "someFile", ".jpg");
+        setLastModifiedTimeInThePast(directoryToBeScanned, someSubfolder, anotherSubfolder);
+        Path stateFile = directoryToBeScanned.resolveSibling(directoryToBeScanned.getFileName() + ".state");
+
+        FilesystemScanner sut = FilesystemScanner.newInstance(fileNameEndsWith(".jpg"));
+        DirectoryState directoryState = DirectoryState.empty();
+        sut.scan(directoryToBeScanned, directoryState, mock(BiConsumer.class), mock(Consumer.class));
+        try {
+            directoryState.writeTo(stateFile);
+            directoryState = DirectoryState.readFrom(stateFile);
+        } finally {
+            Files.deleteIfExists(stateFile);
+        }
+
+        Path newJpgFileInSubfolder = createTempFile(someSubfolder, "someFile", ".jpg");
+        Files.setLastModifiedTime(someSubfolder, FileTime.from(Instant.now().plusSeconds(60)));
+
+        BiConsumer<Path, BasicFileAttributes> matchingPathHandler = mock(BiConsumer.class);
+        Consumer<Path> unchangedDirectoryHandler = mock(Consumer.class);
+        sut.scan(directoryToBeScanned, directoryState, matchingPathHandler, unchangedDirectoryHandler);
+
+        verify(matchingPathHandler).accept(eq(jpgFileInSubfolder), any(BasicFileAttributes.class));
+        verify(matchingPathHandler).accept(eq(newJpgFileInSubfolder), any(BasicFileAttributes.class));
+        verify(matchingPathHandler, never()).accept(eq(jpgFile), any(BasicFileAttributes.class));
+        verify(unchangedDirectoryHandler).accept(directoryToBeScanned);
+        verify(unchangedDirectoryHandler).accept(anotherSubfolder);
+        verify(unchangedDirectoryHandler, never()).accept(someSubfolder);
+        assertThat(directoryState.size(), is(3));
+    }
+
+    @Test
+    public void directoriesModifiedShortlyBeforeTheirStateHasBeenTakenAreListedAgain() throws Exception {
+        FileTime lastModifiedTime = Files.getLastModifiedTime(directoryToBeScanned);
+        FilesystemScanner sut = FilesystemScanner.newInstance(fileNameEndsWith(".jpg"));
+        DirectoryState directoryState = DirectoryState.empty();
+        sut.scan(directoryToBeScanned, directoryState, mock(BiConsumer.class), mock(Consumer.class));
+
+        // Modified within the resolution of the modification time of a coarse file system
+        Path jpgFile = createTempFile(directoryToBeScanned, "someFile", ".jpg");
+        Files.setLastModifiedTime(directoryToBeScanned, lastModifiedTime);
+
+        BiConsumer<Path, BasicFileAttributes> matchingPathHandler = mock(BiConsumer.class);
+        Consumer<Path> unchangedDirectoryHandler = mock(Consumer.class);
+        sut.scan(directoryToBeScanned, directoryState, matchingPathHandler, unchangedDirectoryHandler);
+
+        verify(matchingPathHandler).accept(eq(jpgFile), any(BasicFileAttributes.class));
+        verify(unchangedDirectoryHandler, never()).accept(directoryToBeScanned);
+    }
+
+    @Test
+    public void directoriesRejectedByAPathFilterAreSkipped() throws Exception {
+        Path hiddenSubfolder = Files.createDirectory(directoryToBeScanned.resolve(".hidden"));
+        Path thumbnails = Files.createDirectory(directoryToBeScanned.resolve("thumbnails"));
+        Path jpgFile = createTempFile(directoryToBeScanned, "someFile", ".JPG");
+        Path jpgFileInHiddenSubfolder = createTempFile(hiddenSubfolder, "someFile", ".jpg");
+        Path jpgFileInThumbnails = createTempFile(thumbnails, "someFile", ".jpg");
+
+        PathFilter filter = PathFilter.newInstance()
+                                      .includeExtensions("jpg")
+                                      .excludeGlob("**/thumbnails")
+                                      .skipHiddenDirectories(true);
+
+        for (Options options : new Options[]{Options.newInstance(), Options.newInstance().parallelism(2)}) {
+            Consumer<Path> pathConsumer = mock(Consumer.class);
+
+            FilesystemScanner.newInstance(filter, options).scan(directoryToBeScanned, pathConsumer);
+
+            verify(pathConsumer).accept(jpgFile);
+            verify(pathConsumer, never()).accept(jpgFileInHiddenSubfolder);
+            verify(pathConsumer, never()).accept(jpgFileInThumbnails);
+        }
+    }
+
     private static Predicate<Path> fileNameEndsWith(String suffix) {
         Predicate<Path> filter = mock(Predicate.class);
         when(filter.test(any(Path.class))).thenAnswer(
                 i -> ((Path) i.getArguments()[0]).getFileName().toString().endsWith(suffix));
         return filter;
     }
+
+    private static void setLastModifiedTimeInThePast(Path... directories) throws IOException {
+        for (Path directory : directories) {
+            Files.setLastModifiedTime(directory, FileTime.from(Instant.now().minusSeconds(60)));
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package de.maci.photography.eyebeam.library.indexing;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 17.03.16
+ */
+public class PathFilterTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void allFilesAndDirectoriesAreAccepted_IfNothingHasBeenConfigured() throws Exception {
+        PathFilter sut = PathFilter.newInstance();
+
+        assertTrue(sut.test(Paths.get("/photos/someFile.txt")));
+        assertTrue(sut.acceptsDirectory(Paths.get("/photos/.hidden")));
+    }
+
+    @Test
+    public void extensionsAreMatchedCaseInsensitively() throws Exception {
+        PathFilter sut = PathFilter.newInstance().includeExtensions("jpg", ".jpeg", "CR2");
+
+        assertTrue(sut.test(Paths.get("/photos/someFile.jpg")));
+        assertTrue(sut.test(Paths.get("/photos/someFile.JPEG")));
+        assertTrue(sut.test(Paths.get("/photos/someFile.cr2")));
+        assertFalse(sut.test(Paths.get("/photos/someFile.png")));
+        assertFalse(sut.test(Paths.get("/photos/someFile.ajpg")));
+        assertFalse(sut.test(Paths.get("/photos/jpg")));
+    }
+
+    @Test
+    public void filesMatchingAnIncludedGlobAreAccepted() throws Exception {
+        PathFilter sut = PathFilter.newInstance().includeExtensions("jpg").includeGlob("**/raw/*.dng");
+
+        assertTrue(sut.test(Paths.get("/photos/raw/someFile.dng")));
+        assertFalse(sut.test(Paths.get("/photos/someFile.dng")));
+    }
+
+    @Test
+    public void filesAndDirectoriesMatchingAnExcludedGlobAreRejected() throws Exception {
+        PathFilter sut = PathFilter.newInstance().includeExtensions("jpg").excludeGlob("**/thumbnails");
+
+        assertFalse(sut.acceptsDirectory(Paths.get("/photos/thumbnails")));
+        assertTrue(sut.acceptsDirectory(Paths.get("/photos/holidays")));
+        assertFalse(sut.test(Paths.get("/photos/thumbnails")));
+    }
+
+    @Test
+    public void hiddenDirectoriesCanBeSkipped() throws Exception {
+        PathFilter sut = PathFilter.newInstance().skipHiddenDirectories(true);
+
+        assertFalse(sut.acceptsDirectory(Paths.get("/photos/.thumbnails")));
+        assertTrue(sut.acceptsDirectory(Paths.get("/photos/holidays")));
+    }
+
+    @Test
+    public void restrictionsMustBeSatisfiedInAdditionToTheConfiguredFilter() throws Exception {
+        PathFilter sut = PathFilter.newInstance()
+                                   .includeExtensions("jpg")
+                                   .restrict(file -> !file.startsWith("/photos/private"),
+                                             directory -> !directory.startsWith("/photos/private"));
+
+        assertTrue(sut.isRestricted());
+        assertTrue(sut.test(Paths.get("/photos/someFile.jpg")));
+        assertFalse(sut.test(Paths.get("/photos/someFile.txt")));
+        assertFalse(sut.test(Paths.get("/photos/private/someFile.jpg")));
+        assertTrue(sut.acceptsDirectory(Paths.get("/photos/public")));
+        assertFalse(sut.acceptsDirectory(Paths.get("/photos/private")));
+    }
+
+    @Test
+    public void extensionsMustNotBeEmpty() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Extension must not be empty.");
+
+        PathFilter.newInstance().includeExtensions(".");
+    }
+}
@@ -0,0 +1,59 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 12.03.16
+ */
+public class ContentHasherTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ContentHasher sut = ContentHasher.newInstance();
+
+    @Test
+    public void theSha256DigestOfTheFileContentIsReturned() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, "abc".getBytes(UTF_8));
+
+        assertThat(sut.hash(file).toHex(),
+                   equalTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+    }
+
+    @Test
+    public void filesWithEqualContentHaveEqualHashes() throws Exception {
+        byte[] content = new byte[200 * 1024];
+        content[content.length - 1] = 1;
+        Path file = temporaryFolder.newFile().toPath();
+        Path copy = temporaryFolder.newFile().toPath();
+        Path otherFile = temporaryFolder.newFile().toPath();
+        Files.write(file, content);
+        Files.write(copy, content);
+        content[content.length - 1] = 2;
+        Files.write(otherFile, content);
+
+        assertThat(sut.hash(file), equalTo(sut.hash(copy)));
+        assertThat(sut.hash(file), not(equalTo(sut.hash(otherFile))));
+    }
+
+    @Test
+    public void aContentHashCanBeRestoredFromItsHexRepresentation() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, "abc".getBytes(UTF_8));
+        ContentHash contentHash = sut.hash(file);
+
+        assertThat(ContentHash.fromHex(contentHash.toHex()), equalTo(contentHash));
+    }
+}
@@ -9,6 +9,7 @@ import java.time.Instant;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -45,5 +46,12 @@ public class DefaultExifDataReaderTest {
         assertThat(exifData.focalLengthFullFrameEquivalent().get(), equalTo(37));
         assertThat(exifData.iso().get(), equalTo(100));
         assertThat(exifData.takenAt().get(), equalTo(Instant.parse("2015-07-07T21:12:37Z")));
+        assertThat(exifData.make().get(), equalTo("NIKON CORPORATION"));
+        assertThat(exifData.model().get(), equalTo("NIKON D5100"));
+        assertThat(exifData.lensModel().get(), equalTo("18.0-105.0 mm f/3.5-5.6"));
+        assertThat(exifData.exposureTime().get(), equalTo(30d));
+        assertThat(exifData.whiteBalance().get(), equalTo(0));
+        assertFalse(exifData.orientation().isPresent());
+        assertFalse(exifData.hasLocation());
     }
 }
@@ -1,14 +1,21 @@
 package de.maci.photography.eyebeam.library.metadata;
 
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -20,6 +27,9 @@ public class DefaultMetadataReaderTest {
     @Rule
     public final ExpectedException expectedException = ExpectedException.none();
 
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private final MetadataReader sut = new DefaultMetadataReader();
 
     @Test
@@ -42,10 +52,61 @@ public class DefaultMetadataReaderTest {
         ExifData exifData = metadata.exifData().get();
 
         assertThat(metadata.fileSize().get(), equalTo(157933L));
+        assertThat(metadata.imageSize().get(), equalTo(new ImageSize(128, 81)));
         assertThat(exifData.fnumber().get(), equalTo(8d));
         assertThat(exifData.focalLength().get(), equalTo(25));
         assertThat(exifData.focalLengthFullFrameEquivalent().get(), equalTo(37));
         assertThat(exifData.iso().get(), equalTo(100));
         assertThat(exifData.takenAt().get(), equalTo(Instant.parse("2015-07-07T21:12:37Z")));
     }
+
+    @Test
+    public void theFileFingerprintIsCapturedWhileReadingMetadata() throws Exception {
+        Path path = Paths.get(getClass().getResource("sample.jpg").toURI());
+        Metadata metadata = sut.readFrom(path);
+
+        assertThat(metadata.fingerprint().get(),
+                   equalTo(FileFingerprint.of(Files.readAttributes(path, BasicFileAttributes.class))));
+    }
+
+    @Test
+    public void aFingerprintTakenWhileScanningIsReused() throws Exception {
+        Path path = Paths.get(getClass().getResource("sample.jpg").toURI());
+        FileFingerprint fingerprint = new FileFingerprint(42L, Instant.parse("2016-03-18T00:00:00Z"), null);
+
+        Metadata metadata = sut.readFrom(path, fingerprint);
+
+        assertThat(metadata.fileSize().get(), equalTo(42L));
+        assertThat(metadata.fingerprint().get(), equalTo(fingerprint));
+        assertThat(metadata.exifData().get().iso().get(), equalTo(100));
+    }
+
+    @Test
+    public void theExifDataIsAbsent_IfAJpegFileDoesNotContainAnExifSegment() throws Exception {
+        Path path = temporaryFolder.newFile("photo.jpg").toPath();
+        ByteBuffer jpeg = ByteBuffer.allocate(23);
+        jpeg.putShort((short) 0xFFD8);
+        jpeg.putShort((short) 0xFFC0).putShort((short) 17).put((byte) 8).putShort((short) 81).putShort((short) 128);
+        jpeg.putShort((short) 0xFFD9);
+        Files.write(path, jpeg.array());
+
+        Metadata metadata = sut.readFrom(path);
+
+        assertThat(metadata.imageSize().get(), equalTo(new ImageSize(128, 81)));
+        assertFalse(metadata.exifData().isPresent());
+    }
+
+    @Test
+    public void theExifDataIsAbsent_IfTheFileIsAPng() throws Exception {
+        Path path = temporaryFolder.newFile("image.png").toPath();
+        ByteBuffer png = ByteBuffer.allocate(33);
+        png.put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        png.putInt(13).put("IHDR".getBytes()).putInt(640).putInt(480);
+        Files.write(path, png.array());
+
+        Metadata metadata = sut.readFrom(path);
+
+        assertThat(metadata.imageSize().get(), equalTo(new ImageSize(640, 480)));
+        assertFalse(metadata.exifData().isPresent());
+    }
 }
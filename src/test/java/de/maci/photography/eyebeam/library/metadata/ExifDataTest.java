@@ -0,0 +1,100 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class ExifDataTest {
+
+    @Test
+    public void allValuesSetUsingTheBuilderArePresent() throws Exception {
+        Instant takenAt = Instant.ofEpochSecond(1458432000, 500000000);
+
+        ExifData sut = ExifData.builder().fnumber(2.8d).focalLength(35).focalLengthFullFrameEquivalent(52).iso(200)
+                               .takenAt(takenAt).build();
+
+        assertThat(sut.fnumber().get(), equalTo(2.8d));
+        assertThat(sut.focalLength().get(), equalTo(35));
+        assertThat(sut.focalLengthFullFrameEquivalent().get(), equalTo(52));
+        assertThat(sut.iso().get(), equalTo(200));
+        assertThat(sut.takenAt().get(), equalTo(takenAt));
+        assertThat(sut.takenAtEpochMilliOrElse(0), equalTo(takenAt.toEpochMilli()));
+    }
+
+    @Test
+    public void extendedValuesSetUsingTheBuilderArePresent() throws Exception {
+        ExifData sut = ExifData.builder().make("NIKON CORPORATION").model("NIKON D5100")
+                               .lensModel("18.0-105.0 mm f/3.5-5.6").exposureTime(0.004d).whiteBalance(1)
+                               .orientation(6).location(-33.859d, 151.21d).build();
+
+        assertThat(sut.make().get(), equalTo("NIKON CORPORATION"));
+        assertThat(sut.model().get(), equalTo("NIKON D5100"));
+        assertThat(sut.lensModel().get(), equalTo("18.0-105.0 mm f/3.5-5.6"));
+        assertTrue(sut.hasModel());
+        assertThat(sut.modelOrElse("unknown"), equalTo("NIKON D5100"));
+        assertThat(sut.exposureTime().get(), equalTo(0.004d));
+        assertThat(sut.whiteBalance().get(), equalTo(1));
+        assertThat(sut.orientation().get(), equalTo(6));
+        assertThat(sut.latitude().get(), equalTo(-33.859d));
+        assertThat(sut.longitude().get(), equalTo(151.21d));
+    }
+
+    @Test
+    public void extendedValuesArePreservedIfOtherValuesAreReplaced() throws Exception {
+        ExifData sut = ExifData.builder().make("NIKON CORPORATION").orientation(6).build();
+
+        ExifData withIso = sut.withIso(200);
+
+        assertThat(withIso.make().get(), equalTo("NIKON CORPORATION"));
+        assertThat(withIso.orientation().get(), equalTo(6));
+        assertThat(withIso.iso().get(), equalTo(200));
+    }
+
+    @Test
+    public void valuesNotSetAreAbsent() throws Exception {
+        ExifData sut = ExifData.builder().iso(0).build();
+
+        assertTrue(sut.hasIso());
+        assertThat(sut.isoOrElse(-1), equalTo(0));
+        assertFalse(sut.hasFnumber());
+        assertFalse(sut.fnumber().isPresent());
+        assertThat(sut.fnumberOrElse(-1d), equalTo(-1d));
+        assertThat(sut.focalLengthOrElse(-1), equalTo(-1));
+        assertFalse(sut.takenAt().isPresent());
+        assertFalse(sut.make().isPresent());
+        assertFalse(sut.hasMake());
+        assertThat(sut.makeOrElse("unknown"), equalTo("unknown"));
+        assertFalse(sut.hasLensModel());
+        assertFalse(sut.hasLocation());
+    }
+
+    @Test
+    public void aValueIsRemovedIfItIsReplacedByNull() throws Exception {
+        ExifData sut = ExifData.builder().fnumber(2.8d).iso(200).build();
+
+        ExifData withoutFnumber = sut.withFnumber(null);
+
+        assertFalse(withoutFnumber.hasFnumber());
+        assertThat(withoutFnumber.iso().get(), equalTo(200));
+        assertTrue(sut.hasFnumber());
+    }
+
+    @Test
+    public void anEmptyBuilderBuildsEmptyExifData() throws Exception {
+        ExifData sut = ExifData.builder().build();
+
+        assertFalse(sut.hasFnumber() || sut.hasFocalLength() || sut.hasFocalLengthFullFrameEquivalent()
+                            || sut.hasIso() || sut.hasTakenAt());
+        assertThat(ExifData.empty(), sameInstance(ExifData.empty()));
+    }
+}
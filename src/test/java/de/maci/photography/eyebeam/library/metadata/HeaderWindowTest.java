@@ -0,0 +1,142 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import com.drew.lang.BufferBoundsException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 19.03.16
+ */
+public class HeaderWindowTest {
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final HeaderWindow sut = new HeaderWindow();
+
+    private Path sampleFile;
+    private byte[] sampleBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        sampleFile = Paths.get(getClass().getResource("sample.jpg").toURI());
+        sampleBytes = Files.readAllBytes(sampleFile);
+        sut.open(sampleFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sut.close();
+    }
+
+    @Test
+    public void onlyTheHeaderIsReadWhenAFileIsOpened() throws Exception {
+        assertThat(sut.bytesRead(), equalTo((long) HeaderWindow.HEADER_PAGES * HeaderWindow.PAGE_SIZE));
+        assertThat(sut.getLength(), equalTo((long) sampleBytes.length));
+    }
+
+    @Test
+    public void pagesBeyondTheHeaderAreReadOnDemand() throws Exception {
+        int index = HeaderWindow.HEADER_PAGES * HeaderWindow.PAGE_SIZE - 100;
+
+        byte[] bytes = sut.getBytes(index, 200);
+
+        assertThat(bytes, equalTo(Arrays.copyOfRange(sampleBytes, index, index + 200)));
+        assertThat(sut.bytesRead(), equalTo((long) (HeaderWindow.HEADER_PAGES + 1) * HeaderWindow.PAGE_SIZE));
+    }
+
+    @Test
+    public void skippedBytesAreNotRead() throws Exception {
+        long skipped = sut.inputStream().skip(sampleBytes.length);
+
+        assertThat(skipped, equalTo((long) sampleBytes.length));
+        assertThat(sut.bytesRead(), equalTo((long) HeaderWindow.HEADER_PAGES * HeaderWindow.PAGE_SIZE));
+    }
+
+    @Test
+    public void theHeaderOfAJpegFileIsReadWithoutReadingTheWholeFile() throws Exception {
+        ImageHeader header = DefaultExifDataReader.readHeader(sut);
+
+        assertTrue(header.exifData().get().takenAt().isPresent());
+        assertTrue(header.imageSize().isPresent());
+        assertThat(sut.bytesRead(), lessThan((long) sampleBytes.length));
+    }
+
+    @Test
+    public void onlyTheLastUsedPagesBeyondTheHeaderAreKeptWhileReadingAFileCompletely() throws Exception {
+        int pageCount = HeaderWindow.HEADER_PAGES + 2 * HeaderWindow.MAX_RESIDENT_PAGES;
+        byte[] content = new byte[pageCount * HeaderWindow.PAGE_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i / HeaderWindow.PAGE_SIZE);
+        }
+        Path largeFile = temporaryFolder.newFile().toPath();
+        Files.write(largeFile, content);
+        sut.open(largeFile);
+
+        byte[] read = new byte[content.length];
+        try (InputStream inputStream = sut.inputStream()) {
+            int offset = 0;
+            int count;
+            while ((count = inputStream.read(read, offset, Math.min(1000, read.length - offset))) > 0) {
+                offset += count;
+            }
+        }
+        long bytesReadCompletely = sut.bytesRead();
+        int firstEvictedPage = HeaderWindow.HEADER_PAGES;
+        byte evictedByte = sut.getBytes(firstEvictedPage * HeaderWindow.PAGE_SIZE, 1)[0];
+        byte headerByte = sut.getBytes(0, 1)[0];
+
+        assertThat(read, equalTo(content));
+        assertThat(bytesReadCompletely, equalTo((long) content.length));
+        assertThat(evictedByte, equalTo((byte) firstEvictedPage));
+        assertThat(headerByte, equalTo((byte) 0));
+        assertThat(sut.bytesRead(), equalTo((long) content.length + HeaderWindow.PAGE_SIZE));
+    }
+
+    @Test
+    public void theBytesReadOnTheCurrentThreadAreCountedAcrossFiles() throws Exception {
+        long bytesReadBefore = HeaderWindow.bytesReadOnCurrentThread();
+
+        new DefaultMetadataReader().readFrom(sampleFile);
+
+        long bytesRead = HeaderWindow.bytesReadOnCurrentThread() - bytesReadBefore;
+        assertThat(bytesRead, greaterThanOrEqualTo((long) HeaderWindow.HEADER_PAGES * HeaderWindow.PAGE_SIZE));
+        assertThat(bytesRead, lessThan((long) sampleBytes.length));
+        assertThat(MetadataReader.bytesReadOnCurrentThread(), equalTo(HeaderWindow.bytesReadOnCurrentThread()));
+    }
+
+    @Test
+    public void readingBeyondTheEndOfTheFileFails() throws Exception {
+        expectedException.expect(BufferBoundsException.class);
+
+        sut.getBytes(sampleBytes.length - 1, 2);
+    }
+
+    @Test
+    public void aWindowCanBeReusedForAnotherFile() throws Exception {
+        sut.open(sampleFile);
+
+        assertThat(sut.getBytes(0, 4), equalTo(Arrays.copyOf(sampleBytes, 4)));
+        assertThat(sut.bytesRead(), equalTo((long) HeaderWindow.HEADER_PAGES * HeaderWindow.PAGE_SIZE));
+    }
+}
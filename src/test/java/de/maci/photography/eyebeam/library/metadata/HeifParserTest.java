@@ -0,0 +1,115 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import com.drew.lang.ByteArrayReader;
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class HeifParserTest {
+
+    @Test
+    public void theSizeOfTheLargestImageAndTheExifDataAreRead() throws Exception {
+        byte[] heif = heif(true);
+
+        assertThat(ImageFormat.detect(heif), equalTo(ImageFormat.HEIF));
+        ImageHeader header = HeifParser.parse(new ByteArrayReader(heif));
+
+        assertThat(header.imageSize().get(), equalTo(new ImageSize(4032, 3024)));
+        assertThat(header.exifData().get().iso().get(), equalTo(64));
+    }
+
+    @Test
+    public void theSizeIsReadIfThereIsNoExifItem() throws Exception {
+        ImageHeader header = HeifParser.parse(new ByteArrayReader(heif(false)));
+
+        assertThat(header.imageSize().get(), equalTo(new ImageSize(4032, 3024)));
+        assertFalse(header.exifData().isPresent());
+    }
+
+    /**
+     * Builds a HEIF file consisting of a file type box, a meta box describing a grid image made of tiles and an
+     * optional EXIF item, followed by the EXIF item's data.
+     */
+    private static byte[] heif(boolean withExifItem) throws IOException {
+        byte[] ftyp = box("ftyp", concat(ascii("heic"), int32(0), ascii("mif1"), ascii("heic")));
+        byte[] iinf = fullBox("iinf", 0, concat(int16(2),
+                                                fullBox("infe", 2, concat(int16(1), int16(0), ascii("grid"))),
+                                                fullBox("infe", 2, concat(int16(2), int16(0),
+                                                                          ascii(withExifItem ? "Exif" : "mime")))));
+        byte[] ipco = box("ipco", concat(fullBox("ispe", 0, concat(int32(512), int32(512))),
+                                         fullBox("ispe", 0, concat(int32(4032), int32(3024)))));
+        byte[] iprp = box("iprp", ipco);
+
+        // The item location box has a fixed size, so the offset of the EXIF data is known in advance
+        int ilocSize = 8 + 4 + 2 + 2 + 2 + 2 + 2 + 4 + 4;
+        int metaSize = 8 + 4 + iinf.length + ilocSize + iprp.length;
+        int exifOffset = ftyp.length + metaSize;
+        byte[] iloc = fullBox("iloc", 0, concat(int16(0x4400), int16(1),
+                                                int16(2), int16(0), int16(1), int32(exifOffset), int32(0)));
+        byte[] meta = fullBox("meta", 0, concat(iinf, iloc, iprp));
+
+        return concat(ftyp, meta, int32(6), ascii("Exif\0\0"), tiffWithIso(64));
+    }
+
+    private static byte[] tiffWithIso(int iso) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream tiff = new DataOutputStream(bytes);
+        tiff.writeBytes("MM");
+        tiff.writeShort(42);
+        tiff.writeInt(8);
+        tiff.writeShort(1);
+        tiff.writeShort(0x8769);
+        tiff.writeShort(4);
+        tiff.writeInt(1);
+        tiff.writeInt(26);
+        tiff.writeInt(0);
+        tiff.writeShort(1);
+        tiff.writeShort(0x8827);
+        tiff.writeShort(3);
+        tiff.writeInt(1);
+        tiff.writeShort(iso);
+        tiff.writeShort(0);
+        tiff.writeInt(0);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] box(String type, byte[] payload) throws IOException {
+        return concat(int32(8 + payload.length), ascii(type), payload);
+    }
+
+    private static byte[] fullBox(String type, int version, byte[] payload) throws IOException {
+        return box(type, concat(int32(version << 24), payload));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] int16(int value) {
+        return new byte[]{(byte) (value >>> 8), (byte) value};
+    }
+
+    private static byte[] int32(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part);
+        }
+        return bytes.toByteArray();
+    }
+}
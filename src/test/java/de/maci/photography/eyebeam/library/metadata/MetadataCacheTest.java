@@ -0,0 +1,196 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+import de.maci.photography.eyebeam.library.testhelper.matcher.MetadataMatcher;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class MetadataCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Path path = Paths.get("/some/photo.jpg");
+    private final FileFingerprint fingerprint = new FileFingerprint(42L, Instant.ofEpochSecond(1458432000, 123), "key");
+    private final Metadata metadata = new Metadata(42L,
+                                                   new ImageSize(6000, 4000),
+                                                   ExifData.builder().fnumber(2.8d).focalLength(35).iso(200)
+                                                           .takenAt(Instant.ofEpochSecond(1458000000))
+                                                           .make("NIKON CORPORATION").model("NIKON D5100")
+                                                           .exposureTime(0.004d).orientation(6)
+                                                           .location(48.137d, 11.575d).build(),
+                                                   fingerprint,
+                                                   Instant.ofEpochSecond(1458432100));
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder().toPath();
+    }
+
+    @Test
+    public void cachedMetadataIsReturnedForAnUnchangedFile() throws Exception {
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            sut.put(path, fingerprint, metadata);
+
+            assertThat(sut.get(path, fingerprint).get(), new MetadataMatcher(metadata));
+        }
+    }
+
+    @Test
+    public void noMetadataIsReturnedForAChangedFile() throws Exception {
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            sut.put(path, fingerprint, metadata);
+
+            assertFalse(sut.get(path, new FileFingerprint(43L, fingerprint.lastModified(), "key")).isPresent());
+            assertFalse(sut.get(path, new FileFingerprint(42L, Instant.now(), "key")).isPresent());
+            assertFalse(sut.get(Paths.get("/some/other/photo.jpg"), fingerprint).isPresent());
+        }
+    }
+
+    @Test
+    public void cachedMetadataIsRestoredFromTheDisk() throws Exception {
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            sut.put(path, fingerprint, metadata);
+        }
+
+        try (MetadataCache sut = MetadataCache.open(directory, 0)) {
+            assertThat(sut.size(), equalTo(1));
+            Metadata restored = sut.get(path, fingerprint).get();
+            assertThat(restored, new MetadataMatcher(metadata));
+            assertThat(restored.extractedAt(), equalTo(metadata.extractedAt()));
+        }
+    }
+
+    @Test
+    public void recordsWrittenAfterTheIndexAreRecovered() throws Exception {
+        MetadataCache crashed = MetadataCache.open(directory);
+        crashed.flush();
+        crashed.put(path, fingerprint, metadata);
+
+        try (MetadataCache sut = MetadataCache.open(directory, 0)) {
+            assertThat(sut.get(path, fingerprint).get(), new MetadataMatcher(metadata));
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    public void anIncompleteRecordIsDiscarded() throws Exception {
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            sut.put(path, fingerprint, metadata);
+        }
+        Path dataFile = directory.resolve(MetadataCache.DATA_FILE_NAME);
+        long completeLength = Files.size(dataFile);
+        Files.delete(directory.resolve(MetadataCache.INDEX_FILE_NAME));
+        try (FileChannel channel = FileChannel.open(dataFile, WRITE)) {
+            channel.truncate(completeLength - 1);
+        }
+
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            assertThat(sut.size(), equalTo(0));
+            assertThat(Files.size(dataFile), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void aRecordWithAnInvalidLengthAtTheEndIsDiscarded() throws Exception {
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            sut.put(path, fingerprint, metadata);
+        }
+        Path dataFile = directory.resolve(MetadataCache.DATA_FILE_NAME);
+        long completeLength = Files.size(dataFile);
+        Files.delete(directory.resolve(MetadataCache.INDEX_FILE_NAME));
+        try (FileChannel channel = FileChannel.open(dataFile, WRITE, APPEND)) {
+            ByteBuffer tornRecord = ByteBuffer.allocate(16);
+            tornRecord.putInt(12).putInt(-1).putInt(-1).putInt(-1).flip();
+            channel.write(tornRecord);
+        }
+
+        try (MetadataCache sut = MetadataCache.open(directory, 0)) {
+            assertThat(sut.size(), equalTo(1));
+            assertThat(sut.get(path, fingerprint).get(), new MetadataMatcher(metadata));
+            assertThat(Files.size(dataFile), equalTo(completeLength));
+        }
+    }
+
+    @Test
+    public void theMetadataOfAFileIsReplaced_IfTheFileHasBeenChanged() throws Exception {
+        FileFingerprint changedFingerprint = new FileFingerprint(43L, fingerprint.lastModified(), "key");
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            sut.put(path, fingerprint, metadata);
+            sut.put(path, changedFingerprint, metadata);
+        }
+
+        try (MetadataCache sut = MetadataCache.open(directory, 0)) {
+            assertThat(sut.size(), equalTo(1));
+            assertFalse(sut.get(path, fingerprint).isPresent());
+            assertTrue(sut.get(path, changedFingerprint).isPresent());
+        }
+    }
+
+    @Test
+    public void theDataFileIsCompacted_IfMostOfItsRecordsHaveBeenReplaced() throws Exception {
+        Path dataFile = directory.resolve(MetadataCache.DATA_FILE_NAME);
+        FileFingerprint latestFingerprint = fingerprint;
+        try (MetadataCache sut = MetadataCache.open(directory)) {
+            sut.put(Paths.get("/some/other/photo.jpg"), fingerprint, metadata);
+            while (Files.size(dataFile) < 3 * MetadataCache.MIN_COMPACTION_BYTES) {
+                latestFingerprint = new FileFingerprint(latestFingerprint.size() + 1, Instant.now(), "key");
+                sut.put(path, latestFingerprint, metadata);
+            }
+            sut.flush();
+
+            assertThat(Files.size(dataFile), lessThan(MetadataCache.MIN_COMPACTION_BYTES));
+            assertTrue(sut.get(path, latestFingerprint).isPresent());
+        }
+
+        try (MetadataCache sut = MetadataCache.open(directory, 0)) {
+            assertThat(sut.size(), equalTo(2));
+            assertTrue(sut.get(path, latestFingerprint).isPresent());
+            assertTrue(sut.get(Paths.get("/some/other/photo.jpg"), fingerprint).isPresent());
+        }
+    }
+
+    @Test
+    public void theDelegateIsOnlyCalledOnACacheMiss() throws Exception {
+        MetadataReader delegate = mock(MetadataReader.class);
+        when(delegate.readFrom(any(Path.class), any(FileFingerprint.class))).thenReturn(metadata);
+
+        try (MetadataCache cache = MetadataCache.open(directory)) {
+            MetadataReader sut = CachingMetadataReader.of(delegate, cache);
+            sut.readFrom(path, fingerprint);
+            Metadata cached = sut.readFrom(path, fingerprint);
+
+            assertThat(cached, new MetadataMatcher(metadata));
+            verify(delegate, times(1)).readFrom(path, fingerprint);
+        }
+    }
+}
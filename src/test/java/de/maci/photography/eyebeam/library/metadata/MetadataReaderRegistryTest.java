@@ -0,0 +1,92 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class MetadataReaderRegistryTest {
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    private final MetadataReaderRegistry sut = MetadataReaderRegistry.newInstance();
+
+    @Test
+    public void aJpegFileIsReadByTheBuiltInReader() throws Exception {
+        Metadata metadata = sut.readFrom(Paths.get(getClass().getResource("sample.jpg").toURI()));
+
+        assertThat(metadata.imageSize().get(), equalTo(new ImageSize(128, 81)));
+        assertThat(metadata.exifData().get().iso().get(), equalTo(100));
+    }
+
+    @Test
+    public void readsAreRecordedPerFormat() throws Exception {
+        sut.readFrom(Paths.get(getClass().getResource("sample.jpg").toURI()));
+
+        FormatMetrics metrics = sut.metrics().get(ImageFormat.JPEG);
+        assertThat(metrics.readCount(), equalTo(1L));
+        assertThat(metrics.failureCount(), equalTo(0L));
+        assertThat(metrics.bytesRead(), greaterThan(0L));
+        assertThat(sut.metrics().get(ImageFormat.PNG).readCount(), equalTo(0L));
+    }
+
+    @Test
+    public void failuresAreRecordedPerFormat() throws Exception {
+        try {
+            sut.readFrom(Paths.get(getClass().getResource("test.txt").toURI()));
+        } catch (MetadataReadingException e) {
+            // Expected, since text files are not supported
+        }
+
+        FormatMetrics metrics = sut.metrics().get(ImageFormat.OTHER);
+        assertThat(metrics.readCount(), equalTo(1L));
+        assertThat(metrics.failureCount(), equalTo(1L));
+    }
+
+    @Test
+    public void aRegisteredReaderReplacesTheBuiltInReader() throws Exception {
+        Metadata metadata = Metadata.empty();
+        MetadataReader jpegReader = mock(MetadataReader.class);
+        when(jpegReader.readFrom(any(Path.class), any(FileFingerprint.class))).thenReturn(metadata);
+
+        MetadataReaderRegistry registry = sut.withReader(ImageFormat.JPEG, jpegReader);
+
+        assertThat(registry.readFrom(Paths.get(getClass().getResource("sample.jpg").toURI())), sameInstance(metadata));
+        assertThat(registry.metrics().get(ImageFormat.JPEG).readCount(), equalTo(1L));
+    }
+
+    @Test
+    public void theBytesReadByARegisteredReaderAreRecorded() throws Exception {
+        Path jpegFile = Paths.get(getClass().getResource("sample.jpg").toURI());
+        sut.readFrom(jpegFile);
+        long bytesReadByTheBuiltInReader = sut.metrics().get(ImageFormat.JPEG).bytesRead();
+
+        MetadataReaderRegistry registry = sut.withReader(ImageFormat.JPEG, new DefaultMetadataReader());
+        registry.readFrom(jpegFile);
+
+        assertThat(registry.metrics().get(ImageFormat.JPEG).bytesRead(), greaterThan(bytesReadByTheBuiltInReader));
+    }
+
+    @Test
+    public void readingAFileOfAnUnsupportedFormatFails() throws Exception {
+        expectedException.expect(MetadataReadingException.class);
+
+        sut.readFrom(Paths.get(getClass().getResource("test.txt").toURI()));
+    }
+}
@@ -0,0 +1,47 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class StringDictionaryTest {
+
+    @Test
+    public void equalStringsAreMappedToTheSameInstance() throws Exception {
+        String make = StringDictionary.shared().canonicalize("NIKON CORPORATION");
+
+        assertThat(StringDictionary.shared().canonicalize(new String("NIKON CORPORATION")), sameInstance(make));
+        assertThat(make, equalTo("NIKON CORPORATION"));
+    }
+
+    @Test
+    public void stringsExceedingTheMaximumLengthAreNotAdded() throws Exception {
+        StringDictionary sut = new StringDictionary(8, 16);
+        String model = new String("NIKON D5100 with a very long name");
+
+        assertThat(sut.canonicalize(model), sameInstance(model));
+        assertThat(sut.size(), equalTo(0));
+    }
+
+    @Test
+    public void stringsAreReturnedAsTheyAre_IfTheDictionaryIsFull() throws Exception {
+        StringDictionary sut = new StringDictionary(128, 2);
+        for (int i = 0; i < 1000; i++) {
+            String model = "Model " + i;
+
+            assertThat(sut.canonicalize(model), equalTo(model));
+        }
+
+        String model = new String("Model 1");
+        String unknownModel = new String("Model 2");
+        assertThat(sut.canonicalize(model), sameInstance(sut.canonicalize("Model 1")));
+        assertThat(sut.canonicalize(unknownModel), sameInstance(unknownModel));
+        assertThat(sut.size(), equalTo(2));
+    }
+}
@@ -0,0 +1,201 @@
+package de.maci.photography.eyebeam.library.metadata;
+
+import com.drew.lang.ByteArrayReader;
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class TiffExifParserTest {
+
+    @Rule
+    public final ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void testParse_ReturnsAllValues_IfLittleEndianTiffContainsExifSubIfd() throws Exception {
+        ImageHeader header = TiffExifParser.parse(new ByteArrayReader(tiffWithExifSubIfd(ByteOrder.LITTLE_ENDIAN)), 0);
+
+        assertExifData(header.exifData().get());
+    }
+
+    @Test
+    public void testParse_ReturnsAllValues_IfBigEndianTiffContainsExifSubIfd() throws Exception {
+        ImageHeader header = TiffExifParser.parse(new ByteArrayReader(tiffWithExifSubIfd(ByteOrder.BIG_ENDIAN)), 0);
+
+        assertExifData(header.exifData().get());
+    }
+
+    @Test
+    public void testParse_ReturnsSizeOfFullResolutionImage_IfFirstIfdDescribesAThumbnail() throws Exception {
+        ImageHeader header = TiffExifParser.parse(new ByteArrayReader(tiffWithExifSubIfd(ByteOrder.BIG_ENDIAN)), 0);
+
+        assertThat(header.imageSize().get(), equalTo(new ImageSize(6000, 4000)));
+    }
+
+    @Test
+    public void testParse_ReturnsExifPixelDimensions_IfNoIfdDescribesTheImageSize() throws Exception {
+        ByteBuffer buffer = tiffHeader(ByteOrder.LITTLE_ENDIAN, 64);
+        buffer.putShort((short) 1);
+        entry(buffer, 0x8769, 4, 1, 24);
+        buffer.position(24);
+        buffer.putShort((short) 2);
+        entry(buffer, 0xA002, 4, 1, 640);
+        entry(buffer, 0xA003, 4, 1, 480);
+
+        ImageHeader header = TiffExifParser.parse(new ByteArrayReader(buffer.array()), 0);
+
+        assertThat(header.imageSize().get(), equalTo(new ImageSize(640, 480)));
+    }
+
+    @Test
+    public void testParse_ReturnsCameraExposureOrientationAndLocation_IfTiffContainsThem() throws Exception {
+        ImageHeader header = TiffExifParser.parse(new ByteArrayReader(tiffWithCameraAndGpsSubIfd()), 0);
+
+        ExifData exifData = header.exifData().get();
+        assertThat(exifData.make().get(), equalTo("NIKON"));
+        assertThat(exifData.model().get(), equalTo("D5100"));
+        assertThat(exifData.orientation().get(), equalTo(6));
+        assertThat(exifData.exposureTime().get(), equalTo(0.004d));
+        assertThat(exifData.whiteBalance().get(), equalTo(1));
+        assertThat(exifData.lensModel().get(), equalTo("18.0-105.0 mm"));
+        assertThat(exifData.latitude().get(), closeTo(-33.859d, 0.000001d));
+        assertThat(exifData.longitude().get(), closeTo(151.21d, 0.000001d));
+    }
+
+    @Test
+    public void testParse_ReturnsAbsentExifData_IfTiffDoesNotContainExifSubIfd() throws Exception {
+        ByteBuffer buffer = tiffHeader(ByteOrder.LITTLE_ENDIAN, 32);
+        buffer.putShort((short) 0);
+
+        ImageHeader header = TiffExifParser.parse(new ByteArrayReader(buffer.array()), 0);
+
+        assertFalse(header.exifData().isPresent());
+        assertFalse(header.imageSize().isPresent());
+    }
+
+    @Test
+    public void testParse_ThrowsException_IfByteOrderIsUnknown() throws Exception {
+        expectedException.expect(IOException.class);
+
+        TiffExifParser.parse(new ByteArrayReader(new byte[]{'X', 'X', 42, 0, 8, 0, 0, 0}), 0);
+    }
+
+    private static void assertExifData(ExifData exifData) {
+        assertThat(exifData.fnumber().get(), equalTo(5.6d));
+        assertThat(exifData.focalLength().get(), equalTo(35));
+        assertThat(exifData.focalLengthFullFrameEquivalent().get(), equalTo(52));
+        assertThat(exifData.iso().get(), equalTo(400));
+        assertThat(exifData.takenAt().get(), equalTo(LocalDateTime.of(2016, 3, 20, 10, 15, 30)
+                                                                 .atZone(ZoneId.systemDefault())
+                                                                 .toInstant()));
+    }
+
+    /**
+     * Builds a TIFF structure like used by RAW formats. The first IFD describes a thumbnail and points to an EXIF
+     * sub-IFD at offset 80 and to a sub-IFD describing the full resolution image at offset 220. The values not
+     * fitting into the entries are located at offset 180.
+     */
+    private static byte[] tiffWithExifSubIfd(ByteOrder byteOrder) {
+        ByteBuffer buffer = tiffHeader(byteOrder, 264);
+        buffer.putShort((short) 5);
+        entry(buffer, 0x00FE, 4, 1, 1);
+        entry(buffer, 0x0100, 3, 1, shortValue(byteOrder, 160));
+        entry(buffer, 0x0101, 3, 1, shortValue(byteOrder, 120));
+        entry(buffer, 0x014A, 4, 1, 220);
+        entry(buffer, 0x8769, 4, 1, 80);
+
+        buffer.position(80);
+        buffer.putShort((short) 8);
+        entry(buffer, 0x0110, 2, 4, 0);
+        entry(buffer, 0x829D, 5, 1, 180);
+        entry(buffer, 0x8827, 3, 1, shortValue(byteOrder, 400));
+        entry(buffer, 0x9003, 2, 20, 188);
+        entry(buffer, 0x920A, 5, 1, 208);
+        entry(buffer, 0xA002, 3, 1, shortValue(byteOrder, 640));
+        entry(buffer, 0xA003, 3, 1, shortValue(byteOrder, 480));
+        entry(buffer, 0xA405, 3, 1, shortValue(byteOrder, 52));
+
+        buffer.position(180);
+        buffer.putInt(56).putInt(10);
+        buffer.put("2016:03:20 10:15:30\0".getBytes());
+        buffer.putInt(350).putInt(10);
+
+        buffer.position(220);
+        buffer.putShort((short) 3);
+        entry(buffer, 0x00FE, 4, 1, 0);
+        entry(buffer, 0x0100, 4, 1, 6000);
+        entry(buffer, 0x0101, 4, 1, 4000);
+        return buffer.array();
+    }
+
+    /**
+     * Builds a little endian TIFF structure whose first IFD contains the camera make, model and orientation and points
+     * to an EXIF sub-IFD at offset 80 and to a GPS sub-IFD at offset 140. The values not fitting into the entries are
+     * located at offset 200.
+     */
+    private static byte[] tiffWithCameraAndGpsSubIfd() {
+        ByteBuffer buffer = tiffHeader(ByteOrder.LITTLE_ENDIAN, 296);
+        buffer.putShort((short) 5);
+        entry(buffer, 0x010F, 2, 6, 200);
+        entry(buffer, 0x0110, 2, 6, 208);
+        entry(buffer, 0x0112, 3, 1, 6);
+        entry(buffer, 0x8769, 4, 1, 80);
+        entry(buffer, 0x8825, 4, 1, 140);
+
+        buffer.position(80);
+        buffer.putShort((short) 3);
+        entry(buffer, 0x829A, 5, 1, 216);
+        entry(buffer, 0xA403, 3, 1, 1);
+        entry(buffer, 0xA434, 2, 14, 224);
+
+        buffer.position(140);
+        buffer.putShort((short) 4);
+        entry(buffer, 0x0001, 2, 2, 'S');
+        entry(buffer, 0x0002, 5, 3, 240);
+        entry(buffer, 0x0003, 2, 2, 'E');
+        entry(buffer, 0x0004, 5, 3, 264);
+
+        buffer.position(200);
+        buffer.put("NIKON\0".getBytes());
+        buffer.position(208);
+        buffer.put("D5100\0".getBytes());
+        buffer.position(216);
+        buffer.putInt(1).putInt(250);
+        buffer.put("18.0-105.0 mm\0".getBytes());
+        buffer.position(240);
+        buffer.putInt(33).putInt(1).putInt(51).putInt(1).putInt(3240).putInt(100);
+        buffer.putInt(151).putInt(1).putInt(12).putInt(1).putInt(3600).putInt(100);
+        return buffer.array();
+    }
+
+    private static int shortValue(ByteOrder byteOrder, int value) {
+        return byteOrder == ByteOrder.BIG_ENDIAN ? value << 16 : value;
+    }
+
+    private static ByteBuffer tiffHeader(ByteOrder byteOrder, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(byteOrder);
+        buffer.put(byteOrder == ByteOrder.BIG_ENDIAN ? new byte[]{'M', 'M'} : new byte[]{'I', 'I'});
+        buffer.putShort((short) 42);
+        buffer.putInt(8);
+        return buffer;
+    }
+
+    private static void entry(ByteBuffer buffer, int tag, int format, int componentCount, int value) {
+        buffer.putShort((short) tag).putShort((short) format).putInt(componentCount).putInt(value);
+    }
+}
@@ -0,0 +1,111 @@
+package de.maci.photography.eyebeam.library.sharding;
+
+import de.maci.photography.eyebeam.library.Photo;
+import de.maci.photography.eyebeam.library.indexing.PathFilter;
+import de.maci.photography.eyebeam.library.storage.InMemoryDataStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 13.03.16
+ */
+public class LocalShardedReindexingTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path rootFolder;
+    private final List<Photo> photos = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        Path sampleFile = Paths.get(getClass().getResource("/de/maci/photography/eyebeam/library/sample.jpg").toURI());
+        rootFolder = temporaryFolder.newFolder("library").toPath();
+        for (String directory : new String[]{"2014", "2015", "2016"}) {
+            Files.createDirectories(rootFolder.resolve(directory));
+            for (String name : new String[]{"first.jpg", "second.jpg"}) {
+                Path relativePath = Paths.get(directory, name);
+                Files.copy(sampleFile, rootFolder.resolve(relativePath));
+                photos.add(Photo.locatedAt(relativePath));
+            }
+        }
+    }
+
+    @Test
+    public void eachPhotoBelongsToExactlyOneShard() throws Exception {
+        for (ShardingStrategy strategy : ShardingStrategy.values()) {
+            for (Photo photo : photos) {
+                long shards = 0;
+                for (int index = 0; index < 3; index++) {
+                    if (Shard.of(index, 3, strategy).contains(photo.path())) {
+                        shards++;
+                    }
+                }
+                assertThat(shards, equalTo(1L));
+            }
+        }
+    }
+
+    @Test
+    public void photosBelowTheSameTopLevelDirectoryBelongToTheSameShard() throws Exception {
+        ShardingStrategy sut = ShardingStrategy.TOP_LEVEL_DIRECTORY;
+
+        assertThat(sut.shardOf(Paths.get("2016", "first.jpg"), 7),
+                   equalTo(sut.shardOf(Paths.get("2016", "march", "second.jpg"), 7)));
+    }
+
+    @Test
+    public void theWholeLibraryIsReindexed_IfItIsReindexedBySeveralWorkerProcesses() throws Exception {
+        InMemoryDataStore target = InMemoryDataStore.empty();
+
+        long merged = LocalShardedReindexing.newInstance(rootFolder,
+                                                         temporaryFolder.newFolder("shards").toPath(),
+                                                         3,
+                                                         ShardingStrategy.PATH_HASH)
+                                            .reindexInto(target);
+
+        assertThat(merged, equalTo(6L));
+        assertThat(target.photos().collect(toList()), containsInAnyOrder(photos.toArray()));
+        for (Photo photo : photos) {
+            assertTrue(target.metadataExists(photo));
+        }
+    }
+
+    @Test
+    public void filesRejectedByTheFileFilterOfTheLibraryAreNotIndexedByTheWorkerProcesses() throws Exception {
+        Files.write(rootFolder.resolve("2016").resolve("notes.txt"), new byte[]{1, 2, 3});
+        Path thumbnails = Files.createDirectories(rootFolder.resolve("2016").resolve("thumbnails"));
+        Files.write(thumbnails.resolve("first.jpg"), new byte[]{1, 2, 3});
+        Path hidden = Files.createDirectories(rootFolder.resolve("2015").resolve(".hidden"));
+        Files.write(hidden.resolve("first.jpg"), new byte[]{1, 2, 3});
+        InMemoryDataStore target = InMemoryDataStore.empty();
+
+        long merged = LocalShardedReindexing.newInstance(rootFolder,
+                                                         temporaryFolder.newFolder("shards").toPath(),
+                                                         2,
+                                                         ShardingStrategy.TOP_LEVEL_DIRECTORY)
+                                            .withFileFilter(PathFilter.newInstance()
+                                                                      .includeExtensions("jpg")
+                                                                      .excludeGlob("**/thumbnails/**")
+                                                                      .skipHiddenDirectories(true))
+                                            .reindexInto(target);
+
+        assertThat(merged, equalTo(6L));
+        assertThat(target.photos().collect(toList()), containsInAnyOrder(photos.toArray()));
+    }
+}
@@ -0,0 +1,72 @@
+package de.maci.photography.eyebeam.library.sharding;
+
+import de.maci.photography.eyebeam.library.LibraryConfiguration;
+import de.maci.photography.eyebeam.library.indexing.PathFilter;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Daniel Götten <daniel.goetten@googlemail.com>
+ * @since 20.03.16
+ */
+public class ShardTest {
+
+    private static final Path ROOT_FOLDER = Paths.get("/photos");
+
+    @Test
+    public void topLevelDirectoriesOfOtherShardsAreNotScanned_IfPhotosAreShardedByTopLevelDirectory()
+            throws Exception {
+        Shard sut = shardContaining("2016/someFile.jpg");
+        PathFilter filter = restrictedFilterOf(sut, PathFilter.newInstance().includeExtensions("jpg"));
+
+        assertTrue(filter.acceptsDirectory(ROOT_FOLDER.resolve("2016")));
+        assertTrue(filter.acceptsDirectory(ROOT_FOLDER.resolve("2016").resolve("summer")));
+        assertFalse(filter.acceptsDirectory(ROOT_FOLDER.resolve(topLevelDirectoryOfOtherShardThan(sut))));
+        assertTrue(filter.test(ROOT_FOLDER.resolve("2016").resolve("someFile.jpg")));
+        assertFalse(filter.test(ROOT_FOLDER.resolve("2016").resolve("someFile.txt")));
+    }
+
+    @Test
+    public void filesRejectedByArbitraryFileFiltersAreNotContained() throws Exception {
+        Shard sut = shardContaining("2016/someFile.jpg");
+        PathFilter filter = restrictedFilterOf(sut, path -> !path.getFileName().toString().startsWith("other"));
+
+        assertTrue(filter.test(ROOT_FOLDER.resolve("2016").resolve("someFile.jpg")));
+        assertFalse(filter.test(ROOT_FOLDER.resolve("2016").resolve("otherFile.jpg")));
+    }
+
+    private static Shard shardContaining(String relativePath) {
+        int index = ShardingStrategy.TOP_LEVEL_DIRECTORY.shardOf(Paths.get(relativePath), 4);
+        return Shard.of(index, 4, ShardingStrategy.TOP_LEVEL_DIRECTORY);
+    }
+
+    private static String topLevelDirectoryOfOtherShardThan(Shard shard) {
+        for (int year = 2000; ; year++) {
+            if (!shard.contains(Paths.get(String.valueOf(year), "someFile.jpg"))) {
+                return String.valueOf(year);
+            }
+        }
+    }
+
+    private static PathFilter restrictedFilterOf(Shard shard, Predicate<Path> fileFilter) {
+        LibraryConfiguration configuration = mock(LibraryConfiguration.class);
+        when(configuration.rootFolder()).thenReturn(ROOT_FOLDER);
+        when(configuration.fileFilter()).thenReturn(Optional.of(fileFilter));
+
+        Predicate<Path> restrictedFilter = shard.restrict(configuration).fileFilter().get();
+
+        assertThat(restrictedFilter, instanceOf(PathFilter.class));
+        return (PathFilter) restrictedFilter;
+    }
+}
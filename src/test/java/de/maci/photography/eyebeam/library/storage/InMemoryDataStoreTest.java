@@ -1,21 +1,29 @@
 package de.maci.photography.eyebeam.library.storage;
 
 import de.maci.photography.eyebeam.library.Photo;
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
 import static java.util.stream.Collectors.toSet;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.collection.IsEmptyIterable.emptyIterable;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Daniel Götten <daniel.goetten@googlemail.com>
@@ -128,6 +136,127 @@ public class InMemoryDataStoreTest {
         assertThat(sut.size(), equalTo(0L));
     }
 
+    @Test
+    public void generationsAreIncreasing() throws Exception {
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+
+        long generation = sut.nextGeneration();
+
+        assertThat(sut.nextGeneration(), greaterThan(generation));
+    }
+
+    @Test
+    public void unmarkedPhotosAreRemoved_IfSwept() throws Exception {
+        Photo markedPhoto = photoWithPath("/some/photo.jpg");
+        Photo unmarkedPhoto = photoWithPath("/some/other/photo.jpg");
+
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+        sut.store(markedPhoto);
+        sut.store(unmarkedPhoto);
+
+        long generation = sut.nextGeneration();
+        sut.mark(markedPhoto, generation);
+
+        assertThat(sut.sweep(generation), equalTo(1L));
+        assertThat(sut.photos().collect(toSet()), equalTo(singleton(markedPhoto)));
+    }
+
+    @Test
+    public void aPhotoCannotBeMarked_IfItIsNotContainedInTheDataStore() throws Exception {
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+
+        String path = "/some/photo.jpg";
+
+        expectedException.expect(NoSuchElementException.class);
+        expectedException.expectMessage("Data store does not contain '" + path + "'.");
+
+        sut.mark(photoWithPath(path), sut.nextGeneration());
+    }
+
+    @Test
+    public void photosCanBeAddedAndRemovedInBatches() throws Exception {
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+        Photo firstPhoto = photoWithPath("/some/photo.jpg");
+        Photo secondPhoto = photoWithPath("/some/other/photo.jpg");
+
+        sut.store(firstPhoto);
+
+        assertThat(sut.storeAll(asList(firstPhoto, secondPhoto)), equalTo(1L));
+        assertThat(sut.size(), equalTo(2L));
+
+        assertThat(sut.removeAll(asList(secondPhoto, photoWithPath("/not/contained.jpg"))), equalTo(1L));
+        assertThat(sut.photos().collect(toSet()), equalTo(singleton(firstPhoto)));
+    }
+
+    @Test
+    public void metadataIsNotReplaced_IfAnyPhotoOfTheBatchIsNotContainedInTheDataStore() throws Exception {
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+        Photo containedPhoto = photoWithPath("/some/photo.jpg");
+        Photo missingPhoto = photoWithPath("/some/other/photo.jpg");
+        sut.store(containedPhoto);
+
+        Map<Photo, Metadata> metadata = new LinkedHashMap<>();
+        metadata.put(containedPhoto, Metadata.empty());
+        metadata.put(missingPhoto, Metadata.empty());
+
+        try {
+            sut.replaceMetadataAll(metadata);
+        } catch (NoSuchElementException e) {
+            assertFalse(sut.metadataExists(containedPhoto));
+            return;
+        }
+        fail("Expected a NoSuchElementException.");
+    }
+
+    @Test
+    public void photosMarkedInABatchAreNotRemoved_IfSwept() throws Exception {
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+        Photo firstPhoto = photoWithPath("/some/photo.jpg");
+        Photo secondPhoto = photoWithPath("/some/other/photo.jpg");
+        sut.storeAll(asList(firstPhoto, secondPhoto));
+
+        long generation = sut.nextGeneration();
+        sut.markAll(asList(firstPhoto, secondPhoto), generation);
+
+        assertThat(sut.sweep(generation), equalTo(0L));
+        assertThat(sut.size(), equalTo(2L));
+    }
+
+    @Test
+    public void aRecordedExtractionFailureIsDiscarded_IfTheMetadataIsReplaced() throws Exception {
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+        Photo photo = somePhoto();
+        sut.store(photo);
+
+        ExtractionFailure failure = ExtractionFailure.of(null, "Failure");
+        sut.recordExtractionFailure(photo, failure);
+        assertThat(sut.extractionFailureOf(photo).get(), equalTo(failure));
+
+        sut.replaceMetadata(photo, Metadata.empty());
+        assertFalse(sut.extractionFailureOf(photo).isPresent());
+    }
+
+    @Test
+    public void photosAreLookedUpByContentHash_UntilTheirMetadataIsReplacedOrTheyAreRemoved() throws Exception {
+        InMemoryDataStore sut = InMemoryDataStore.empty();
+        Photo firstPhoto = photoWithPath("/some/photo.jpg");
+        Photo secondPhoto = photoWithPath("/some/other/photo.jpg");
+        sut.storeAll(asList(firstPhoto, secondPhoto));
+
+        ContentHash contentHash = ContentHash.fromHex("00ff");
+        sut.replaceMetadata(firstPhoto, Metadata.empty().withContentHash(contentHash));
+        sut.replaceMetadata(secondPhoto, Metadata.empty().withContentHash(contentHash));
+        assertThat(sut.photosWithContentHash(contentHash), equalTo(new HashSet<>(asList(firstPhoto, secondPhoto))));
+        assertThat(sut.duplicates().count(), equalTo(1L));
+
+        sut.replaceMetadata(firstPhoto, Metadata.empty());
+        assertThat(sut.photosWithContentHash(contentHash), equalTo(singleton(secondPhoto)));
+
+        sut.remove(secondPhoto);
+        assertTrue(sut.photosWithContentHash(contentHash).isEmpty());
+        assertThat(sut.duplicates().count(), equalTo(0L));
+    }
+
     private static Photo somePhoto() {
         return Photo.locatedAt(new File("").toPath());
     }
@@ -1,8 +1,12 @@
 package de.maci.photography.eyebeam.library.storage.persistent;
 
 import de.maci.photography.eyebeam.library.Photo;
+import de.maci.photography.eyebeam.library.metadata.ContentHash;
 import de.maci.photography.eyebeam.library.metadata.ExifData;
+import de.maci.photography.eyebeam.library.metadata.ExtractionFailure;
+import de.maci.photography.eyebeam.library.metadata.FileFingerprint;
 import de.maci.photography.eyebeam.library.metadata.Metadata;
+import de.maci.photography.eyebeam.library.metadata.Metadata.ImageSize;
 import de.maci.photography.eyebeam.library.testhelper.matcher.MetadataMatcher;
 import org.junit.Rule;
 import org.junit.Test;
@@ -11,9 +15,11 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 import static java.util.Collections.singleton;
 import static java.util.stream.Collectors.toSet;
@@ -144,7 +150,7 @@ public class FileDataStoreTest {
         sut.store(photoWithMetadata);
         Instant now = Instant.now();
         Metadata metadata = new Metadata(42L,
-                                         null,
+                                         new ImageSize(6000, 4000),
                                          ExifData.empty().withFnumber(1d).withFocalLength(2)
                                                  .withFocalLengthFullFrameEquivalent(3).withIso(4).withTakenAt(now));
         sut.replaceMetadata(photoWithMetadata, metadata);
@@ -159,6 +165,85 @@ public class FileDataStoreTest {
         assertFalse(sut.metadataExists(photoWithoutMetadata));
     }
 
+    @Test
+    public void theDataFileIsReplacedWithoutLeavingATemporaryFile_IfFlushedRepeatedly() throws Exception {
+        FileDataStore sut = newFileDataStore();
+        Photo photo = photoWithPath("/some/photo.jpg");
+        sut.store(photo);
+        sut.flush();
+        sut.store(photoWithPath("/some/other/photo.jpg"));
+        sut.flush();
+        sut.clear();
+        sut.restore();
+
+        assertThat(sut.size(), equalTo(2L));
+        try (Stream<Path> files = Files.list(temporaryFolder.getRoot().toPath())) {
+            assertThat(files.map(file -> file.getFileName().toString()).collect(toSet()),
+                       containsInAnyOrder("photos.dat"));
+        }
+    }
+
+    @Test
+    public void theFileFingerprintTheContentHashAndTheExtractionTimeAreFlushedAndRestored() throws Exception {
+        FileDataStore sut = newFileDataStore();
+        Photo photo = photoWithPath("/some/photo.jpg");
+        sut.store(photo);
+        Metadata metadata = new Metadata(42L, null, ExifData.empty(),
+                                         new FileFingerprint(42L, Instant.ofEpochSecond(1456185600, 123), "key"),
+                                         ContentHash.fromHex("0123456789abcdef"),
+                                         Instant.now());
+        sut.replaceMetadata(photo, metadata);
+        sut.flush();
+        sut.clear();
+        sut.restore();
+
+        assertThat(sut.metadataOf(photo).get(), new MetadataMatcher(metadata));
+        assertThat(sut.metadataOf(photo).get().contentHash(), equalTo(metadata.contentHash()));
+        assertThat(sut.metadataOf(photo).get().extractedAt(), equalTo(metadata.extractedAt()));
+    }
+
+    @Test
+    public void extendedExifDataIsFlushedAndRestored() throws Exception {
+        FileDataStore sut = newFileDataStore();
+        Photo photo = photoWithPath("/some/photo.jpg");
+        Photo otherPhoto = photoWithPath("/some/other/photo.jpg");
+        sut.store(photo);
+        sut.store(otherPhoto);
+        ExifData exifData = ExifData.builder().make("NIKON CORPORATION").model("NIKON D5100")
+                                    .lensModel("18.0-105.0 mm f/3.5-5.6").exposureTime(0.004d).whiteBalance(1)
+                                    .orientation(6).location(-33.859d, 151.21d).build();
+        Metadata metadata = new Metadata(42L, null, exifData);
+        Metadata otherMetadata = new Metadata(43L, null, ExifData.builder().make("NIKON CORPORATION").build());
+        sut.replaceMetadata(photo, metadata);
+        sut.replaceMetadata(otherPhoto, otherMetadata);
+        sut.flush();
+        sut.clear();
+        sut.restore();
+
+        assertThat(sut.metadataOf(photo).get(), new MetadataMatcher(metadata));
+        assertThat(sut.metadataOf(otherPhoto).get(), new MetadataMatcher(otherMetadata));
+    }
+
+    @Test
+    public void extractionFailuresAreFlushedAndRestored() throws Exception {
+        FileDataStore sut = newFileDataStore();
+        Photo failedPhoto = photoWithPath("/some/photo.jpg");
+        Photo otherPhoto = photoWithPath("/some/other/photo.jpg");
+        sut.store(failedPhoto);
+        sut.store(otherPhoto);
+        ExtractionFailure failure = new ExtractionFailure(new FileFingerprint(42L, Instant.ofEpochSecond(1457568000),
+                                                                              null),
+                                                          "Failure",
+                                                          Instant.ofEpochSecond(1457568060, 123));
+        sut.recordExtractionFailure(failedPhoto, failure);
+        sut.flush();
+        sut.clear();
+        sut.restore();
+
+        assertThat(sut.extractionFailureOf(failedPhoto).get(), equalTo(failure));
+        assertFalse(sut.extractionFailureOf(otherPhoto).isPresent());
+    }
+
     @Test
     public void aDataStoreCanBeRestored() throws Exception {
         Files.copy(getClass().getResourceAsStream("photos.dat"),
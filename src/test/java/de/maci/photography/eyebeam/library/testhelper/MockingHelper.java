@@ -21,6 +21,7 @@ import org.mockito.invocation.InvocationOnMock;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import static org.mockito.Matchers.any;
@@ -45,6 +46,10 @@ public class MockingHelper {
                 operation.accept(invocation);
                 return null;
             }).when(scanner).scan(any(Path.class), any(Consumer.class));
+            doAnswer(invocation -> {
+                operation.accept(invocation);
+                return null;
+            }).when(scanner).scan(any(Path.class), any(BiConsumer.class));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
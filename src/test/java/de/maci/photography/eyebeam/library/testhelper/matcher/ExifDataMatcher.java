@@ -39,7 +39,15 @@ public class ExifDataMatcher extends TypeSafeMatcher<ExifData> {
                 && Objects.equals(expected.focalLength(), exifData.focalLength())
                 && Objects.equals(expected.focalLengthFullFrameEquivalent(), exifData.focalLengthFullFrameEquivalent())
                 && Objects.equals(expected.iso(), exifData.iso())
-                && Objects.equals(expected.takenAt(), exifData.takenAt());
+                && Objects.equals(expected.takenAt(), exifData.takenAt())
+                && Objects.equals(expected.make(), exifData.make())
+                && Objects.equals(expected.model(), exifData.model())
+                && Objects.equals(expected.lensModel(), exifData.lensModel())
+                && Objects.equals(expected.exposureTime(), exifData.exposureTime())
+                && Objects.equals(expected.whiteBalance(), exifData.whiteBalance())
+                && Objects.equals(expected.orientation(), exifData.orientation())
+                && Objects.equals(expected.latitude(), exifData.latitude())
+                && Objects.equals(expected.longitude(), exifData.longitude());
     }
 
     @Override
@@ -42,6 +42,7 @@ public class MetadataMatcher extends TypeSafeMatcher<Metadata> {
 
         return Objects.equals(expected.fileSize(), metadata.fileSize())
                 && Objects.equals(expected.imageSize(), metadata.imageSize())
+                && Objects.equals(expected.fingerprint(), metadata.fingerprint())
                 && (!expectedExifData.isPresent() && !exifData.isPresent()
                 || expectedExifData.isPresent() && exifData.isPresent()
                 && new ExifDataMatcher(expectedExifData.get()).matchesSafely(exifData.get()));